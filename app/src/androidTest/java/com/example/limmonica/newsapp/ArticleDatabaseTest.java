@@ -0,0 +1,129 @@
+package com.example.limmonica.newsapp;
+
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented tests for {@link ArticleDatabase}, which needs the SQLite of a device. Each test
+ * runs against a database held in memory.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ArticleDatabaseTest {
+
+    // Constant value for a day, in milliseconds
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private ArticleDatabase mDatabase;
+
+    @Before
+    public void setUp() {
+        mDatabase = new ArticleDatabase(InstrumentationRegistry.getTargetContext(), null);
+    }
+
+    @After
+    public void tearDown() {
+        mDatabase.close();
+    }
+
+    @Test
+    public void loadArticles_readsBackTheSavedArticles() {
+        Article article = new Article(3 * DAY, "Science", "https://media.guim.co.uk/1.jpg",
+                "Quantum computing", "Alex Hern", "A <strong>big</strong> step",
+                "https://www.theguardian.com/science/1");
+        mDatabase.saveArticles(Collections.singletonList(article));
+
+        List<Article> loaded = mDatabase.loadArticles("newest", 10);
+        assertEquals(1, loaded.size());
+        Article read = loaded.get(0);
+        assertEquals(3 * DAY, read.getPublishedMillis());
+        assertEquals("Science", read.getArticleSection());
+        assertEquals("https://media.guim.co.uk/1.jpg", read.getThumbnailUrl());
+        assertEquals("Quantum computing", read.getArticleTitle());
+        assertEquals("Alex Hern", read.getArticleAuthor());
+        assertEquals("A <strong>big</strong> step", read.getArticleTrail());
+        assertEquals("https://www.theguardian.com/science/1", read.getArticleUrl());
+        assertEquals(3 * DAY, mDatabase.getNewestPublishedMillis());
+    }
+
+    @Test
+    public void loadArticles_followsTheOrderAndTheLimit() {
+        mDatabase.saveArticles(Arrays.asList(article("b", 2), article("c", 3), article("a", 1)));
+
+        assertEquals("[c, b, a]", titles(mDatabase.loadArticles("newest", 10)));
+        assertEquals("[a, b, c]", titles(mDatabase.loadArticles("oldest", 10)));
+        assertEquals("[c, b]", titles(mDatabase.loadArticles("relevance", 2)));
+    }
+
+    @Test
+    public void saveArticles_replacesTheArticleWithTheSameUrl() {
+        mDatabase.saveArticles(Collections.singletonList(
+                article("first", 1, "https://www.theguardian.com/science/1")));
+        mDatabase.saveArticles(Collections.singletonList(
+                article("second", 2, "https://www.theguardian.com/science/1")));
+
+        assertEquals("[second]", titles(mDatabase.loadArticles("newest", 10)));
+        // The index of the replaced article is dropped with it
+        assertTrue(mDatabase.search("first", 10).isEmpty());
+        assertEquals("[second]", titles(mDatabase.search("second", 10)));
+    }
+
+    @Test
+    public void saveArticles_dropsTheOldestArticlesPastTheLimit() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i <= ArticleDatabase.MAX_ARTICLES; i++) {
+            articles.add(article("title" + i, i + 1));
+        }
+        mDatabase.saveArticles(articles);
+
+        List<Article> loaded = mDatabase.loadArticles("oldest", 2 * ArticleDatabase.MAX_ARTICLES);
+        assertEquals(ArticleDatabase.MAX_ARTICLES, loaded.size());
+        assertEquals("title1", loaded.get(0).getArticleTitle());
+        assertTrue(mDatabase.search("title0", 10).isEmpty());
+    }
+
+    @Test
+    public void search_matchesEveryWordAndTheLastOneAsAPrefix() {
+        mDatabase.saveArticles(Arrays.asList(
+                new Article(2 * DAY, "Science", null, "Quantum computing", "Alex Hern",
+                        "A <strong>big</strong> step", "https://www.theguardian.com/science/1"),
+                new Article(DAY, "Technology", null, "Quantum leap", "Jane Doe", "",
+                        "https://www.theguardian.com/technology/2")));
+
+        assertEquals("[Quantum computing, Quantum leap]", titles(mDatabase.search("quantum", 10)));
+        assertEquals("[Quantum computing]", titles(mDatabase.search("Quantum comp", 10)));
+        assertEquals("[Quantum computing]", titles(mDatabase.search("hern", 10)));
+        assertEquals("[Quantum computing]", titles(mDatabase.search("big step", 10)));
+        // The HTML tags of the trail are not indexed
+        assertTrue(mDatabase.search("strong", 10).isEmpty());
+        assertTrue(mDatabase.search(" !? ", 10).isEmpty());
+    }
+
+    private static Article article(String title, int day) {
+        return article(title, day, "https://www.theguardian.com/science/" + title);
+    }
+
+    private static Article article(String title, int day, String url) {
+        return new Article(day * DAY, "Science", null, title, "", "", url);
+    }
+
+    private static String titles(List<Article> articles) {
+        List<String> titles = new ArrayList<>();
+        for (Article article : articles) {
+            titles.add(article.getArticleTitle());
+        }
+        return titles.toString();
+    }
+}
@@ -1,41 +1,69 @@
 package com.example.limmonica.newsapp;
 
-import android.text.TextUtils;
+import java.util.Arrays;
 
 /**
  * An {@link Article} contains information related to a single article.
+ * <p>
+ * Articles are kept in a compact form: the section and author are shared through the
+ * {@link ArticleStore}, urls are split into a shared prefix and a suffix of their own, and the
+ * publishing date is a primitive timestamp.
+ * <p>
+ * Articles parsed from a response keep their title, author and trail as the raw bytes they had
+ * in it, and decode each of them the first time it is read, so the articles which are never
+ * shown never build these Strings. Passes over every article, such as saving them, use
+ * {@link #decodeTitle()} and its siblings, which do not keep what they decode.
  */
 public class Article {
 
     private static String NO_VALUE_PROVIDED = null;
     /**
-     * Date of the article
+     * Publishing date of the article, in milliseconds since the epoch
      */
-    private String mDate;
+    private long mDate;
     /**
-     * Section of the article
+     * Section of the article, shared with the other articles of the section
      */
     private String mSection;
     /**
-     * Url of the article thumbnail
+     * Shared prefix of the url of the article thumbnail
      */
-    private String mThumbnailUrl = NO_VALUE_PROVIDED;
+    private String mThumbnailPrefix = NO_VALUE_PROVIDED;
     /**
-     * Title of the article
+     * Rest of the url of the article thumbnail
+     */
+    private String mThumbnailSuffix = NO_VALUE_PROVIDED;
+    /**
+     * Title of the article, null until decoded if the article has raw fields
      */
     private String mTitle;
     /**
-     * Author of the article
+     * Author of the article, shared with the other articles of the author, null until decoded
+     * if the article has raw fields
      */
     private String mAuthor;
     /**
-     * Trail/preview of the article
+     * Trail/preview of the article, null until decoded if the article has raw fields
      */
     private String mTrail;
     /**
-     * Url of the article
+     * Raw bytes of the title, author and trail one after the other, as they were in the
+     * response, or null if the article was built from Strings
+     */
+    private byte[] mRawFields;
+    /**
+     * End of the title and of the author in the raw fields
+     */
+    private int mTitleEnd;
+    private int mAuthorEnd;
+    /**
+     * Shared prefix of the url of the article
+     */
+    private String mUrlPrefix;
+    /**
+     * Rest of the url of the article
      */
-    private String mUrl;
+    private String mUrlSuffix;
 
     /**
      * Constructs a new {@link Article} object, with thumbnail.
@@ -50,13 +78,91 @@ public class Article {
      */
     Article(String date, String section, String thumbnailUrl, String title,
             String author, String trail, String url) {
-        mDate = date;
-        mSection = section;
-        mThumbnailUrl = thumbnailUrl;
+        this(ArticleStore.parseDate(date), section, thumbnailUrl, title, author, trail, url);
+    }
+
+    /**
+     * Constructs a new {@link Article} object from an already parsed publishing date, with or
+     * without thumbnail.
+     *
+     * @param publishedMillis is the publishing date of the article, in milliseconds since the
+     *                        epoch
+     * @param section         is the section the article belongs to
+     * @param thumbnailUrl    is the url of the image of the article, may be null
+     * @param title           is the title of the article
+     * @param author          is the author of the article
+     * @param trail           is the preview of the article
+     * @param url             is the url of the article
+     */
+    Article(long publishedMillis, String section, String thumbnailUrl, String title,
+            String author, String trail, String url) {
+        ArticleStore store = ArticleStore.getInstance();
+        int split = ArticleStore.urlSplit(url);
+        mDate = publishedMillis;
+        mSection = store.internSection(section);
         mTitle = title;
-        mAuthor = author;
+        mAuthor = store.internAuthor(author);
         mTrail = trail;
-        mUrl = url;
+        mUrlPrefix = store.internUrlPrefix(url.substring(0, split));
+        mUrlSuffix = url.substring(split);
+        if (thumbnailUrl != null && !thumbnailUrl.isEmpty()) {
+            int thumbnailSplit = ArticleStore.urlSplit(thumbnailUrl);
+            mThumbnailPrefix = store.internUrlPrefix(thumbnailUrl.substring(0, thumbnailSplit));
+            mThumbnailSuffix = thumbnailUrl.substring(thumbnailSplit);
+        }
+    }
+
+    /**
+     * Constructs a new {@link Article} object whose title, author and trail are decoded from
+     * their raw bytes when they are first read.
+     *
+     * @param publishedMillis is the publishing date of the article, in milliseconds since the
+     *                        epoch
+     * @param section         is the section the article belongs to
+     * @param thumbnailUrl    is the url of the image of the article, may be null
+     * @param rawFields       holds the raw bytes of the title, author and trail, one after the
+     *                        other, as {@link JsonPullParser#nextRawString} copied them
+     * @param titleEnd        is the end of the title in the raw fields
+     * @param authorEnd       is the end of the author in the raw fields
+     * @param url             is the url of the article
+     */
+    Article(long publishedMillis, String section, String thumbnailUrl, byte[] rawFields,
+            int titleEnd, int authorEnd, String url) {
+        this(publishedMillis, section, thumbnailUrl, null, null, null, url);
+        mRawFields = rawFields;
+        mTitleEnd = titleEnd;
+        mAuthorEnd = authorEnd;
+    }
+
+    /**
+     * Constructs a new {@link Article} object from urls already split into their shared prefix
+     * and the rest, as a {@link ResultSnapshot} stores them.
+     *
+     * @param publishedMillis is the publishing date of the article, in milliseconds since the
+     *                        epoch
+     * @param section         is the section the article belongs to
+     * @param thumbnailPrefix is the shared prefix of the url of the image, may be null
+     * @param thumbnailSuffix is the rest of the url of the image, null if there is no image
+     * @param title           is the title of the article
+     * @param author          is the author of the article
+     * @param trail           is the preview of the article
+     * @param urlPrefix       is the shared prefix of the url of the article
+     * @param urlSuffix       is the rest of the url of the article
+     */
+    Article(long publishedMillis, String section, String thumbnailPrefix, String thumbnailSuffix,
+            String title, String author, String trail, String urlPrefix, String urlSuffix) {
+        ArticleStore store = ArticleStore.getInstance();
+        mDate = publishedMillis;
+        mSection = store.internSection(section);
+        mTitle = title;
+        mAuthor = store.internAuthor(author);
+        mTrail = trail;
+        mUrlPrefix = store.internUrlPrefix(urlPrefix);
+        mUrlSuffix = urlSuffix;
+        if (thumbnailSuffix != null) {
+            mThumbnailPrefix = store.internUrlPrefix(thumbnailPrefix);
+            mThumbnailSuffix = thumbnailSuffix;
+        }
     }
 
     /**
@@ -71,18 +177,21 @@ public class Article {
      */
     public Article(String date, String section, String title,
                    String author, String trail, String url) {
-        mDate = date;
-        mSection = section;
-        mTitle = title;
-        mAuthor = author;
-        mTrail = trail;
-        mUrl = url;
+        this(ArticleStore.parseDate(date), section, null, title, author, trail, url);
     }
 
     /**
-     * @return the date of the article
+     * @return the date of the article, in The Guardian format (i.e. "2018-08-22T10:15:30Z")
      */
     public String getArticleDate() {
+        return ArticleStore.formatDate(mDate);
+    }
+
+    /**
+     * @return the date of the article in milliseconds since the epoch, or
+     * {@link ArticleStore#NO_DATE} if it is unknown
+     */
+    public long getPublishedMillis() {
         return mDate;
     }
 
@@ -97,38 +206,181 @@ public class Article {
      * @return the thumbnail of the article
      */
     public String getThumbnailUrl() {
-        return mThumbnailUrl;
+        return mThumbnailSuffix == null ? null : mThumbnailPrefix + mThumbnailSuffix;
     }
 
     public boolean hasThumbnail() {
-        return !TextUtils.isEmpty(mThumbnailUrl);
+        return mThumbnailSuffix != null;
     }
 
     /**
      * @return the title of the article
      */
     public String getArticleTitle() {
-        return mTitle;
+        // A race between two threads only decodes the title twice
+        String title = mTitle;
+        if (title == null && mRawFields != null) {
+            title = decodeTitle();
+            mTitle = title;
+        }
+        return title;
     }
 
     /**
      * @return the author of the article
      */
     public String getArticleAuthor() {
-        return mAuthor;
+        String author = mAuthor;
+        if (author == null && mRawFields != null) {
+            author = ArticleStore.getInstance().internAuthor(decodeAuthor());
+            mAuthor = author;
+        }
+        return author;
     }
 
     /**
      * @return the trail of the article
      */
     public String getArticleTrail() {
-        return mTrail;
+        String trail = mTrail;
+        if (trail == null && mRawFields != null) {
+            trail = decodeTrail();
+            mTrail = trail;
+        }
+        return trail;
+    }
+
+    /**
+     * @return the title of the article, decoded without being kept if it has not been read yet
+     */
+    String decodeTitle() {
+        String title = mTitle;
+        if (title == null && mRawFields != null) {
+            title = JsonPullParser.decodeRaw(mRawFields, 0, mTitleEnd);
+        }
+        return title;
+    }
+
+    /**
+     * @return the author of the article, decoded without being kept if it has not been read yet
+     */
+    String decodeAuthor() {
+        String author = mAuthor;
+        if (author == null && mRawFields != null) {
+            author = JsonPullParser.decodeRaw(mRawFields, mTitleEnd, mAuthorEnd);
+        }
+        return author;
+    }
+
+    /**
+     * @return the trail of the article, decoded without being kept if it has not been read yet
+     */
+    String decodeTrail() {
+        String trail = mTrail;
+        if (trail == null && mRawFields != null) {
+            trail = JsonPullParser.decodeRaw(mRawFields, mAuthorEnd, mRawFields.length);
+        }
+        return trail;
+    }
+
+    /**
+     * @return true if none of the title, author and trail has been decoded and kept
+     */
+    boolean isUndecoded() {
+        return mRawFields != null && mTitle == null && mAuthor == null && mTrail == null;
+    }
+
+    /**
+     * Estimates the memory held by the article once its fields are read: the object itself, the
+     * Strings of its own, and the raw fields along with what they decode to. The section, the
+     * author and the url prefixes are shared with other articles and not counted.
+     *
+     * @return the approximate size of the article, in bytes
+     */
+    int estimateSize() {
+        int size = 64 + sizeOf(mUrlSuffix) + sizeOf(mThumbnailSuffix);
+        if (mRawFields != null) {
+            // Each raw byte decodes to at most one char, of two bytes
+            return size + 16 + 3 * mRawFields.length + 3 * 40;
+        }
+        return size + sizeOf(mTitle) + sizeOf(mTrail);
+    }
+
+    /**
+     * @return the approximate size of a String, in bytes
+     */
+    private static int sizeOf(String value) {
+        return value == null ? 0 : 40 + 2 * value.length();
     }
 
     /**
      * @return the url of the article
      */
     public String getArticleUrl() {
-        return mUrl;
+        return mUrlPrefix + mUrlSuffix;
+    }
+
+    /**
+     * Two articles are the same story when they have the same url
+     *
+     * @param other is the article to compare to
+     * @return true if both articles point to the same url
+     */
+    public boolean isSameArticle(Article other) {
+        return equal(mUrlSuffix, other.mUrlSuffix) && equal(mUrlPrefix, other.mUrlPrefix);
+    }
+
+    /**
+     * @return true if the other object is an {@link Article} with the same content
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof Article)) {
+            return false;
+        }
+        Article article = (Article) other;
+        if (!isSameArticle(article)
+                || mDate != article.mDate
+                || !equal(mSection, article.mSection)
+                || !equal(mThumbnailPrefix, article.mThumbnailPrefix)
+                || !equal(mThumbnailSuffix, article.mThumbnailSuffix)) {
+            return false;
+        }
+        // The same raw bytes always decode to the same fields, which spares decoding them to
+        // compare two copies of an article
+        if (mRawFields != null && article.mRawFields != null
+                && mTitleEnd == article.mTitleEnd && mAuthorEnd == article.mAuthorEnd
+                && Arrays.equals(mRawFields, article.mRawFields)) {
+            return true;
+        }
+        return equal(decodeTitle(), article.decodeTitle())
+                && equal(decodeAuthor(), article.decodeAuthor())
+                && equal(decodeTrail(), article.decodeTrail());
+    }
+
+    /**
+     * @return a hash code of the url, which equal articles share, so hashing an article does not
+     * decode its raw fields
+     */
+    @Override
+    public int hashCode() {
+        return 31 * hash(mUrlPrefix) + hash(mUrlSuffix);
+    }
+
+    /**
+     * Null-safe equality of two values
+     */
+    private static boolean equal(Object a, Object b) {
+        return a == b || (a != null && a.equals(b));
+    }
+
+    /**
+     * Null-safe hash code of a value
+     */
+    private static int hash(Object value) {
+        return value == null ? 0 : value.hashCode();
     }
-}
\ No newline at end of file
+}
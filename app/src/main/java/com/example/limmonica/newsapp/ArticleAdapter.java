@@ -4,49 +4,72 @@ import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.support.annotation.NonNull;
-import android.support.v4.content.ContextCompat;
+import android.support.v7.recyclerview.extensions.AsyncDifferConfig;
+import android.support.v7.recyclerview.extensions.AsyncListDiffer;
+import android.support.v7.util.AdapterListUpdateCallback;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.RecyclerView;
-import android.text.Html;
-import android.text.TextUtils;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 
-import com.squareup.picasso.Picasso;
-
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
 /**
  * An {@link ArticleAdapter} knows how to create a list item layout for each article in the
- * data source (a list of {@link Article} objects).
+ * data source (a list of {@link ArticleRow} objects).
  * <p>
  * These list item layouts will be provided to a {@link RecyclerView} to be displayed to the
  * user.
+ * <p>
+ * A list of up to {@link #MAX_DIFFED_ROWS} rows is copied, and compared with the list it replaces
+ * on a background thread. A longer list, typically an {@link ArticleWindow}, is read in place
+ * instead, as copying it would format every one of its rows: it is redrawn as a whole when it is
+ * replaced, and only its new rows are inserted when rows are appended to it.
  */
 public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleViewHolder> {
 
-    // Tag for the log messages
-    private static final String LOG_TAG = ArticleAdapter.class.getSimpleName();
-    // Constant value String for the Author name
-    private static final String AUTHOR_LABEL = "by ";
-    // Constant value String for the Section title
-    private static final String SECTION_SEP = " / ";
-    // Initialization of the list of articles
-    private List<Article> mArticles;
+    // Identifies rows by the url of their article and compares the rest of the content
+    private static final DiffUtil.ItemCallback<ArticleRow> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<ArticleRow>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull ArticleRow oldRow,
+                                               @NonNull ArticleRow newRow) {
+                    return oldRow.getArticle().isSameArticle(newRow.getArticle());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull ArticleRow oldRow,
+                                                  @NonNull ArticleRow newRow) {
+                    return oldRow.getArticle().equals(newRow.getArticle());
+                }
+            };
+    // Constant value for the largest number of rows copied and compared, as many as a window
+    // keeps formatted
+    private static final int MAX_DIFFED_ROWS = ArticleWindow.CAPACITY;
+
+    // Holds the list of rows, computing the changes between two lists on a background thread
+    private final AsyncListDiffer<ArticleRow> mDiffer;
+    // Whether the changes computed by the differ are kept from the adapter, while it is emptied
+    // or filled in place of a long list
+    private boolean mMuted;
+    // The long list of rows read in place of the differ's, or null
+    private List<ArticleRow> mLongRows;
+    // Number of rows of the long list as of the last update
+    private int mLongCount;
     // Initialization of the layout inflater
     private LayoutInflater mInflater;
     // Initialization of the context
     private Context mContext;
+    // Loads the thumbnails at the size of the view and fetches the ones about to be shown
+    private final ThumbnailLoader mThumbnailLoader;
 
     /**
      * Creates a new {@link ArticleAdapter}
@@ -54,10 +77,64 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
      * @param context  is the context
      * @param articles is the data passed into the constructor
      */
-    ArticleAdapter(Context context, List<Article> articles) {
+    ArticleAdapter(Context context, List<ArticleRow> articles) {
         this.mInflater = LayoutInflater.from(context);
-        this.mArticles = articles;
+        final ListUpdateCallback updates = new AdapterListUpdateCallback(this);
+        this.mDiffer = new AsyncListDiffer<>(new ListUpdateCallback() {
+            @Override
+            public void onInserted(int position, int count) {
+                if (!mMuted) {
+                    updates.onInserted(position, count);
+                }
+            }
+
+            @Override
+            public void onRemoved(int position, int count) {
+                if (!mMuted) {
+                    updates.onRemoved(position, count);
+                }
+            }
+
+            @Override
+            public void onMoved(int fromPosition, int toPosition) {
+                if (!mMuted) {
+                    updates.onMoved(fromPosition, toPosition);
+                }
+            }
+
+            @Override
+            public void onChanged(int position, int count, Object payload) {
+                if (!mMuted) {
+                    updates.onChanged(position, count, payload);
+                }
+            }
+        }, new AsyncDifferConfig.Builder<ArticleRow>(DIFF_CALLBACK).build());
         this.mContext = context;
+        this.mThumbnailLoader = new ThumbnailLoader(new ThumbnailLoader.ThumbnailSource() {
+            @Override
+            public int getCount() {
+                return getItemCount();
+            }
+
+            @Override
+            public String getThumbnailUrl(int position) {
+                return getRow(position).getArticle().getThumbnailUrl();
+            }
+        });
+        addAll(articles);
+    }
+
+    /**
+     * Starts fetching the thumbnails ahead of the scroll of the list the adapter is attached to
+     */
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(mThumbnailLoader);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(mThumbnailLoader);
     }
 
     /**
@@ -89,45 +166,27 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
      */
     @Override
     public void onBindViewHolder(@NonNull ArticleViewHolder holder, int position) {
-        // Find the article at the given position in the list of articles
-        Article currentArticle = mArticles.get(position);
-
-        // Get the section of the current article and store it into a String
-        String sectionTitle = currentArticle.getArticleSection();
+        long start = LoadMetrics.start();
+        // Find the row at the given position in the list, already formatted by the loader
+        ArticleRow currentRow = getRow(position);
+        Article currentArticle = currentRow.getArticle();
+        int sectionColor = currentRow.getSectionColor();
 
         // Set the color of the View background to the specific color of the section
-        holder.separatorView.setBackgroundColor(getSectionColor(sectionTitle));
+        holder.separatorView.setBackgroundColor(sectionColor);
 
-        // Add a separator " / " to the section text
-        String sectionLine = sectionTitle + SECTION_SEP;
         // Display the section of the current article in that TextView
-        holder.sectionView.setText(sectionLine);
+        holder.sectionView.setText(currentRow.getSectionLine());
         // Set the color of the section text to the specific color of the section
-        holder.sectionView.setTextColor(getSectionColor(sectionTitle));
-
-        // Get the date string of the current article
-        String dateString = currentArticle.getArticleDate();
-        // Assign to it a date format
-        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ss'Z'", Locale.getDefault());
-        try {
-            // Parse the date in the given String format
-            Date mDate = dateFormat.parse(dateString);
-            // Get the time in milliseconds from the date
-            long timeInMilliseconds = mDate.getTime();
-            // Create a new Date object from the time in milliseconds of the article
-            Date dateObject = new Date(timeInMilliseconds);
-            // Format the date string (i.e. "Apr 25, 2016")
-            String formattedDate = formatDate(dateObject);
-            // Display the date of the current article in that TextView
-            holder.dateView.setText(formattedDate);
-        } catch (ParseException e) {
-            Log.v(LOG_TAG, "Problems with parsing the date", e);
-        }
+        holder.sectionView.setTextColor(sectionColor);
+
+        // Display the date of the current article in that TextView
+        holder.dateView.setText(currentRow.getFormattedDate());
 
         // If the current article has thumbnail image
         if (currentArticle.hasThumbnail()) {
-            // Load and set the Thumbnail image on the Image View
-            Picasso.get().load(currentArticle.getThumbnailUrl()).into(holder.thumbnailView);
+            // Load and set the Thumbnail image on the Image View, at the size of the view
+            mThumbnailLoader.load(currentArticle.getThumbnailUrl(), holder.thumbnailView);
             // Make sure the view is visible
             holder.thumbnailView.setVisibility(View.VISIBLE);
         } else {
@@ -138,18 +197,13 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
         // Display the title of the current article in that TextView
         holder.titleView.setText(currentArticle.getArticleTitle());
 
-        // Get the String with the author name of the article
-        String authorName = currentArticle.getArticleAuthor();
         // Check if an author is provided
-        if (!TextUtils.isEmpty(authorName)) {
-            // String variable to store the author line
-            String authorLine;
-            // Create the author line by adding "by " before the author name
-            authorLine = AUTHOR_LABEL + authorName;
+        String authorLine = currentRow.getAuthorLine();
+        if (authorLine != null) {
             // Display the author of the current article in that TextView
             holder.authorView.setText(authorLine);
             // Set the color of the text to the specific color of the section
-            holder.authorView.setTextColor(getSectionColor((sectionTitle)));
+            holder.authorView.setTextColor(sectionColor);
             // Make sure the view is visible
             holder.authorView.setVisibility(View.VISIBLE);
         } else {
@@ -157,12 +211,21 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
             holder.authorView.setVisibility(View.GONE);
         }
 
-        // Strip the HTML from text and display the trail - a short preview - of the current
-        // article in that TextView
-        holder.trailView.setText(Html.fromHtml(currentArticle
-                .getArticleTrail()
-                .replaceAll("\n", "")
-                .trim()));
+        // Display the trail - a short preview - of the current article in that TextView
+        holder.trailView.setText(currentRow.getTrail());
+
+        LoadMetrics.getInstance().recordSince(LoadMetrics.Phase.BIND, start);
+    }
+
+    /**
+     * Called by {@link RecyclerView} when a row is scrolled off screen and its views are about to
+     * be reused, so the thumbnail requested for it is no longer needed.
+     *
+     * @param holder is the {@link ArticleViewHolder} being recycled
+     */
+    @Override
+    public void onViewRecycled(@NonNull ArticleViewHolder holder) {
+        mThumbnailLoader.cancel(holder.thumbnailView);
     }
 
     /**
@@ -170,94 +233,72 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
      */
     @Override
     public int getItemCount() {
-        return mArticles.size();
+        return mLongRows != null ? mLongCount : mDiffer.getCurrentList().size();
     }
 
     /**
-     * Updates the {@link List<Article>}
-     *
-     * @param articles is the list of articles to be added to the data set held by the adapter
+     * @return the row at the given position
      */
-    public void addAll(List<Article> articles) {
-        mArticles = articles;
+    private ArticleRow getRow(int position) {
+        return mLongRows != null
+                ? mLongRows.get(position) : mDiffer.getCurrentList().get(position);
     }
 
     /**
-     * Return the formatted date string (i.e. "Mar 3, 1984") from a Date object.
+     * Updates the {@link List<ArticleRow>}. If both lists are short, the difference with the
+     * current list is computed on a background thread and only the rows which were inserted,
+     * removed, moved or changed are then updated, so there is no need to notify the adapter.
+     *
+     * @param articles is the list of rows to be held by the adapter, which is copied so the
+     *                 caller can keep changing it if it is short. A long list is read in place,
+     *                 so it must be handed again as soon as it changes
      */
-    private String formatDate(Date dateObject) {
-        // Create a new pattern of date format
-        SimpleDateFormat dateFormat = new SimpleDateFormat("LLL dd, yyyy", Locale.getDefault());
-        // Return the dateObject formatted following the pattern
-        return dateFormat.format(dateObject);
+    public void addAll(List<ArticleRow> articles) {
+        mThumbnailLoader.reset();
+        if (articles.size() <= MAX_DIFFED_ROWS) {
+            if (mLongRows == null) {
+                mDiffer.submitList(new ArrayList<>(articles));
+                return;
+            }
+            // The differ starts from an empty list, while the adapter had the long one
+            mLongRows = null;
+            mMuted = true;
+            mDiffer.submitList(new ArrayList<>(articles));
+            mMuted = false;
+        } else {
+            if (mLongRows == null) {
+                // Dropping the differ's list also drops any comparison still running
+                mMuted = true;
+                mDiffer.submitList(null);
+                mMuted = false;
+            }
+            mLongRows = articles;
+            mLongCount = articles.size();
+        }
+        notifyDataSetChanged();
     }
 
     /**
-     * Returns the color of the background of the layout containing the section of the article
+     * Updates the {@link List<ArticleRow>} after rows were appended to it, inserting only the new
+     * rows of a long list
      *
-     * @param sectionTitle is the title of the section
-     * @return the color
+     * @param articles is the list of rows held by the adapter, with rows added at its end
      */
-    private int getSectionColor(String sectionTitle) {
-
-        // Initialization of the variable which will hold the color
-        int sectionColor;
-
-        // Assign the colors based on the title of the section
-        switch (sectionTitle) {
-            case "News":
-            case "World news":
-            case "UK news":
-            case "US news":
-            case "Australia news":
-            case "Technology":
-            case "Science":
-            case "Cities":
-            case "Global development":
-            case "Business":
-            case "Society":
-            case "Education":
-            case "Environment":
-            case "Politics":
-                sectionColor = R.color.news;
-                break;
-            case "Opinion":
-                sectionColor = R.color.opinion;
-                break;
-            case "Sport":
-                sectionColor = R.color.sport;
-                break;
-            case "Culture":
-            case "Film":
-            case "Music":
-            case "TV and radio":
-            case "Books":
-            case "Art and design":
-            case "Stage":
-            case "Games":
-            case "Classical":
-                sectionColor = R.color.culture;
-                break;
-            case "Lifestyle":
-            case "Fashion":
-            case "Food":
-            case "Travel":
-            case "Health and fitness":
-            case "Women":
-            case "Love and sex":
-            case "Beauty":
-            case "Home and garden":
-            case "Money":
-            case "Cars":
-                sectionColor = R.color.lifestyle;
-                break;
-            default:
-                sectionColor = R.color.other;
-                break;
+    public void addAppended(List<ArticleRow> articles) {
+        if (mLongRows != articles) {
+            addAll(articles);
+            return;
         }
+        int count = mLongCount;
+        mLongCount = articles.size();
+        notifyItemRangeInserted(count, mLongCount - count);
+    }
 
-        // Return the color based on the section title
-        return ContextCompat.getColor(mContext, sectionColor);
+    /**
+     * @return the loader of the thumbnails of the list
+     */
+    ThumbnailLoader getThumbnailLoader() {
+        return mThumbnailLoader;
     }
 
     /**
@@ -301,7 +342,7 @@ public class ArticleAdapter extends RecyclerView.Adapter<ArticleAdapter.ArticleV
         @Override
         public void onClick(View view) {
             // Find the current layout that was clicked on
-            Article currentArticle = mArticles.get(getLayoutPosition());
+            Article currentArticle = getRow(getLayoutPosition()).getArticle();
             // Convert the String Url into a Uri object (to pass into the Intent constructor)
             Uri articleUri = Uri.parse(currentArticle.getArticleUrl());
             // Create a new intent to view the article Uri
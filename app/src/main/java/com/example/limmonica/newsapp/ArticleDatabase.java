@@ -0,0 +1,255 @@
+package com.example.limmonica.newsapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the articles of every successful load on disk, so the list can be shown straight away on
+ * a cold start or without a network connection.
+ * <p>
+ * The articles are held in a plain table ordered by publishing date, next to a full-text index
+ * of their title, trail and byline. The index is an FTS3 table, which every supported version of
+ * Android ships, whose rows share the id of the article they index. It answers the searches made
+ * without a network connection, over every article held rather than only those shown.
+ */
+final class ArticleDatabase extends SQLiteOpenHelper {
+
+    // Name of the database file
+    private static final String DATABASE_NAME = "articles.db";
+    // Version of the database schema
+    private static final int DATABASE_VERSION = 1;
+
+    // Constant value for the number of articles kept, the oldest ones are dropped past it
+    static final int MAX_ARTICLES = 1000;
+
+    // Value of the "order-by" preference listing the oldest articles first
+    private static final String ORDER_BY_OLDEST = "oldest";
+
+    // Columns read back into an article, in the order of the Cursor
+    private static final String ARTICLE_COLUMNS =
+            "a.published, a.section, a.thumbnail, a.title, a.author, a.trail, a.url";
+
+    // Matches the words of a search
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    // Matches the HTML tags of a trail, which are left out of the index
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+
+    // The database shared by the whole app
+    private static ArticleDatabase sInstance;
+
+    /**
+     * Creates a {@link ArticleDatabase}
+     *
+     * @param context is the context of the app
+     * @param name    is the name of the database file, or null for a database held in memory
+     */
+    ArticleDatabase(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    /**
+     * @return the database shared by the whole app
+     */
+    static synchronized ArticleDatabase getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ArticleDatabase(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return sInstance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE articles ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "url TEXT NOT NULL UNIQUE, "
+                + "published INTEGER NOT NULL, "
+                + "section TEXT, "
+                + "thumbnail TEXT, "
+                + "title TEXT, "
+                + "author TEXT, "
+                + "trail TEXT)");
+        db.execSQL("CREATE INDEX articles_published ON articles (published)");
+        db.execSQL("CREATE VIRTUAL TABLE articles_fts USING fts3 (title, trail, author)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // The articles are a copy of what the API returns, they are simply loaded again
+        db.execSQL("DROP TABLE IF EXISTS articles_fts");
+        db.execSQL("DROP TABLE IF EXISTS articles");
+        onCreate(db);
+    }
+
+    /**
+     * Adds the articles of a load to the database, replacing the ones already held with the same
+     * url, and drops the oldest articles past {@link #MAX_ARTICLES}.
+     *
+     * @param articles is the list of articles to save
+     */
+    void saveArticles(List<Article> articles) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement unindex = db.compileStatement("DELETE FROM articles_fts WHERE docid ="
+                    + " (SELECT _id FROM articles WHERE url = ?)");
+            SQLiteStatement insert = db.compileStatement("INSERT OR REPLACE INTO articles"
+                    + " (url, published, section, thumbnail, title, author, trail)"
+                    + " VALUES (?, ?, ?, ?, ?, ?, ?)");
+            SQLiteStatement index = db.compileStatement("INSERT INTO articles_fts"
+                    + " (docid, title, trail, author) VALUES (?, ?, ?, ?)");
+            for (Article article : articles) {
+                String url = article.getArticleUrl();
+                // Decoded without being kept by the article, which only keeps what is shown
+                String title = article.decodeTitle();
+                String author = article.decodeAuthor();
+                String trail = article.decodeTrail();
+                unindex.bindString(1, url);
+                unindex.executeUpdateDelete();
+
+                insert.bindString(1, url);
+                insert.bindLong(2, article.getPublishedMillis());
+                bindOptional(insert, 3, article.getArticleSection());
+                bindOptional(insert, 4, article.getThumbnailUrl());
+                bindOptional(insert, 5, title);
+                bindOptional(insert, 6, author);
+                bindOptional(insert, 7, trail);
+                long id = insert.executeInsert();
+
+                index.bindLong(1, id);
+                bindOptional(index, 2, title);
+                bindOptional(index, 3, stripTags(trail));
+                bindOptional(index, 4, author);
+                index.executeInsert();
+            }
+            unindex.close();
+            insert.close();
+            index.close();
+            // Keep the newest articles only
+            String oldest = "SELECT _id FROM articles ORDER BY published DESC LIMIT -1 OFFSET "
+                    + MAX_ARTICLES;
+            db.execSQL("DELETE FROM articles_fts WHERE docid IN (" + oldest + ")");
+            db.execSQL("DELETE FROM articles WHERE _id IN (" + oldest + ")");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the articles held by the database, in the order of the "order-by" preference.
+     *
+     * @param orderBy is the value of the "order-by" preference, articles ordered by relevance
+     *                are listed newest first
+     * @param limit   is the largest number of articles returned
+     * @return the list of articles
+     */
+    List<Article> loadArticles(String orderBy, int limit) {
+        String direction = ORDER_BY_OLDEST.equals(orderBy) ? "ASC" : "DESC";
+        return readArticles(getReadableDatabase().rawQuery("SELECT " + ARTICLE_COLUMNS
+                + " FROM articles a ORDER BY a.published " + direction + " LIMIT " + limit, null));
+    }
+
+    /**
+     * @return the publishing date of the newest article held, in milliseconds since the epoch,
+     * or {@link ArticleStore#NO_DATE} if there is none
+     */
+    long getNewestPublishedMillis() {
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT MAX(published) FROM articles"
+                + " WHERE published != " + ArticleStore.NO_DATE, null);
+        try {
+            return cursor.moveToFirst() && !cursor.isNull(0)
+                    ? cursor.getLong(0) : ArticleStore.NO_DATE;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the articles whose title, trail or byline hold every word of a search, the newest
+     * first. The last word of the search also matches the words it starts, so the results can
+     * follow what is being typed.
+     *
+     * @param query is the text of the search
+     * @param limit is the largest number of articles returned
+     * @return the list of articles, empty if the search holds no word
+     */
+    List<Article> search(String query, int limit) {
+        String match = toMatchExpression(query);
+        if (match.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return readArticles(getReadableDatabase().rawQuery("SELECT " + ARTICLE_COLUMNS
+                        + " FROM articles_fts f JOIN articles a ON a._id = f.docid"
+                        + " WHERE articles_fts MATCH ? ORDER BY a.published DESC LIMIT " + limit,
+                new String[]{match}));
+    }
+
+    /**
+     * Builds an FTS expression requiring every word of a search, the last one as a prefix
+     */
+    private static String toMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        Matcher matcher = WORD.matcher(query == null ? "" : query);
+        while (matcher.find()) {
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(matcher.group());
+        }
+        if (match.length() > 0) {
+            match.append('*');
+        }
+        return match.toString();
+    }
+
+    /**
+     * Reads the articles of a query on {@link #ARTICLE_COLUMNS} and closes its Cursor
+     */
+    private static List<Article> readArticles(Cursor cursor) {
+        List<Article> articles = new ArrayList<>(cursor.getCount());
+        try {
+            while (cursor.moveToNext()) {
+                articles.add(new Article(cursor.getLong(0), optString(cursor, 1),
+                        cursor.getString(2), optString(cursor, 3), optString(cursor, 4),
+                        optString(cursor, 5), cursor.getString(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return articles;
+    }
+
+    /**
+     * @return the value of a column, or an empty String for NULL
+     */
+    private static String optString(Cursor cursor, int column) {
+        String value = cursor.getString(column);
+        return value == null ? "" : value;
+    }
+
+    /**
+     * Binds a value which may be null
+     */
+    private static void bindOptional(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+
+    /**
+     * @return the text of a trail without its HTML tags
+     */
+    private static String stripTags(String trail) {
+        return trail == null ? null : TAG.matcher(trail).replaceAll(" ");
+    }
+}
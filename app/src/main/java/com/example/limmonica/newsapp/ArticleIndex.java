@@ -0,0 +1,393 @@
+package com.example.limmonica.newsapp;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An in-memory inverted index of the words of a list of articles, answering searches as the user
+ * types without going back to the server.
+ * <p>
+ * Articles are added one after the other and identified by their position, from 0. The words of
+ * their title, trail and author are normalized: lower cased, stripped of their accents, and the
+ * markup of the trails is left out. Each word of a query matches the words of the index which
+ * start with it, and an article matches when it holds a match for every word of the query.
+ * <p>
+ * Adding an article looks its words up in a hash table straight from the characters of its
+ * fields, so only the words never seen before become Strings. A search walks the range of the
+ * sorted words sharing its prefix, and never looks at an article which does not match. An index
+ * can be filled on a background thread while it is searched from another one.
+ */
+final class ArticleIndex {
+
+    // Constant value for the initial number of slots of the table of words, a power of two
+    private static final int INITIAL_CAPACITY = 256;
+    // Constant value for the initial number of positions of a word
+    private static final int INITIAL_POSTINGS = 4;
+
+    // Sorts the words alphabetically
+    private static final Comparator<Word> BY_TEXT = new Comparator<Word>() {
+        @Override
+        public int compare(Word a, Word b) {
+            return a.mText.compareTo(b.mText);
+        }
+    };
+
+    // The words, by hash of their text
+    private Word[] mTable = new Word[INITIAL_CAPACITY];
+    // Number of distinct words
+    private int mWordCount;
+    // The words in alphabetical order, or null once a word has been added since they were sorted
+    private Word[] mSorted;
+    // Reads the words of the fields of the articles added
+    private final Tokenizer mTokenizer = new Tokenizer();
+    // Number of articles added
+    private int mSize;
+
+    /**
+     * Adds an article to the index, after the ones already added
+     *
+     * @param article is the article
+     * @return the position of the article
+     */
+    synchronized int add(Article article) {
+        int position = mSize++;
+        // Decoding without keeping the fields leaves the articles no one reads as small as they
+        // were
+        addWords(article.decodeTitle(), position);
+        addWords(article.decodeTrail(), position);
+        addWords(article.decodeAuthor(), position);
+        return position;
+    }
+
+    /**
+     * @return the number of articles added
+     */
+    synchronized int size() {
+        return mSize;
+    }
+
+    /**
+     * @return the number of distinct words of the articles added
+     */
+    synchronized int getWordCount() {
+        return mWordCount;
+    }
+
+    /**
+     * Removes every article
+     */
+    synchronized void clear() {
+        mTable = new Word[INITIAL_CAPACITY];
+        mWordCount = 0;
+        mSorted = null;
+        mSize = 0;
+    }
+
+    /**
+     * Finds the articles matching a query
+     *
+     * @param query is the text typed by the user
+     * @return the positions of the matching articles in increasing order, or of every article
+     * if the query has no word
+     */
+    synchronized int[] search(String query) {
+        Word[] sorted = sortedWords();
+        BitSet matches = null;
+        for (String prefix : tokenize(query)) {
+            BitSet prefixMatches = new BitSet(mSize);
+            for (int i = lowerBound(sorted, prefix); i < sorted.length
+                    && sorted[i].mText.startsWith(prefix); i++) {
+                sorted[i].addTo(prefixMatches);
+            }
+            if (matches == null) {
+                matches = prefixMatches;
+            } else {
+                matches.and(prefixMatches);
+            }
+            if (matches.isEmpty()) {
+                return new int[0];
+            }
+        }
+        int[] positions = new int[matches == null ? mSize : matches.cardinality()];
+        if (matches == null) {
+            for (int i = 0; i < mSize; i++) {
+                positions[i] = i;
+            }
+        } else {
+            int count = 0;
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                positions[count++] = i;
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Splits a text into normalized words: runs of letters and digits, lower cased and stripped
+     * of their accents. HTML tags and entities are skipped.
+     *
+     * @param text is the text
+     * @return the list of words, in the order of the text
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.reset(text);
+        while (tokenizer.next()) {
+            words.add(new String(tokenizer.mChars, 0, tokenizer.mLength));
+        }
+        return words;
+    }
+
+    /**
+     * Adds the words of a text to the index
+     */
+    private void addWords(String text, int position) {
+        if (text == null) {
+            return;
+        }
+        Tokenizer tokenizer = mTokenizer;
+        tokenizer.reset(text);
+        while (tokenizer.next()) {
+            find(tokenizer.mChars, tokenizer.mLength, tokenizer.mHash).add(position);
+        }
+    }
+
+    /**
+     * @return the word of the given characters, added to the table if it is not there yet
+     */
+    private Word find(char[] chars, int length, int hash) {
+        int slot = hash & (mTable.length - 1);
+        for (Word word = mTable[slot]; word != null; word = word.mNext) {
+            if (word.mHash == hash && word.matches(chars, length)) {
+                return word;
+            }
+        }
+        Word word = new Word(new String(chars, 0, length), hash, mTable[slot]);
+        mTable[slot] = word;
+        mSorted = null;
+        if (++mWordCount > mTable.length * 3 / 4) {
+            grow();
+        }
+        return word;
+    }
+
+    /**
+     * Doubles the number of slots of the table of words
+     */
+    private void grow() {
+        Word[] table = new Word[mTable.length * 2];
+        for (Word head : mTable) {
+            Word word = head;
+            while (word != null) {
+                Word next = word.mNext;
+                int slot = word.mHash & (table.length - 1);
+                word.mNext = table[slot];
+                table[slot] = word;
+                word = next;
+            }
+        }
+        mTable = table;
+    }
+
+    /**
+     * @return the words in alphabetical order, sorted again only if words were added since
+     */
+    private Word[] sortedWords() {
+        if (mSorted == null) {
+            Word[] sorted = new Word[mWordCount];
+            int count = 0;
+            for (Word head : mTable) {
+                for (Word word = head; word != null; word = word.mNext) {
+                    sorted[count++] = word;
+                }
+            }
+            Arrays.sort(sorted, BY_TEXT);
+            mSorted = sorted;
+        }
+        return mSorted;
+    }
+
+    /**
+     * @return the index of the first word which is not before the given text
+     */
+    private static int lowerBound(Word[] sorted, String text) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (sorted[middle].mText.compareTo(text) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * A word of the index and the positions of the articles holding it, in increasing order
+     */
+    private static final class Word {
+
+        // The normalized text of the word
+        final String mText;
+        // The hash of the text, as computed by the tokenizer
+        final int mHash;
+        // The next word of the same slot of the table
+        Word mNext;
+        // The positions, the first mCount of which are used
+        private int[] mPositions = new int[INITIAL_POSTINGS];
+        // Number of positions
+        private int mCount;
+
+        Word(String text, int hash, Word next) {
+            mText = text;
+            mHash = hash;
+            mNext = next;
+        }
+
+        /**
+         * @return true if the word is made of the given characters
+         */
+        boolean matches(char[] chars, int length) {
+            if (mText.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (mText.charAt(i) != chars[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Adds a position, which is never lower than the ones already added
+         */
+        void add(int position) {
+            // A word found twice in the same article is only kept once
+            if (mCount > 0 && mPositions[mCount - 1] == position) {
+                return;
+            }
+            if (mCount == mPositions.length) {
+                mPositions = Arrays.copyOf(mPositions, mCount * 2);
+            }
+            mPositions[mCount++] = position;
+        }
+
+        /**
+         * Marks the positions in the given set
+         */
+        void addTo(BitSet positions) {
+            for (int i = 0; i < mCount; i++) {
+                positions.set(mPositions[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads the normalized words of a text one after the other into a buffer of its own, which
+     * is reused from one word and one text to the next
+     */
+    private static final class Tokenizer {
+
+        // Constant value for the characters which are folded through the table, which covers
+        // the accented letters of the Latin alphabets
+        private static final int FOLDED_CHARS = 0x250;
+        // The lower case, unaccented form of each of those characters
+        private static final char[] FOLDED = new char[FOLDED_CHARS];
+
+        static {
+            for (char c = 0; c < FOLDED_CHARS; c++) {
+                char lower = Character.toLowerCase(c);
+                String decomposed = Normalizer.normalize(String.valueOf(lower),
+                        Normalizer.Form.NFD);
+                // A letter is replaced by its base letter only when the rest is accents
+                boolean accented = true;
+                for (int i = 1; i < decomposed.length(); i++) {
+                    accented &= Character.getType(decomposed.charAt(i))
+                            == Character.NON_SPACING_MARK;
+                }
+                FOLDED[c] = accented ? decomposed.charAt(0) : lower;
+            }
+        }
+
+        // The text being read
+        private String mText;
+        // Index of the next character of the text to read
+        private int mPosition;
+        // The characters of the current word, the first mLength of which are used
+        char[] mChars = new char[32];
+        int mLength;
+        // The hash of the current word, the same as the hash code of its String
+        int mHash;
+
+        void reset(String text) {
+            mText = text;
+            mPosition = 0;
+        }
+
+        /**
+         * Reads the next word of the text
+         *
+         * @return false if there are no more words
+         */
+        boolean next() {
+            String text = mText;
+            int length = text.length();
+            int i = mPosition;
+            // Skip to the start of the next word, along with any markup on the way
+            while (i < length) {
+                char c = text.charAt(i);
+                if (Character.isLetterOrDigit(c)) {
+                    break;
+                }
+                int end = -1;
+                if (c == '<') {
+                    end = text.indexOf('>', i);
+                } else if (c == '&') {
+                    end = text.indexOf(';', i);
+                    if (end - i > 8) {
+                        end = -1;
+                    }
+                }
+                i = end != -1 ? end + 1 : i + 1;
+            }
+            if (i == length) {
+                mPosition = i;
+                return false;
+            }
+            mLength = 0;
+            mHash = 0;
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (c < 0x80) {
+                    if (c >= 'A' && c <= 'Z') {
+                        c += 'a' - 'A';
+                    } else if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9')) {
+                        break;
+                    }
+                } else if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                    // An accent written on its own is dropped like the accents of letters
+                    continue;
+                } else if (!Character.isLetterOrDigit(c)) {
+                    break;
+                } else {
+                    c = c < FOLDED_CHARS ? FOLDED[c] : Character.toLowerCase(c);
+                }
+                if (mLength == mChars.length) {
+                    mChars = Arrays.copyOf(mChars, mLength * 2);
+                }
+                mChars[mLength++] = c;
+                mHash = 31 * mHash + c;
+            }
+            mPosition = i;
+            return true;
+        }
+    }
+}
@@ -1,19 +1,85 @@
 package com.example.limmonica.newsapp;
 
-import android.content.AsyncTaskLoader;
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * Loads a list of articles by using an AsyncTask to perform the network request to the given URL
+ * Loads a list of formatted article rows by performing the network request to the given URL on a
+ * thread of the {@link LoadExecutor}, in the lane of its priority
+ * <p>
+ * Given several URLs, the requests run in parallel and their articles are merged by publishing
+ * date. The articles of the fastest requests can then be delivered before the slowest one has
+ * finished.
+ * <p>
+ * The articles of a load are kept in a {@link ResultCache} for a few minutes, and a load of the
+ * same urls in that time is answered from it without any request.
+ * <p>
+ * A load which is cancelled, because the loader was restarted, reset or abandoned, aborts its
+ * requests and stops parsing rather than running to the end for a result nobody will see. The
+ * framework only cancels the loads of restarted loaders from API 16 on; on older devices their
+ * result is just dropped.
  */
-public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
+public class ArticleLoader extends PriorityLoader<List<ArticleRow>> {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ArticleLoader.class.getSimpleName();
+
+    // Number of loads cancelled while in progress, across all loaders
+    private static final AtomicLong sCancelledLoads = new AtomicLong();
+    // Total time cancelled loads took to stop, in milliseconds
+    private static final AtomicLong sStopMillis = new AtomicLong();
+
+    /**
+     * Query URLs
+     */
+    private List<String> mUrls;
 
     /**
-     * Query URL
+     * Whether the merged articles are delivered as soon as each query finishes, rather than once
+     * all of them have
      */
-    private String mUrl;
+    private boolean mDeliverPartialResults;
+
+    /**
+     * Whether the merged articles are listed oldest first
+     */
+    private boolean mOldestFirst;
+
+    /**
+     * Keeps the articles of the load for the next cold start, may be null
+     */
+    private ResultSnapshot mSnapshot;
+
+    /**
+     * Keeps the articles of recent loads in memory, may be null
+     */
+    private ResultCache mCache;
+
+    /**
+     * Whether the server is asked even for the queries whose stored response is still fresh
+     */
+    private boolean mRevalidate;
+
+    /**
+     * Aborts the requests of the load in progress, guarded by {@link #mLock}
+     */
+    private HttpClient.Cancellation mCancellation;
+
+    /**
+     * Time the load in progress was cancelled at, from {@link System#nanoTime()}
+     */
+    private long mCancelledAt;
+
+    /**
+     * Guards the cancellation of the load in progress
+     */
+    private final Object mLock = new Object();
 
     /**
      * Constructs a new {@link ArticleLoader}.
@@ -22,8 +88,70 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
      * @param url     to load data from
      */
     ArticleLoader(Context context, String url) {
-        super(context);
-        mUrl = url;
+        this(context, Collections.singletonList(url), false, false);
+    }
+
+    /**
+     * Constructs a new {@link ArticleLoader} running several queries at once.
+     *
+     * @param context               of the activity
+     * @param urls                  to load data from
+     * @param deliverPartialResults is true to deliver the merged articles every time a query
+     *                              finishes
+     * @param oldestFirst           is true to list the merged articles oldest first
+     */
+    ArticleLoader(Context context, List<String> urls, boolean deliverPartialResults,
+                  boolean oldestFirst) {
+        this(context, urls, deliverPartialResults, oldestFirst, null, null,
+                LoadExecutor.Priority.VISIBLE);
+    }
+
+    /**
+     * Constructs a new {@link ArticleLoader} running several queries at once and keeping their
+     * articles in a snapshot and in memory.
+     *
+     * @param context               of the activity
+     * @param urls                  to load data from
+     * @param deliverPartialResults is true to deliver the merged articles every time a query
+     *                              finishes
+     * @param oldestFirst           is true to list the merged articles oldest first
+     * @param snapshot              keeps the articles for the next cold start, may be null
+     * @param cache                 keeps the articles of recent loads in memory, may be null
+     * @param priority              is the lane of the loads, {@link LoadExecutor.Priority#VISIBLE}
+     *                              when the user is waiting for them
+     */
+    ArticleLoader(Context context, List<String> urls, boolean deliverPartialResults,
+                  boolean oldestFirst, ResultSnapshot snapshot, ResultCache cache,
+                  LoadExecutor.Priority priority) {
+        this(context, urls, deliverPartialResults, oldestFirst, snapshot, cache, priority, false);
+    }
+
+    /**
+     * Constructs a new {@link ArticleLoader} running several queries at once and keeping their
+     * articles in a snapshot and in memory.
+     *
+     * @param context               of the activity
+     * @param urls                  to load data from
+     * @param deliverPartialResults is true to deliver the merged articles every time a query
+     *                              finishes
+     * @param oldestFirst           is true to list the merged articles oldest first
+     * @param snapshot              keeps the articles for the next cold start, may be null
+     * @param cache                 keeps the articles of recent loads in memory, may be null
+     * @param priority              is the lane of the loads, {@link LoadExecutor.Priority#VISIBLE}
+     *                              when the user is waiting for them
+     * @param revalidate            is true to ask the server even for the queries whose stored
+     *                              response is still fresh, as when the user refreshes the list
+     */
+    ArticleLoader(Context context, List<String> urls, boolean deliverPartialResults,
+                  boolean oldestFirst, ResultSnapshot snapshot, ResultCache cache,
+                  LoadExecutor.Priority priority, boolean revalidate) {
+        super(context, priority);
+        mUrls = urls;
+        mDeliverPartialResults = deliverPartialResults;
+        mOldestFirst = oldestFirst;
+        mSnapshot = snapshot;
+        mCache = cache;
+        mRevalidate = revalidate;
     }
 
     @Override
@@ -35,12 +163,151 @@ public class ArticleLoader extends AsyncTaskLoader<List<Article>> {
      * This is on a background thread
      */
     @Override
-    public List<Article> loadInBackground() {
-        if (mUrl == null) {
+    public List<ArticleRow> loadInBackground() {
+        if (mUrls == null || mUrls.isEmpty()) {
+            return null;
+        }
+        HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        synchronized (mLock) {
+            mCancellation = cancellation;
+            mCancelledAt = 0;
+        }
+        try {
+            // The load may have been cancelled before the cancellation could be reached
+            if (isLoadInBackgroundCanceled()) {
+                cancelLoadInBackground();
+            }
+            LoadMetrics metrics = LoadMetrics.getInstance();
+            long start = LoadMetrics.start();
+            List<ArticleRow> rows = load(cancellation);
+            if (cancellation.isCancelled()) {
+                recordCancelled();
+                return null;
+            }
+            metrics.recordSince(LoadMetrics.Phase.LOAD, start);
+            metrics.onLoadFinished();
+            return rows;
+        } finally {
+            synchronized (mLock) {
+                mCancellation = null;
+            }
+        }
+    }
+
+    /**
+     * Aborts the requests of the load in progress, called when the load is cancelled
+     */
+    @Override
+    public void cancelLoadInBackground() {
+        HttpClient.Cancellation cancellation;
+        synchronized (mLock) {
+            cancellation = mCancellation;
+            if (cancellation != null && !cancellation.isCancelled()) {
+                mCancelledAt = System.nanoTime();
+            }
+        }
+        if (cancellation != null) {
+            cancellation.cancel();
+        }
+    }
+
+    /**
+     * @return the number of loads cancelled while in progress
+     */
+    static long getCancelledLoadCount() {
+        return sCancelledLoads.get();
+    }
+
+    /**
+     * Fetches the articles of the queries, saves and formats them, unless the load is cancelled
+     */
+    private List<ArticleRow> load(final HttpClient.Cancellation cancellation) {
+        final ArticleRowFormatter formatter = new ArticleRowFormatter(getContext());
+        String cacheKey = mCache != null ? ResultCache.keyOf(mUrls) : null;
+        List<Article> articles = mCache != null ? mCache.get(cacheKey) : null;
+        if (articles != null) {
+            // Loaded moments ago, so there is nothing to fetch and the articles are already
+            // saved, but the snapshot may have been replaced by another request since
+            logCache();
+            if (mSnapshot != null && !articles.isEmpty()) {
+                mSnapshot.write(ResultSnapshot.keyOf(mUrls), articles);
+            }
+            return formatter.formatAll(articles);
+        }
+        if (mUrls.size() == 1) {
+            // Perform the network request, parse the response and extract a list of articles
+            articles = QueryUtils.fetchArticleData(mUrls.get(0), null, cancellation,
+                    mRevalidate);
+        } else {
+            FanOutFetcher.OnBatchMergedListener listener = null;
+            if (mDeliverPartialResults) {
+                final Handler handler = new Handler(Looper.getMainLooper());
+                listener = new FanOutFetcher.OnBatchMergedListener() {
+                    @Override
+                    public void onBatchMerged(List<Article> merged, int finished, int total) {
+                        if (cancellation.isCancelled()) {
+                            return;
+                        }
+                        final List<ArticleRow> rows = formatter.formatAll(merged);
+                        handler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                // A restarted or stopped loader has nobody left to deliver to
+                                if (isStarted() && !isAbandoned()) {
+                                    deliverResult(rows);
+                                }
+                            }
+                        });
+                    }
+                };
+            }
+            articles = new FanOutFetcher(mOldestFirst, getPriority(), cancellation, mRevalidate)
+                    .fetchAll(mUrls, listener);
+        }
+        if (articles == null || cancellation.isCancelled()) {
             return null;
         }
-        // Perform the network request, parse the response and extract a list of articles
-        List<Article> articles = QueryUtils.fetchArticleData(mUrl);
-        return articles;
+        if (mCache != null && !articles.isEmpty()) {
+            mCache.put(cacheKey, articles);
+            logCache();
+        }
+        LoadMetrics metrics = LoadMetrics.getInstance();
+        // Keep the articles on disk for the next cold start or offline use
+        long start = LoadMetrics.start();
+        ArticleDatabase.getInstance(getContext()).saveArticles(articles);
+        if (mSnapshot != null && !articles.isEmpty()) {
+            mSnapshot.write(ResultSnapshot.keyOf(mUrls), articles);
+        }
+        metrics.recordSince(LoadMetrics.Phase.SAVE, start);
+        // Format the rows here, so the UI thread only has to assign them to views
+        start = LoadMetrics.start();
+        List<ArticleRow> rows = formatter.formatAll(articles);
+        metrics.recordSince(LoadMetrics.Phase.FORMAT, start);
+        return rows;
+    }
+
+    /**
+     * Logs how well the loads are answered from memory
+     */
+    private void logCache() {
+        Log.v(LOG_TAG, "Loads answered from memory: " + mCache.getHitCount() + " of "
+                + (mCache.getHitCount() + mCache.getMissCount()) + ", kept: "
+                + mCache.getSize() / 1024 + " of " + mCache.getMaxSize() / 1024
+                + " KB, evicted: " + mCache.getEvictionCount());
+    }
+
+    /**
+     * Records how long the cancelled load took to stop
+     */
+    private void recordCancelled() {
+        long cancelledAt;
+        synchronized (mLock) {
+            cancelledAt = mCancelledAt;
+        }
+        long count = sCancelledLoads.incrementAndGet();
+        long total = sStopMillis.addAndGet((System.nanoTime() - cancelledAt) / 1000000);
+        Log.v(LOG_TAG, "Cancelled loads: " + count + ", average time to stop: "
+                + total / count + " ms, requests aborted in flight: "
+                + HttpClient.getInstance().getAbortedCount());
     }
 }
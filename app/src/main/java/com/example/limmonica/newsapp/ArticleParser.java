@@ -0,0 +1,230 @@
+package com.example.limmonica.newsapp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds {@link Article} objects from a The Guardian search response while it is being read, so
+ * the first article is available as soon as its bytes have arrived.
+ * <p>
+ * The headline, byline and trail, the longest values of an article, are not decoded: their raw
+ * bytes are kept by the article, which only turns them into Strings once they are read. The
+ * decoding is then left to whichever background thread first reads them, such as the loader
+ * formatting the rows, and is kept out of the parsing of the response.
+ */
+final class ArticleParser {
+
+    /**
+     * Callback invoked for every article as soon as it has been parsed
+     */
+    interface OnArticleParsedListener {
+        void onArticleParsed(Article article);
+    }
+
+    /**
+     * Create a private constructor because no one should ever create a {@link ArticleParser}
+     * object. This class is only meant to hold static methods.
+     */
+    private ArticleParser() {
+    }
+
+    /**
+     * Parses the JSON response held by the given stream and returns the articles found in
+     * response.results[]. Every other key of the response is skipped without being decoded.
+     *
+     * @param in       is the stream holding the JSON response
+     * @param listener is notified of each article as it is parsed, may be null
+     * @param articles is the list the parsed articles are added to
+     * @throws IOException if the stream can not be read or the JSON is malformed, in which case
+     *                     the articles parsed so far are still in the list
+     */
+    static void parse(InputStream in, OnArticleParsedListener listener, List<Article> articles)
+            throws IOException {
+        parse(in, listener, articles, null);
+    }
+
+    /**
+     * Parses the JSON response held by the given stream, stopping between two articles once the
+     * given cancellation has been cancelled.
+     *
+     * @param in           is the stream holding the JSON response
+     * @param listener     is notified of each article as it is parsed, may be null
+     * @param articles     is the list the parsed articles are added to
+     * @param cancellation stops the parsing when it is cancelled, may be null
+     * @throws IOException if the stream can not be read or the JSON is malformed, a
+     *                     {@link java.io.InterruptedIOException} if the parsing was cancelled, in
+     *                     which case the articles parsed so far are still in the list
+     */
+    static void parse(InputStream in, OnArticleParsedListener listener, List<Article> articles,
+                      HttpClient.Cancellation cancellation) throws IOException {
+        parse(in, listener, articles, cancellation, -1);
+    }
+
+    /**
+     * Parses the JSON response held by the given stream through a buffer from the shared
+     * {@link BufferPool}, sized for the length of the response, so the bytes go straight from the
+     * stream to the parser without a buffer being allocated for every response.
+     *
+     * @param in             is the stream holding the JSON response
+     * @param listener       is notified of each article as it is parsed, may be null
+     * @param articles       is the list the parsed articles are added to
+     * @param cancellation   stops the parsing when it is cancelled, may be null
+     * @param expectedLength is the length of the response, or -1 if it is not known
+     * @throws IOException if the stream can not be read or the JSON is malformed, a
+     *                     {@link java.io.InterruptedIOException} if the parsing was cancelled, in
+     *                     which case the articles parsed so far are still in the list
+     */
+    static void parse(InputStream in, OnArticleParsedListener listener, List<Article> articles,
+                      HttpClient.Cancellation cancellation, long expectedLength)
+            throws IOException {
+        BufferPool pool = BufferPool.getInstance();
+        byte[] buffer = pool.acquire(expectedLength);
+        try {
+            JsonPullParser parser = new JsonPullParser(in, buffer);
+            parser.beginObject();
+            while (parser.hasNext()) {
+                if ("response".equals(parser.nextName())) {
+                    readResponse(parser, listener, articles, cancellation);
+                } else {
+                    parser.skipValue();
+                }
+            }
+            parser.endObject();
+        } finally {
+            pool.release(buffer);
+        }
+    }
+
+    /**
+     * Parses the JSON response held by the given stream.
+     *
+     * @param in is the stream holding the JSON response
+     * @return the list of articles
+     * @throws IOException if the stream can not be read or the JSON is malformed
+     */
+    static List<Article> parse(InputStream in) throws IOException {
+        List<Article> articles = new ArrayList<>();
+        parse(in, null, articles);
+        return articles;
+    }
+
+    /**
+     * Reads the "response" object and the articles of its "results" array
+     */
+    private static void readResponse(JsonPullParser parser, OnArticleParsedListener listener,
+                                     List<Article> articles,
+                                     HttpClient.Cancellation cancellation) throws IOException {
+        JsonPullParser.RawBuffer raw = new JsonPullParser.RawBuffer();
+        parser.beginObject();
+        while (parser.hasNext()) {
+            if ("results".equals(parser.nextName())) {
+                parser.beginArray();
+                while (parser.hasNext()) {
+                    if (cancellation != null) {
+                        cancellation.throwIfCancelled();
+                    }
+                    Article article = readArticle(parser, raw);
+                    articles.add(article);
+                    if (listener != null) {
+                        listener.onArticleParsed(article);
+                    }
+                }
+                parser.endArray();
+            } else {
+                parser.skipValue();
+            }
+        }
+        parser.endObject();
+    }
+
+    /**
+     * Reads a single element of the "results" array into an {@link Article}, copying the raw
+     * bytes of its headline, byline and trail through the given buffer
+     */
+    private static Article readArticle(JsonPullParser parser, JsonPullParser.RawBuffer raw)
+            throws IOException {
+        String date = "";
+        String section = "";
+        String url = "";
+        String thumbnail = null;
+        // Range of the raw bytes of the headline, byline and trail in the buffer, empty if the
+        // article has none
+        int titleStart = 0;
+        int titleEnd = 0;
+        int authorStart = 0;
+        int authorEnd = 0;
+        int trailStart = 0;
+        int trailEnd = 0;
+        raw.clear();
+
+        parser.beginObject();
+        while (parser.hasNext()) {
+            switch (parser.nextName()) {
+                case "webPublicationDate":
+                    date = optString(parser);
+                    break;
+                case "sectionName":
+                    section = optString(parser);
+                    break;
+                case "webUrl":
+                    url = optString(parser);
+                    break;
+                case "fields":
+                    // The additional fields requested through "show-fields"
+                    parser.beginObject();
+                    while (parser.hasNext()) {
+                        switch (parser.nextName()) {
+                            case "headline":
+                                titleStart = raw.size();
+                                parser.nextRawString(raw);
+                                titleEnd = raw.size();
+                                break;
+                            case "byline":
+                                authorStart = raw.size();
+                                parser.nextRawString(raw);
+                                authorEnd = raw.size();
+                                break;
+                            case "trailText":
+                                trailStart = raw.size();
+                                parser.nextRawString(raw);
+                                trailEnd = raw.size();
+                                break;
+                            case "thumbnail":
+                                thumbnail = optString(parser);
+                                break;
+                            default:
+                                parser.skipValue();
+                                break;
+                        }
+                    }
+                    parser.endObject();
+                    break;
+                default:
+                    parser.skipValue();
+                    break;
+            }
+        }
+        parser.endObject();
+
+        // Lay the fields out in a single array of their own, so the article does not hold on to
+        // the bytes of the other articles
+        int titleLength = titleEnd - titleStart;
+        int authorLength = authorEnd - authorStart;
+        byte[] fields = new byte[titleLength + authorLength + trailEnd - trailStart];
+        raw.copyTo(titleStart, titleEnd, fields, 0);
+        raw.copyTo(authorStart, authorEnd, fields, titleLength);
+        raw.copyTo(trailStart, trailEnd, fields, titleLength + authorLength);
+        return new Article(ArticleStore.parseDate(date), section, thumbnail, fields,
+                titleLength, titleLength + authorLength, url);
+    }
+
+    /**
+     * @return the next value as a String, or an empty String for a JSON null
+     */
+    private static String optString(JsonPullParser parser) throws IOException {
+        String value = parser.nextString();
+        return value == null ? "" : value;
+    }
+}
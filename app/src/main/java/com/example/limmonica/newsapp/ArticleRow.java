@@ -0,0 +1,98 @@
+package com.example.limmonica.newsapp;
+
+/**
+ * An {@link ArticleRow} holds an {@link Article} together with everything its list item shows,
+ * formatted, so binding a row only assigns fields to views.
+ * <p>
+ * Rows are built on the loader's background thread by an {@link ArticleRowFormatter} and never
+ * change afterwards, so they can be handed to the UI thread as they are.
+ */
+public final class ArticleRow {
+
+    /**
+     * The article shown by the row
+     */
+    private final Article mArticle;
+    /**
+     * Section line, i.e. "Technology / "
+     */
+    private final String mSectionLine;
+    /**
+     * Formatted publishing date, i.e. "Aug 22, 2018"
+     */
+    private final String mFormattedDate;
+    /**
+     * Author line, i.e. "by Alex Hern", or null if the article has no author
+     */
+    private final String mAuthorLine;
+    /**
+     * Trail with its HTML turned into styled text
+     */
+    private final CharSequence mTrail;
+    /**
+     * Color of the section, as a resolved color int
+     */
+    private final int mSectionColor;
+
+    /**
+     * Constructs a new {@link ArticleRow} object.
+     *
+     * @param article       is the article shown by the row
+     * @param sectionLine   is the section line
+     * @param formattedDate is the formatted publishing date
+     * @param authorLine    is the author line, or null if the article has no author
+     * @param trail         is the styled trail
+     * @param sectionColor  is the resolved color of the section
+     */
+    ArticleRow(Article article, String sectionLine, String formattedDate, String authorLine,
+               CharSequence trail, int sectionColor) {
+        mArticle = article;
+        mSectionLine = sectionLine;
+        mFormattedDate = formattedDate;
+        mAuthorLine = authorLine;
+        mTrail = trail;
+        mSectionColor = sectionColor;
+    }
+
+    /**
+     * @return the article shown by the row
+     */
+    public Article getArticle() {
+        return mArticle;
+    }
+
+    /**
+     * @return the section line
+     */
+    public String getSectionLine() {
+        return mSectionLine;
+    }
+
+    /**
+     * @return the formatted publishing date
+     */
+    public String getFormattedDate() {
+        return mFormattedDate;
+    }
+
+    /**
+     * @return the author line, or null if the article has no author
+     */
+    public String getAuthorLine() {
+        return mAuthorLine;
+    }
+
+    /**
+     * @return the styled trail
+     */
+    public CharSequence getTrail() {
+        return mTrail;
+    }
+
+    /**
+     * @return the resolved color of the section
+     */
+    public int getSectionColor() {
+        return mSectionColor;
+    }
+}
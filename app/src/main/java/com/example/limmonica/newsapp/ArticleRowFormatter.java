@@ -0,0 +1,147 @@
+package com.example.limmonica.newsapp;
+
+import android.content.Context;
+import android.support.v4.content.ContextCompat;
+import android.text.Html;
+import android.text.TextUtils;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Turns {@link Article} objects into {@link ArticleRow} objects on a background thread, doing
+ * the date parsing, HTML conversion and color lookup once per article instead of at every bind.
+ * <p>
+ * A formatter reuses its date format and its section colors, so its rows are formatted one at a
+ * time: each load creates its own, and the {@link ArticleWindow} of the list one for the rows it
+ * formats again, on the UI thread or ahead on its background thread.
+ */
+final class ArticleRowFormatter implements ArticleWindow.RowFormatter {
+
+    // Constant value String for the Author name
+    private static final String AUTHOR_LABEL = "by ";
+    // Constant value String for the Section title
+    private static final String SECTION_SEP = " / ";
+
+    // The context used to resolve the section colors
+    private final Context mContext;
+    // Formats the publishing date of the articles (i.e. "Apr 25, 2016")
+    private final SimpleDateFormat mDateFormatter =
+            new SimpleDateFormat("LLL dd, yyyy", Locale.getDefault());
+    // Resolved colors, by section title
+    private final Map<String, Integer> mSectionColors = new HashMap<>();
+    // Shares the labels which repeat across rows, such as section lines and dates
+    private final ArticleStore mStore = ArticleStore.getInstance();
+
+    /**
+     * Creates a new {@link ArticleRowFormatter}
+     *
+     * @param context is the context used to resolve the section colors
+     */
+    ArticleRowFormatter(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * @return the rows of the given articles, in the same order
+     */
+    List<ArticleRow> formatAll(List<Article> articles) {
+        List<ArticleRow> rows = new ArrayList<>(articles.size());
+        for (Article article : articles) {
+            rows.add(format(article));
+        }
+        return rows;
+    }
+
+    /**
+     * @return the row of the given article
+     */
+    @Override
+    public synchronized ArticleRow format(Article article) {
+        // Get the section of the article and resolve its color
+        String sectionTitle = article.getArticleSection();
+        int sectionColor = getSectionColor(sectionTitle);
+
+        return new ArticleRow(article, mStore.internLabel(sectionTitle + SECTION_SEP),
+                formatDate(article.getPublishedMillis()),
+                formatAuthorLine(article.getArticleAuthor()),
+                formatTrail(article.getArticleTrail()), sectionColor);
+    }
+
+    /**
+     * Returns the author line by adding "by " before the author name, or null if no author is
+     * provided
+     *
+     * @param authorName is the author of an article
+     */
+    private String formatAuthorLine(String authorName) {
+        return TextUtils.isEmpty(authorName)
+                ? null : mStore.internLabel(AUTHOR_LABEL + authorName);
+    }
+
+    /**
+     * Returns the trail - a short preview - of an article with its HTML turned into styled text
+     *
+     * @param trail is the trail of an article
+     */
+    private static CharSequence formatTrail(String trail) {
+        return Html.fromHtml(trail == null ? "" : trail.replaceAll("\n", "").trim());
+    }
+
+    /**
+     * Return the formatted date string (i.e. "Mar 3, 1984") from the timestamp of an article, or
+     * an empty String if the article has no date.
+     */
+    private String formatDate(long millis) {
+        if (millis == ArticleStore.NO_DATE) {
+            return "";
+        }
+        // Return the date formatted following the pattern
+        return mStore.internLabel(mDateFormatter.format(new Date(millis)));
+    }
+
+    /**
+     * Returns the color of the section of an article, resolving each section only once
+     *
+     * @param sectionTitle is the title of the section
+     * @return the color
+     */
+    private int getSectionColor(String sectionTitle) {
+        Integer color = mSectionColors.get(sectionTitle);
+        if (color == null) {
+            color = ContextCompat.getColor(mContext, getSectionColorRes(sectionTitle));
+            mSectionColors.put(sectionTitle, color);
+        }
+        return color;
+    }
+
+    /**
+     * Returns the color resource of the section of an article
+     *
+     * @param sectionTitle is the title of the section
+     * @return the color resource
+     */
+    static int getSectionColorRes(String sectionTitle) {
+
+        // Assign the colors based on the category of the section
+        switch (SectionCategory.of(sectionTitle)) {
+            case NEWS:
+                return R.color.news;
+            case OPINION:
+                return R.color.opinion;
+            case SPORT:
+                return R.color.sport;
+            case CULTURE:
+                return R.color.culture;
+            case LIFESTYLE:
+                return R.color.lifestyle;
+            default:
+                return R.color.other;
+        }
+    }
+}
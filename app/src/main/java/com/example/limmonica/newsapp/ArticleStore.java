@@ -0,0 +1,216 @@
+package com.example.limmonica.newsapp;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Keeps the values that repeat across articles only once in memory.
+ * <p>
+ * Section names, bylines and the leading part of urls (everything up to the last '/') repeat
+ * heavily within a page of results and from one refresh to the next. Every {@link Article} gets
+ * them from the shared {@link ArticleStore}, so a thousand articles from five sections hold five
+ * section Strings rather than a thousand. Publishing dates are kept as primitive timestamps by
+ * the articles themselves, see {@link #parseDate(String)}.
+ */
+final class ArticleStore {
+
+    /**
+     * Timestamp of an article whose publishing date is missing or can not be parsed
+     */
+    static final long NO_DATE = Long.MIN_VALUE;
+
+    // Constant value for the number of distinct values a pool keeps before starting over, so
+    // a long session can not grow it without bounds
+    private static final int MAX_POOL_SIZE = 4096;
+
+    // The store shared by all articles
+    private static final ArticleStore sInstance = new ArticleStore();
+
+    // Distinct section names
+    private final Map<String, String> mSections = new HashMap<>();
+    // Distinct author names
+    private final Map<String, String> mAuthors = new HashMap<>();
+    // Distinct url prefixes
+    private final Map<String, String> mUrlPrefixes = new HashMap<>();
+    // Distinct display labels derived from the values above
+    private final Map<String, String> mLabels = new HashMap<>();
+
+    /**
+     * @return the store shared by all articles
+     */
+    static ArticleStore getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @return the shared instance of a section name
+     */
+    String internSection(String section) {
+        return intern(mSections, section);
+    }
+
+    /**
+     * @return the shared instance of an author name
+     */
+    String internAuthor(String author) {
+        return intern(mAuthors, author);
+    }
+
+    /**
+     * @return the shared instance of a url prefix
+     */
+    String internUrlPrefix(String prefix) {
+        return intern(mUrlPrefixes, prefix);
+    }
+
+    /**
+     * @return the shared instance of a display label, such as a section line or formatted date
+     */
+    String internLabel(String label) {
+        return intern(mLabels, label);
+    }
+
+    /**
+     * @return the number of distinct values held by the store
+     */
+    synchronized int size() {
+        return mSections.size() + mAuthors.size() + mUrlPrefixes.size() + mLabels.size();
+    }
+
+    /**
+     * Returns the index splitting a url into a shared prefix, up to and including its last '/',
+     * and a suffix unique to the article.
+     */
+    static int urlSplit(String url) {
+        return url.lastIndexOf('/') + 1;
+    }
+
+    /**
+     * Parses a publishing date in The Guardian format ("2018-08-22T10:15:30Z") into milliseconds
+     * since the epoch, without going through a date format.
+     *
+     * @param date is the publishing date
+     * @return the timestamp, or {@link #NO_DATE} if the date can not be parsed
+     */
+    static long parseDate(String date) {
+        if (date == null || date.length() < 19 || date.charAt(4) != '-' || date.charAt(7) != '-'
+                || date.charAt(10) != 'T' || date.charAt(13) != ':' || date.charAt(16) != ':') {
+            return NO_DATE;
+        }
+        int year = digits(date, 0, 4);
+        int month = digits(date, 5, 2);
+        int day = digits(date, 8, 2);
+        int hour = digits(date, 11, 2);
+        int minute = digits(date, 14, 2);
+        int second = digits(date, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60) {
+            return NO_DATE;
+        }
+        long days = daysFromCivil(year, month, day);
+        return ((days * 24 + hour) * 60 + minute) * 60000L + second * 1000L;
+    }
+
+    /**
+     * Formats a timestamp back into The Guardian date format
+     *
+     * @param millis is the timestamp
+     * @return the publishing date, or an empty String for {@link #NO_DATE}
+     */
+    static String formatDate(long millis) {
+        if (millis == NO_DATE) {
+            return "";
+        }
+        long days = floorDiv(millis, 86400000L);
+        long secondOfDay = (millis - days * 86400000L) / 1000;
+        // Civil date from days since the epoch (Howard Hinnant's algorithm)
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long mp = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * mp + 2) / 5 + 1;
+        long month = mp < 10 ? mp + 3 : mp - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        char[] text = new char[20];
+        put(text, 0, year, 4);
+        text[4] = '-';
+        put(text, 5, month, 2);
+        text[7] = '-';
+        put(text, 8, day, 2);
+        text[10] = 'T';
+        put(text, 11, secondOfDay / 3600, 2);
+        text[13] = ':';
+        put(text, 14, secondOfDay / 60 % 60, 2);
+        text[16] = ':';
+        put(text, 17, secondOfDay % 60, 2);
+        text[19] = 'Z';
+        return new String(text);
+    }
+
+    /**
+     * Returns the shared instance of a value from a pool, adding it if it is new
+     */
+    private synchronized String intern(Map<String, String> pool, String value) {
+        if (value == null) {
+            return null;
+        }
+        String shared = pool.get(value);
+        if (shared == null) {
+            if (pool.size() >= MAX_POOL_SIZE) {
+                pool.clear();
+            }
+            pool.put(value, value);
+            shared = value;
+        }
+        return shared;
+    }
+
+    /**
+     * @return the largest value less than or equal to the quotient
+     */
+    private static long floorDiv(long dividend, long divisor) {
+        long quotient = dividend / divisor;
+        return (dividend % divisor != 0 && (dividend < 0) != (divisor < 0))
+                ? quotient - 1 : quotient;
+    }
+
+    /**
+     * @return the value of the decimal digits at the given position, or -1
+     */
+    private static int digits(String text, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Writes a zero-padded decimal value
+     */
+    private static void put(char[] text, int start, long value, int count) {
+        for (int i = start + count - 1; i >= start; i--) {
+            text[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    /**
+     * @return the number of days since the epoch of a civil date (Howard Hinnant's algorithm)
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        year -= month <= 2 ? 1 : 0;
+        long era = floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
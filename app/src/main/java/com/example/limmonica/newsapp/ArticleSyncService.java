@@ -0,0 +1,176 @@
+package com.example.limmonica.newsapp;
+
+import android.annotation.TargetApi;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Fetches the articles published since the newest one held by the {@link ArticleDatabase} in
+ * the background, so the list opens on fresh articles without waiting for the network.
+ * <p>
+ * The sync runs every few hours while there is a network connection and the battery is not low.
+ * It only asks for the articles published from the day of the newest one stored, so both the
+ * response and the search done by the server shrink to what is new. JobScheduler only exists on
+ * Lollipop and newer, older devices rely on the loads made while the app is open.
+ * <p>
+ * The sync runs in the {@link LoadExecutor.Priority#BACKGROUND} lane, so it never holds up a
+ * load the user is waiting for.
+ */
+@TargetApi(Build.VERSION_CODES.LOLLIPOP)
+public class ArticleSyncService extends JobService {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ArticleSyncService.class.getSimpleName();
+
+    // Constant value for the ID of the sync job
+    private static final int SYNC_JOB_ID = 1;
+    // Constant value for the time between two syncs
+    private static final long SYNC_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(3);
+    // Constant value for the number of articles per page requested by a sync
+    private static final int SYNC_PAGE_SIZE = 50;
+    // Constant value for the largest number of pages requested per topic by a sync
+    private static final int MAX_SYNC_PAGES = 4;
+    // Value of the "order-by" parameter listing the newest articles first
+    private static final String ORDER_BY_NEWEST = "newest";
+
+    // The current sync, queued or running
+    private LoadExecutor.Task mSyncTask;
+    // Aborts the requests of the current sync
+    private HttpClient.Cancellation mCancellation;
+    // Set once the current job is either finished by its sync or stopped by the system, since
+    // a stopped job must not be finished
+    private AtomicBoolean mJobOver;
+
+    /**
+     * Schedules the periodic sync, unless it is already scheduled or the device is older than
+     * Lollipop
+     *
+     * @param context is the context
+     */
+    static void schedule(Context context) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        // Scheduling again would start the period over
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == SYNC_JOB_ID) {
+                return;
+            }
+        }
+        JobInfo.Builder job = new JobInfo.Builder(SYNC_JOB_ID,
+                new ComponentName(context, ArticleSyncService.class))
+                .setPeriodic(SYNC_INTERVAL_MILLIS)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            job.setRequiresBatteryNotLow(true);
+        }
+        scheduler.schedule(job.build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        final AtomicBoolean jobOver = new AtomicBoolean();
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        mJobOver = jobOver;
+        mCancellation = cancellation;
+        mSyncTask = LoadExecutor.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                boolean complete = sync(getApplicationContext(), cancellation);
+                // A sync cut short by a failed request is tried again with a backoff
+                if (jobOver.compareAndSet(false, true)) {
+                    jobFinished(params, !complete);
+                }
+            }
+        }, LoadExecutor.Priority.BACKGROUND);
+        // The sync goes on in the background
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The constraints no longer hold, stop and try again later
+        if (mJobOver != null) {
+            mJobOver.set(true);
+        }
+        if (mCancellation != null) {
+            // Tears down the request in flight rather than waiting for its timeout
+            mCancellation.cancel();
+        }
+        if (mSyncTask != null) {
+            mSyncTask.cancel(true);
+        }
+        return true;
+    }
+
+    /**
+     * Fetches the articles of every topic published since the newest article held, and saves
+     * them into the database.
+     *
+     * @param context      is the context
+     * @param cancellation aborts the requests and stops the sync when it is cancelled
+     * @return true if every request succeeded
+     */
+    static boolean sync(Context context, HttpClient.Cancellation cancellation) {
+        ArticleDatabase database = ArticleDatabase.getInstance(context);
+        long newest = database.getNewestPublishedMillis();
+        // Only the day of the newest article is given, the articles of that day already held
+        // are simply replaced
+        String fromDate = newest == ArticleStore.NO_DATE
+                ? null : ArticleStore.formatDate(newest).substring(0, 10);
+
+        boolean complete = true;
+        int requests = 0;
+        List<Article> fresh = new ArrayList<>();
+        for (String topic : SearchRequests.getTopics(context)) {
+            for (int page = 1; page <= MAX_SYNC_PAGES; page++) {
+                if (cancellation.isCancelled() || Thread.currentThread().isInterrupted()) {
+                    return false;
+                }
+                List<Article> articles = QueryUtils.fetchArticleData(SearchRequests.buildUrl(
+                        topic, ORDER_BY_NEWEST, String.valueOf(SYNC_PAGE_SIZE), page, fromDate),
+                        null, cancellation.newChild());
+                requests++;
+                if (articles == null) {
+                    complete = false;
+                    break;
+                }
+                boolean reachedStored = false;
+                for (Article article : articles) {
+                    if (newest != ArticleStore.NO_DATE && article.getPublishedMillis() <= newest) {
+                        reachedStored = true;
+                    } else {
+                        fresh.add(article);
+                    }
+                }
+                // Past the articles already held, or past the last page
+                if (reachedStored || articles.size() < SYNC_PAGE_SIZE) {
+                    break;
+                }
+            }
+        }
+        if (!fresh.isEmpty()) {
+            database.saveArticles(fresh);
+        }
+        Log.v(LOG_TAG, "Synced " + fresh.size() + " new articles in " + requests
+                + " requests from " + fromDate);
+        return complete;
+    }
+}
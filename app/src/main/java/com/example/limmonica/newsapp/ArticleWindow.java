@@ -0,0 +1,506 @@
+package com.example.limmonica.newsapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The rows of the list of articles, however many pages of them were loaded, only a window of
+ * which is kept in memory around the rows last read.
+ * <p>
+ * Appended rows are split into chunks of at most {@link #CHUNK_SIZE} articles. Only the
+ * {@link #OPEN_CHUNKS} chunks read last hold their articles; when a chunk is left, it is written
+ * to a {@link ResultSnapshot} file of its own on a background thread, and its articles are read
+ * back from the mapping of that file the next time they are asked for. Only the last
+ * {@link #CAPACITY} rows read are kept formatted. The rows around the ones read are formatted
+ * ahead, a {@link #FORMAT_BLOCK} at a time, on the background thread, so scrolling back to rows
+ * which were let go rarely formats them on the UI thread.
+ * <p>
+ * So a feed of 5,000 articles holds as many rows and open articles in memory as a feed of 200.
+ * What grows with the feed is the few dozen bytes per article locating them in the mapped files,
+ * the mappings themselves, and the {@link ArticleIndex} of the words of every article, which is
+ * built on the background thread as the articles are appended.
+ * <p>
+ * A window is meant to be used from the UI thread only, apart from its listener.
+ */
+final class ArticleWindow extends AbstractList<ArticleRow> {
+
+    /**
+     * Turns the articles read back into rows
+     */
+    interface RowFormatter {
+
+        /**
+         * @return the row of the given article
+         */
+        ArticleRow format(Article article);
+    }
+
+    // Tag for log messages
+    private static final String LOG_TAG = ArticleWindow.class.getSimpleName();
+
+    // Constant value for the largest number of articles of a chunk, which a snapshot can hold
+    static final int CHUNK_SIZE = 100;
+    // Constant value for the number of chunks whose articles are kept in memory
+    static final int OPEN_CHUNKS = 3;
+    // Constant value for the number of formatted rows kept, several screens of them
+    static final int CAPACITY = 200;
+    // Constant value for the number of rows formatted ahead together, about two screens of them
+    static final int FORMAT_BLOCK = 20;
+    // Constant value for the time an idle writing thread is kept, in seconds
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    // Does the background work of all windows, one task after the other
+    private static final ExecutorService sExecutor = createExecutor();
+
+    // The directory of the files of the chunks
+    private final File mDirectory;
+    // Formats the rows which are not kept
+    private final RowFormatter mFormatter;
+    // Writes and deletes the files of the chunks, indexes the articles and formats rows ahead
+    private final Executor mExecutor;
+    // The chunks, in the order of the rows
+    private final List<Chunk> mChunks = new ArrayList<>();
+    // The chunks holding their articles, from the least to the most recently read
+    private final List<Chunk> mOpenChunks = new ArrayList<>(OPEN_CHUNKS + 1);
+    // The formatted rows, by position, from the least to the most recently read
+    private final Map<Integer, ArticleRow> mRows =
+            new LinkedHashMap<Integer, ArticleRow>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, ArticleRow> eldest) {
+                    if (size() <= CAPACITY) {
+                        return false;
+                    }
+                    // The block of the row is formatted ahead again the next time it is near
+                    mFormattingBlocks.remove(eldest.getKey() / FORMAT_BLOCK);
+                    return true;
+                }
+            };
+    // The rows formatted ahead on the background thread, by position, until they are read
+    private Map<Integer, ArticleRow> mFormattedAhead = new ConcurrentHashMap<>();
+    // The blocks of rows formatted or being formatted ahead, by index of the block
+    private final Set<Integer> mFormattingBlocks = new HashSet<>();
+    // Indexes the words of the articles appended, on the background thread
+    private ArticleIndex mIndex = new ArticleIndex();
+    // Called on the background thread every time appended articles are indexed, may be null
+    private volatile Runnable mOnIndexedListener;
+    // Number of rows
+    private int mSize;
+
+    /**
+     * Creates a new {@link ArticleWindow} doing its work on the shared background thread
+     *
+     * @param directory is the directory of the files of the chunks, whose files left over from
+     *                  earlier windows are deleted
+     * @param formatter formats the rows which are not kept, on the UI thread and on the
+     *                  background thread
+     */
+    ArticleWindow(File directory, RowFormatter formatter) {
+        this(directory, formatter, sExecutor);
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = mDirectory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates a new {@link ArticleWindow}
+     *
+     * @param directory is the directory of the files of the chunks
+     * @param formatter formats the rows which are not kept, on the UI thread and on the thread
+     *                  of the executor
+     * @param executor  writes the chunks to their files, deletes them, indexes the articles and
+     *                  formats the rows ahead, one task at a time and in order
+     */
+    ArticleWindow(File directory, RowFormatter formatter, Executor executor) {
+        mDirectory = directory;
+        mFormatter = formatter;
+        mExecutor = executor;
+    }
+
+    /**
+     * Returns the row at the given position, formatted again if it is not kept anymore and was
+     * not formatted ahead
+     */
+    @Override
+    public ArticleRow get(int position) {
+        ArticleRow row = mRows.get(position);
+        if (row == null) {
+            row = mFormattedAhead.remove(position);
+            if (row == null) {
+                // Read before the rows around it could be formatted ahead
+                row = mFormatter.format(getArticle(position));
+            }
+            mRows.put(position, row);
+        }
+        formatAround(position);
+        return row;
+    }
+
+    /**
+     * Returns the article at the given position without formatting its row
+     */
+    Article getArticle(int position) {
+        if (position < 0 || position >= mSize) {
+            throw new IndexOutOfBoundsException("Position " + position + ", size " + mSize);
+        }
+        Chunk chunk = mChunks.get(chunkIndex(position));
+        return open(chunk).get(position - chunk.mStart);
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Appends rows, which are kept as long as they are among the last rows read, and their
+     * articles as long as they are among the last chunks appended or read
+     *
+     * @param rows is the rows to add after the others
+     * @return true if there were rows to add
+     */
+    @Override
+    public boolean addAll(Collection<? extends ArticleRow> rows) {
+        Iterator<? extends ArticleRow> iterator = rows.iterator();
+        while (iterator.hasNext()) {
+            Chunk chunk = new Chunk(mSize);
+            while (iterator.hasNext() && chunk.mArticles.size() < CHUNK_SIZE) {
+                ArticleRow row = iterator.next();
+                chunk.mArticles.add(row.getArticle());
+                mRows.put(mSize++, row);
+            }
+            mChunks.add(chunk);
+            chunk.mOpen = chunk.mArticles;
+            addOpenChunk(chunk);
+            index(chunk.mArticles);
+        }
+        modCount++;
+        return !rows.isEmpty();
+    }
+
+    /**
+     * Removes every row, and deletes the files of the chunks in the background
+     */
+    @Override
+    public void clear() {
+        List<Chunk> written = new ArrayList<>();
+        for (Chunk chunk : mChunks) {
+            if (chunk.mWriting) {
+                written.add(chunk);
+            }
+        }
+        mChunks.clear();
+        mOpenChunks.clear();
+        mRows.clear();
+        // The rows and the index still being built belong to the rows removed
+        mFormattedAhead = new ConcurrentHashMap<>();
+        mFormattingBlocks.clear();
+        mIndex = new ArticleIndex();
+        mSize = 0;
+        modCount++;
+        if (!written.isEmpty()) {
+            deleteFiles(written);
+        }
+    }
+
+    /**
+     * Returns the rows at the given positions, without reading them until they are asked for
+     *
+     * @param positions is the positions of the rows
+     * @return the list of rows, which can be read until the window is cleared
+     */
+    List<ArticleRow> select(final int[] positions) {
+        return new AbstractList<ArticleRow>() {
+            @Override
+            public ArticleRow get(int index) {
+                return ArticleWindow.this.get(positions[index]);
+            }
+
+            @Override
+            public int size() {
+                return positions.length;
+            }
+        };
+    }
+
+    /**
+     * Finds the rows matching a search among those indexed so far
+     *
+     * @param query is the text typed by the user
+     * @return the positions of the matching rows in increasing order
+     */
+    int[] search(String query) {
+        return mIndex.search(query);
+    }
+
+    /**
+     * @return the number of rows indexed so far, the first ones of the window
+     */
+    int getIndexedCount() {
+        return mIndex.size();
+    }
+
+    /**
+     * Sets the listener called on the background thread every time appended rows are indexed
+     *
+     * @param listener is the listener, or null
+     */
+    void setOnIndexedListener(Runnable listener) {
+        mOnIndexedListener = listener;
+    }
+
+    /**
+     * @return the number of formatted rows kept
+     */
+    int getRowCount() {
+        return mRows.size();
+    }
+
+    /**
+     * @return the number of chunks whose articles are held in memory rather than in their file
+     */
+    int getChunksInMemory() {
+        int count = 0;
+        for (Chunk chunk : mChunks) {
+            if (chunk.mOpen != null || chunk.mArticles != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the index of the chunk holding the given position
+     */
+    private int chunkIndex(int position) {
+        int low = 0;
+        int high = mChunks.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (mChunks.get(middle).mStart <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the articles of the chunk, read back from its file if they are not in memory
+     */
+    private List<Article> open(Chunk chunk) {
+        if (chunk.mOpen != null) {
+            // Keep the chunk among the last read
+            if (mOpenChunks.get(mOpenChunks.size() - 1) != chunk) {
+                mOpenChunks.remove(chunk);
+                mOpenChunks.add(chunk);
+            }
+            return chunk.mOpen;
+        }
+        // The articles are only dropped once the file is read, so one of the two is there
+        List<Article> articles = chunk.mArticles;
+        List<Article> written = chunk.mWritten;
+        chunk.mOpen = written != null ? ResultSnapshot.reopen(written) : articles;
+        addOpenChunk(chunk);
+        return chunk.mOpen;
+    }
+
+    /**
+     * Formats ahead the blocks of rows around the given position which are not formatted yet,
+     * and lets go of those formatted ahead further away
+     */
+    private void formatAround(int position) {
+        int block = position / FORMAT_BLOCK;
+        int last = Math.min(block + 1, (mSize - 1) / FORMAT_BLOCK);
+        for (int i = Math.max(0, block - 1); i <= last; i++) {
+            if (!mFormattingBlocks.add(i)) {
+                continue;
+            }
+            Iterator<Integer> positions = mFormattedAhead.keySet().iterator();
+            while (positions.hasNext()) {
+                int away = positions.next() / FORMAT_BLOCK;
+                if (Math.abs(away - block) > 2) {
+                    positions.remove();
+                    mFormattingBlocks.remove(away);
+                }
+            }
+            formatAhead(i);
+        }
+    }
+
+    /**
+     * Formats the rows of a block which are not kept on the background thread. Their articles
+     * are read here, since the chunks are only ever opened on the UI thread.
+     */
+    private void formatAhead(int block) {
+        final List<Integer> positions = new ArrayList<>(FORMAT_BLOCK);
+        final List<Article> articles = new ArrayList<>(FORMAT_BLOCK);
+        int end = Math.min(mSize, (block + 1) * FORMAT_BLOCK);
+        for (int i = block * FORMAT_BLOCK; i < end; i++) {
+            if (!mRows.containsKey(i) && !mFormattedAhead.containsKey(i)) {
+                positions.add(i);
+                articles.add(getArticle(i));
+            }
+        }
+        if (positions.isEmpty()) {
+            return;
+        }
+        final Map<Integer, ArticleRow> formattedAhead = mFormattedAhead;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < positions.size(); i++) {
+                    formattedAhead.put(positions.get(i), mFormatter.format(articles.get(i)));
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds the articles of a chunk to the index on the background thread, after the ones
+     * appended before them
+     */
+    private void index(final List<Article> articles) {
+        final ArticleIndex index = mIndex;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Article article : articles) {
+                    index.add(article);
+                }
+                Runnable listener = mOnIndexedListener;
+                if (listener != null) {
+                    listener.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Adds a chunk to the last read, closing the least recently read if there are too many
+     */
+    private void addOpenChunk(Chunk chunk) {
+        mOpenChunks.add(chunk);
+        if (mOpenChunks.size() > OPEN_CHUNKS) {
+            close(mOpenChunks.remove(0));
+        }
+    }
+
+    /**
+     * Lets go of the articles of a chunk, once they are written to its file
+     */
+    private void close(final Chunk chunk) {
+        chunk.mOpen = null;
+        if (chunk.mWriting) {
+            return;
+        }
+        chunk.mWriting = true;
+        final List<Article> articles = chunk.mArticles;
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (!mDirectory.isDirectory() && !mDirectory.mkdirs()) {
+                        throw new IOException("Could not create " + mDirectory);
+                    }
+                    File file = File.createTempFile("chunk", ".snapshot", mDirectory);
+                    chunk.mFile = file;
+                    ResultSnapshot snapshot = new ResultSnapshot(file);
+                    String key = file.getName();
+                    List<Article> written = snapshot.write(key, articles)
+                            ? snapshot.read(key) : null;
+                    if (written != null && written.size() == articles.size()) {
+                        chunk.mWritten = written;
+                        chunk.mArticles = null;
+                    }
+                } catch (IOException e) {
+                    // The articles stay in memory
+                    Log.e(LOG_TAG, "Problem writing the articles of a chunk", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Deletes the files of the given chunks in the background, once they are written
+     */
+    private void deleteFiles(final List<Chunk> chunks) {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (Chunk chunk : chunks) {
+                    // The articles read back stay mapped after the file is deleted
+                    if (chunk.mFile != null) {
+                        chunk.mFile.delete();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Creates the thread writing the chunks, which stops when it is idle
+     */
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "ArticleWindow");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A run of consecutive articles, held in memory or in a file of its own
+     */
+    private static final class Chunk {
+
+        // Position of the first article of the chunk
+        final int mStart;
+        // The articles as they were appended, until they are read back from the file
+        volatile List<Article> mArticles = new ArrayList<>();
+        // The articles read back from the file, or null until they are written
+        volatile List<Article> mWritten;
+        // The file, or null until it is created
+        File mFile;
+        // The articles in use while the chunk is among the last read, or null
+        List<Article> mOpen;
+        // Whether the articles were handed to be written
+        boolean mWriting;
+
+        Chunk(int start) {
+            mStart = start;
+        }
+    }
+}
@@ -7,32 +7,55 @@ import android.content.Loader;
 import android.content.SharedPreferences;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
-import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
-public class ArticlesActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<Article>>, SwipeRefreshLayout.OnRefreshListener {
+public class ArticlesActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<List<ArticleRow>>, SwipeRefreshLayout.OnRefreshListener {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ArticlesActivity.class.getSimpleName();
 
     //Constant value for the article loader ID
     private static final int ARTICLE_LOADER_ID = 1;
+    //Constant value for the ID of the loader fetching the pages after the first one
+    private static final int NEXT_PAGE_LOADER_ID = 2;
+    //Constant value for the ID of the loader reading the articles saved by earlier loads
+    private static final int STORED_LOADER_ID = 3;
+    //Constant value for the ID of the loader searching the saved articles while offline
+    private static final int STORED_SEARCH_LOADER_ID = 4;
+    //Key of the loader argument holding the page to load
+    private static final String ARG_PAGE = "page";
+    //Key of the loader argument telling the load to ask the server even for fresh responses
+    private static final String ARG_REVALIDATE = "revalidate";
+    //Key of the loader argument holding the text of the search
+    private static final String ARG_QUERY = "query";
+    //Largest number of saved articles a search made offline shows
+    private static final int STORED_SEARCH_LIMIT = 200;
+    //Number of rows left below the last visible one when the next page starts loading
+    private static final int PREFETCH_DISTANCE = 5;
 
-    //JSON response for a The Guardian query
-    private static final String GUARDIAN_REQUEST_URL =
-            "https://content.guardianapis.com/search";
+    // Constant value for the maximum size of the HTTP response cache, in bytes
+    private static final long HTTP_CACHE_SIZE = 4 * 1024 * 1024;
 
-    // Create a new list of articles
-    private final List<Article> articleList = new ArrayList<>();
+    // The list of articles, of which only the rows around the ones shown are kept in memory
+    private ArticleWindow articleList;
     // Get a reference to the LoaderManager
     LoaderManager loaderManager = getLoaderManager();
     // Get a reference to the ArticleAdapter
@@ -43,12 +66,63 @@ public class ArticlesActivity extends AppCompatActivity implements LoaderManager
     private RecyclerView mRecyclerView;
     // Get a reference to the SwipeRefreshLayout
     private SwipeRefreshLayout swipeLayout;
+    // The next page to load when the list is scrolled near its end
+    private int mNextPage = 2;
+    // Whether the last page loaded was full, meaning there could be more
+    private boolean mHasMorePages = true;
+    // Whether a page after the first one is currently loading
+    private boolean mLoadingNextPage;
+    // Whether the list shows the articles saved by earlier loads rather than a fresh page
+    private boolean mShowingStored;
+    // Publishing time of the newest article of the snapshot shown, or ArticleStore.NO_DATE
+    private long mSnapshotNewestMillis = ArticleStore.NO_DATE;
+    // Whether there was no network connection to load articles from
+    private boolean mOffline;
+    // Keeps the articles of the last first page for the next cold start
+    private ResultSnapshot mSnapshot;
+    // The text of the search, empty to show every row
+    private String mQuery = "";
+    // Searches the rows again once the rows appended since are indexed
+    private final Runnable mSearchAgain = new Runnable() {
+        @Override
+        public void run() {
+            if (!mQuery.trim().isEmpty() && !mOffline) {
+                showRows();
+            }
+        }
+    };
+    // Time the activity was created at, from SystemClock.elapsedRealtime()
+    private long mCreatedAt;
+    // Whether the time to the first articles shown has been logged
+    private boolean mFirstContentLogged;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mCreatedAt = SystemClock.elapsedRealtime();
         setContentView(R.layout.article_activity);
 
+        // However many pages are loaded, the articles scrolled away from are written to files
+        articleList = new ArticleWindow(new File(getCacheDir(), "window"),
+                new ArticleRowFormatter(this));
+        // The rows are indexed for the search in the background, as they are appended
+        final Handler handler = new Handler(Looper.getMainLooper());
+        articleList.setOnIndexedListener(new Runnable() {
+            @Override
+            public void run() {
+                handler.post(mSearchAgain);
+            }
+        });
+
+        // Install the disk cache used to revalidate the responses of earlier loads
+        DiskResponseCache.install(new File(getCacheDir(), "http"), HTTP_CACHE_SIZE);
+
+        // Report how long each phase of the loads takes to logcat and to a file
+        LoadMetrics.getInstance().installDefaultSinks(getFilesDir());
+
+        // Keep the saved articles up to date in the background
+        ArticleSyncService.schedule(this);
+
         // Set a swipe refresh layout
         swipeLayout = findViewById(R.id.swipe_container);
         // Set the color resources used in the progress animation from color resources
@@ -69,40 +143,211 @@ public class ArticlesActivity extends AppCompatActivity implements LoaderManager
         mAdapter = new ArticleAdapter(this, articleList);
         // Set the adapter on the recycler view so the list can be populated in the user interface
         mRecyclerView.setAdapter(mAdapter);
+        // Start loading the next page before the user reaches the end of the list
+        mRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                if (dy > 0) {
+                    LinearLayoutManager layoutManager =
+                            (LinearLayoutManager) recyclerView.getLayoutManager();
+                    int lastVisible = layoutManager.findLastVisibleItemPosition();
+                    if (lastVisible >= mAdapter.getItemCount() - 1 - PREFETCH_DISTANCE) {
+                        loadNextPage();
+                    }
+                }
+            }
+        });
+        // A page load left over from before a configuration change would be appended to a list
+        // which now starts over from the first page
+        loaderManager.destroyLoader(NEXT_PAGE_LOADER_ID);
 
         // Find a reference to the {@link TextView} for the empty state
         mEmptyStateTextView = findViewById(R.id.empty_view);
 
+        // Show the first page straight away if it was loaded moments ago, otherwise the last
+        // first page, which the network load refreshes behind
+        mSnapshot = new ResultSnapshot(new File(getCacheDir(), "first_page.snapshot"));
+        if (!restoreCachedPage()) {
+            restoreSnapshot();
+        }
+
         // Get a reference to the ConnectivityManager to check state of network connectivity
         ConnectivityManager connMgr = (ConnectivityManager)
                 getSystemService(Context.CONNECTIVITY_SERVICE);
         // Get details on the currently active default data network
         assert connMgr != null;
         NetworkInfo networkInfo = connMgr.getActiveNetworkInfo();
+        // Without a snapshot, show the articles saved by earlier loads while the network is being
+        // waited for. These may also be newer than the snapshot, once the background sync has
+        // saved articles published since
+        if (articleList.isEmpty() || mShowingStored) {
+            loaderManager.initLoader(STORED_LOADER_ID, null, this);
+        }
         // If there is a network connection, fetch data
         if (networkInfo != null && networkInfo.isConnected()) {
+            if (!articleList.isEmpty()) {
+                // Tell the user the articles shown are being refreshed
+                swipeLayout.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mShowingStored) {
+                            swipeLayout.setRefreshing(true);
+                        }
+                    }
+                });
+            }
             // Initialize the loader
             loaderManager.initLoader(ARTICLE_LOADER_ID, null, this);
         } else {
-            // Otherwise, display error:
-            // Find the loading indicator
-            View loadingIndicator = findViewById(R.id.loading_indicator);
-            // Set its visibility to gone
-            loadingIndicator.setVisibility(View.GONE);
-            // Update empty state with no connection error message
-            mEmptyStateTextView.setText(R.string.no_internet_connection);
+            // Otherwise the saved articles are all there is to show, the error is displayed
+            // if there are none
+            mOffline = true;
         }
     }
 
+    /**
+     * Shows the articles of the first page if they are still in memory from a load made moments
+     * ago, as when the settings are changed back. The load of the page is then answered from
+     * memory as well.
+     *
+     * @return true if the articles are shown
+     */
+    private boolean restoreCachedPage() {
+        List<Article> articles = ResultCache.getInstance().get(
+                ResultCache.keyOf(buildRequestUrls(1)));
+        if (articles == null || articles.isEmpty()) {
+            return false;
+        }
+        List<ArticleRow> rows = new ArticleRowFormatter(this).formatAll(articles);
+        articleList.addAll(rows);
+        mHasMorePages = isFullPage(rows);
+        showRows();
+        findViewById(R.id.loading_indicator).setVisibility(View.GONE);
+        mRecyclerView.setVisibility(View.VISIBLE);
+        mEmptyStateTextView.setVisibility(View.GONE);
+        logFirstContent("memory");
+        return true;
+    }
+
+    /**
+     * Shows the articles of the snapshot of the last first page, if it answered the request
+     * which is about to be made. The snapshot is small enough to be read and formatted before the
+     * first frame.
+     */
+    private void restoreSnapshot() {
+        List<Article> articles = mSnapshot.read(ResultSnapshot.keyOf(buildRequestUrls(1)));
+        if (articles == null || articles.isEmpty()) {
+            return;
+        }
+        articleList.addAll(new ArticleRowFormatter(this).formatAll(articles));
+        // The snapshot is replaced by the first page once it arrives
+        mShowingStored = true;
+        mSnapshotNewestMillis = newestPublishedMillis(articles);
+        showRows();
+        findViewById(R.id.loading_indicator).setVisibility(View.GONE);
+        mRecyclerView.setVisibility(View.VISIBLE);
+        mEmptyStateTextView.setVisibility(View.GONE);
+        logFirstContent("snapshot");
+    }
+
+    /**
+     * Logs the time from the creation of the activity to the first articles shown, once
+     *
+     * @param source is where the articles came from
+     */
+    private void logFirstContent(String source) {
+        if (mFirstContentLogged) {
+            return;
+        }
+        mFirstContentLogged = true;
+        Log.v(LOG_TAG, "First articles shown from the " + source + " after "
+                + (SystemClock.elapsedRealtime() - mCreatedAt) + " ms");
+    }
+
+    /**
+     * Gives back the memory held by the articles of earlier loads when the system runs low
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        ResultCache cache = ResultCache.getInstance();
+        if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.trimToSize(0);
+        } else if (level >= TRIM_MEMORY_BACKGROUND || level == TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.getMaxSize() / 2);
+        }
+    }
+
+    /**
+     * Logs how well the thumbnails and the requests were served, and how long the loads waited
+     * for a thread, once the list is no longer visible
+     */
+    @Override
+    protected void onStop() {
+        super.onStop();
+        mAdapter.getThumbnailLoader().logStats();
+        QueryUtils.logStats();
+        LoadExecutor.getInstance().logStats();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        articleList.setOnIndexedListener(null);
+    }
+
     /**
      * This method initialize the contents of the Activity's options menu
      */
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main, menu);
+        // Narrow the list down to the rows matching the search as it is typed
+        final SearchView searchView = (SearchView) menu.findItem(R.id.action_search)
+                .getActionView();
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                // The rows are already filtered, only the keyboard is left to hide
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String query) {
+                mQuery = query;
+                showRows();
+                return true;
+            }
+        });
         return true;
     }
 
+    /**
+     * Shows the rows of the list matching the search, or all of them if there is none
+     */
+    private void showRows() {
+        if (mQuery.trim().isEmpty()) {
+            loaderManager.destroyLoader(STORED_SEARCH_LOADER_ID);
+            mAdapter.addAll(articleList);
+            return;
+        }
+        if (mOffline) {
+            // Without a network connection every saved article is searched, not only the rows
+            Bundle args = new Bundle();
+            args.putString(ARG_QUERY, mQuery);
+            loaderManager.restartLoader(STORED_SEARCH_LOADER_ID, args, this);
+            return;
+        }
+        long start = LoadMetrics.start();
+        // Only the rows indexed so far are searched, the others once they are indexed. The
+        // matching rows are only formatted as they are shown
+        List<ArticleRow> rows = articleList.select(articleList.search(mQuery));
+        LoadMetrics.getInstance().recordSince(LoadMetrics.Phase.SEARCH, start);
+        mAdapter.addAll(rows);
+    }
+
     /**
      * This method is called whenever an item in the options menu is selected.
      * It passes the MenuItem that is selected
@@ -129,43 +374,97 @@ public class ArticlesActivity extends AppCompatActivity implements LoaderManager
 
     // Instantiates and returns a mew loader for the given ID
     @Override
-    public Loader<List<Article>> onCreateLoader(int i, Bundle bundle) {
+    public Loader<List<ArticleRow>> onCreateLoader(int i, Bundle bundle) {
 
-        // Get the preferences
-        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+        // The saved articles are read from the database, as many as a page holds
+        if (i == STORED_LOADER_ID) {
+            return new StoredArticleLoader(this, getOrderBy(), getPageSize());
+        }
+        // A search made offline reads the saved articles matching it
+        if (i == STORED_SEARCH_LOADER_ID) {
+            return new StoredArticleLoader(this, getOrderBy(), STORED_SEARCH_LIMIT,
+                    bundle.getString(ARG_QUERY));
+        }
 
-        // Retrieves a String value from the preferences. The second param is the default value for
-        // this preference
-        String numberArticles = sharedPrefs.getString(
-                getString(R.string.settings_number_articles_key),
-                getString(R.string.settings_number_articles_default)
-        );
+        // The first page is loaded unless the arguments ask for another one
+        int page = bundle != null ? bundle.getInt(ARG_PAGE, 1) : 1;
+        // A refresh asks the server even if the stored responses are still fresh
+        boolean revalidate = bundle != null && bundle.getBoolean(ARG_REVALIDATE, false);
 
-        String orderBy = sharedPrefs.getString(
-                getString(R.string.settings_order_by_key),
-                getString(R.string.settings_order_by_default)
-        );
+        // Create a new loader running one query per topic. Only the first page shows the topics
+        // which answered first, unless it replaces saved articles which are better left in place
+        // until it is complete. Later pages are appended once they are complete, and only the
+        // first page is kept for the next cold start. The user waits for the first page, while
+        // later pages are fetched ahead of the scroll and give way to it
+        return new ArticleLoader(this, buildRequestUrls(page), page == 1 && !mShowingStored,
+                getString(R.string.settings_order_by_oldest_value).equals(getOrderBy()),
+                page == 1 ? mSnapshot : null, ResultCache.getInstance(),
+                page == 1 ? LoadExecutor.Priority.VISIBLE : LoadExecutor.Priority.PREFETCH,
+                revalidate);
+    }
 
-        // Breaks apart the URI string that's passed into its param
-        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+    /**
+     * Builds the urls requesting a single page of articles for each topic of the "Topics"
+     * preference
+     *
+     * @param page is the 1-based number of the page
+     * @return the list of urls, one per topic
+     */
+    private List<String> buildRequestUrls(int page) {
+        List<String> urls = new ArrayList<>();
+        for (String topic : SearchRequests.getTopics(this)) {
+            urls.add(buildRequestUrl(page, topic));
+        }
+        return urls;
+    }
 
-        // Prepares the baseUri that we just parsed so we can add query params to it
-        Uri.Builder uriBuilder = baseUri.buildUpon();
+    /**
+     * Builds the url requesting a single page of articles, sized by the "Number of Articles
+     * Shown" preference
+     *
+     * @param page  is the 1-based number of the page
+     * @param topic is the search terms of the request
+     * @return the url of the request
+     */
+    private String buildRequestUrl(int page, String topic) {
+        return SearchRequests.buildUrl(topic, getOrderBy(), String.valueOf(getPageSize()), page,
+                SearchRequests.DEFAULT_FROM_DATE);
+    }
 
-        String apiKey = BuildConfig.THE_GUARDIAN_API_KEY;
-        // Append query params and its value
-        uriBuilder.appendQueryParameter("from-date", "2018-08-01");
-        uriBuilder.appendQueryParameter("show-fields", "byline,trailText,thumbnail,headline");
-        uriBuilder.appendQueryParameter("order-by", orderBy);
-        uriBuilder.appendQueryParameter("page-size", numberArticles);
-        uriBuilder.appendQueryParameter("q", "technology");
-        uriBuilder.appendQueryParameter("api-key", apiKey);
-        // Create a new loader for the completed uri
-        return new ArticleLoader(this, uriBuilder.toString());
+    /**
+     * Starts loading the next page in the background, unless one is already loading or the
+     * last page has been reached
+     */
+    private void loadNextPage() {
+        if (mLoadingNextPage || !mHasMorePages || mShowingStored || articleList.isEmpty()) {
+            return;
+        }
+        mLoadingNextPage = true;
+        Bundle args = new Bundle();
+        args.putInt(ARG_PAGE, mNextPage);
+        loaderManager.restartLoader(NEXT_PAGE_LOADER_ID, args, this);
     }
 
     @Override
-    public void onLoadFinished(Loader<List<Article>> loader, List<Article> articles) {
+    public void onLoadFinished(Loader<List<ArticleRow>> loader, List<ArticleRow> articles) {
+
+        // A page after the first one is appended below the rows already shown
+        if (loader.getId() == NEXT_PAGE_LOADER_ID) {
+            onNextPageLoaded(articles);
+            return;
+        }
+        // The saved articles are shown until the first page arrives
+        if (loader.getId() == STORED_LOADER_ID) {
+            onStoredArticlesLoaded(articles);
+            return;
+        }
+        // The saved articles matching a search made offline replace the rows shown
+        if (loader.getId() == STORED_SEARCH_LOADER_ID) {
+            if (!mQuery.trim().isEmpty()) {
+                mAdapter.addAll(articles != null ? articles : new ArrayList<ArticleRow>());
+            }
+            return;
+        }
 
         // Find the loading indicator
         View loadingIndicator = findViewById(R.id.loading_indicator);
@@ -174,12 +473,17 @@ public class ArticlesActivity extends AppCompatActivity implements LoaderManager
 
         // If there is a list of articles
         if (articles != null && !articles.isEmpty()) {
-            // Update the adapter
-            mAdapter.addAll(articles);
-            // Notify the RecyclerView
-            mAdapter.notifyDataSetChanged();
+            // Start over from the first page
+            articleList.clear();
+            articleList.addAll(articles);
+            mShowingStored = false;
+            mNextPage = 2;
+            mHasMorePages = isFullPage(articles);
+            // Update the adapter, which only rebinds the rows that changed
+            showRows();
             // Make the list visible
             mRecyclerView.setVisibility(View.VISIBLE);
+            logFirstContent("network");
             // Hide the empty state
             mEmptyStateTextView.setVisibility(View.GONE);
             // Notify swipeRefreshLayout that the refresh has finished
@@ -189,25 +493,164 @@ public class ArticlesActivity extends AppCompatActivity implements LoaderManager
                     swipeLayout.setRefreshing(false);
                 }
             });
+        } else if (!articleList.isEmpty()) {
+            // Keep showing the saved or previously loaded articles, the next refresh will try
+            // again
+            swipeLayout.setRefreshing(false);
         } else {
+            swipeLayout.setRefreshing(false);
             // Otherwise, hide the list
             mRecyclerView.setVisibility(View.GONE);
             // Make the empty state visible
             mEmptyStateTextView.setVisibility(View.VISIBLE);
             // Set it to display "No articles found."
             mEmptyStateTextView.setText(R.string.no_articles);
+            // Fall back to the saved articles, which replace the empty state if there are any
+            loaderManager.initLoader(STORED_LOADER_ID, null, this);
         }
     }
 
+    /**
+     * Shows the articles saved by earlier loads, unless the first page has already arrived. In
+     * place of a snapshot, they are only shown if the background sync saved newer articles.
+     *
+     * @param articles is the list of saved articles
+     */
+    private void onStoredArticlesLoaded(List<ArticleRow> articles) {
+        if (!articleList.isEmpty()) {
+            if (!mShowingStored || articles == null || articles.isEmpty()
+                    || newestPublishedMillis(rowArticles(articles)) <= mSnapshotNewestMillis) {
+                return;
+            }
+            articleList.clear();
+            mSnapshotNewestMillis = ArticleStore.NO_DATE;
+        }
+        if (articles != null && !articles.isEmpty()) {
+            articleList.addAll(articles);
+            mShowingStored = true;
+            showRows();
+            logFirstContent("database");
+            // There is something to look at, the first page replaces it once it arrives
+            findViewById(R.id.loading_indicator).setVisibility(View.GONE);
+            mRecyclerView.setVisibility(View.VISIBLE);
+            mEmptyStateTextView.setVisibility(View.GONE);
+        } else if (mOffline) {
+            // Find the loading indicator and set its visibility to gone
+            findViewById(R.id.loading_indicator).setVisibility(View.GONE);
+            // Update empty state with no connection error message
+            mEmptyStateTextView.setText(R.string.no_internet_connection);
+        }
+    }
+
+    /**
+     * @return the publishing time of the newest of the articles, or {@link ArticleStore#NO_DATE}
+     */
+    private static long newestPublishedMillis(List<Article> articles) {
+        // NO_DATE sorts before every date
+        long newest = ArticleStore.NO_DATE;
+        for (Article article : articles) {
+            newest = Math.max(newest, article.getPublishedMillis());
+        }
+        return newest;
+    }
+
+    /**
+     * @return the articles of the rows
+     */
+    private static List<Article> rowArticles(List<ArticleRow> rows) {
+        List<Article> articles = new ArrayList<>(rows.size());
+        for (ArticleRow row : rows) {
+            articles.add(row.getArticle());
+        }
+        return articles;
+    }
+
+    /**
+     * Appends a page loaded after the first one to the list, without touching the rows already
+     * shown
+     *
+     * @param articles is the page of articles, or null if it could not be loaded
+     */
+    private void onNextPageLoaded(List<ArticleRow> articles) {
+        mLoadingNextPage = false;
+        if (articles == null || articles.isEmpty()) {
+            // Past the last page, or a failure which the next refresh will retry
+            mHasMorePages = false;
+            return;
+        }
+        articleList.addAll(articles);
+        if (mQuery.trim().isEmpty()) {
+            // Only the new rows are inserted, the others are neither copied nor compared
+            mAdapter.addAppended(articleList);
+        } else {
+            showRows();
+        }
+        mHasMorePages = isFullPage(articles);
+        mNextPage++;
+    }
+
+    /**
+     * @return true if the page holds as many articles as were asked for, meaning there could be
+     * more
+     */
+    private boolean isFullPage(List<ArticleRow> articles) {
+        return articles.size() >= getPageSize();
+    }
+
+    /**
+     * @return the number of articles per page, from the "Number of Articles Shown" preference,
+     * within what the API serves
+     */
+    private int getPageSize() {
+        // Get the preferences
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+
+        // Retrieves a String value from the preferences. The second param is the default value for
+        // this preference
+        String pageSize = sharedPrefs.getString(
+                getString(R.string.settings_number_articles_key),
+                getString(R.string.settings_number_articles_default)
+        );
+        return SearchRequests.parsePageSize(pageSize,
+                Integer.parseInt(getString(R.string.settings_number_articles_default)));
+    }
+
+    /**
+     * @return the order of the articles, from the "Order By" preference
+     */
+    private String getOrderBy() {
+        // Get the preferences
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(this);
+
+        return sharedPrefs.getString(
+                getString(R.string.settings_order_by_key),
+                getString(R.string.settings_order_by_default)
+        );
+    }
+
     @Override
-    public void onLoaderReset(Loader<List<Article>> loader) {
-        mRecyclerView.removeAllViewsInLayout();
+    public void onLoaderReset(Loader<List<ArticleRow>> loader) {
+        // Dropping a page load leaves the rows already shown in place
+        if (loader.getId() == ARTICLE_LOADER_ID) {
+            mRecyclerView.removeAllViewsInLayout();
+        }
     }
 
     @Override
     public void onRefresh() {
+        // Drop any page still loading, the list starts over from the first page
+        loaderManager.destroyLoader(NEXT_PAGE_LOADER_ID);
+        mLoadingNextPage = false;
+        // A refresh asks for the latest articles, not the ones kept from the last loads
+        ResultCache cache = ResultCache.getInstance();
+        for (int page = 1; page < mNextPage; page++) {
+            cache.remove(ResultCache.keyOf(buildRequestUrls(page)));
+        }
         // Re-create the Loader. If there is currently a Loader associated with this ID,
-        // it will be canceled/stopped/destroyed.
-        loaderManager.restartLoader(ARTICLE_LOADER_ID, null, this);
+        // it will be canceled/stopped/destroyed. It asks the server rather than trusting the
+        // responses stored on disk, which only resends the bodies which changed
+        Bundle args = new Bundle();
+        args.putBoolean(ARG_REVALIDATE, true);
+        loaderManager.restartLoader(ARTICLE_LOADER_ID, args, this);
     }
 }
@@ -0,0 +1,131 @@
+package com.example.limmonica.newsapp;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out byte buffers for reading responses and takes them back once a response has been
+ * read, so loads stop allocating a new buffer for every request.
+ * <p>
+ * Buffers come in a few power of two sizes, from {@link #MIN_SIZE} to {@link #MAX_SIZE}. A
+ * response whose length is known gets the smallest buffer holding all of it, so a small response
+ * does not tie up a large buffer and a large one is read in few calls. A few buffers of each size
+ * are kept, the others are left to the garbage collector.
+ */
+final class BufferPool {
+
+    // Constant value for the size of the smallest buffer, in bytes
+    static final int MIN_SIZE = 4 * 1024;
+    // Constant value for the size of the largest buffer, in bytes
+    static final int MAX_SIZE = 64 * 1024;
+    // Constant value for the size of a buffer for a response of unknown length, in bytes
+    static final int DEFAULT_SIZE = 8 * 1024;
+    // Constant value for the number of buffers kept of each size, as many as loads run at once
+    private static final int MAX_POOLED_PER_SIZE = 4;
+
+    // The pool shared by all loads
+    private static final BufferPool sInstance = new BufferPool();
+
+    // The free buffers, by size class from MIN_SIZE up
+    private final ArrayDeque<byte[]>[] mFree;
+    // Number of buffers allocated
+    private final AtomicLong mAllocationCount = new AtomicLong();
+    // Number of buffers handed out again
+    private final AtomicLong mReuseCount = new AtomicLong();
+
+    /**
+     * Creates a new, empty {@link BufferPool}
+     */
+    @SuppressWarnings("unchecked")
+    BufferPool() {
+        mFree = (ArrayDeque<byte[]>[]) new ArrayDeque<?>[sizeClassOf(MAX_SIZE) + 1];
+        for (int i = 0; i < mFree.length; i++) {
+            mFree[i] = new ArrayDeque<>(MAX_POOLED_PER_SIZE);
+        }
+    }
+
+    /**
+     * @return the pool shared by all loads
+     */
+    static BufferPool getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns a buffer for reading a response of the given length, which should be handed back
+     * through {@link #release(byte[])} once the response has been read.
+     *
+     * @param expectedLength is the length of the response, or -1 if it is not known
+     * @return a buffer of at least {@link #MIN_SIZE} bytes, holding the whole response if it fits
+     * in {@link #MAX_SIZE} bytes
+     */
+    byte[] acquire(long expectedLength) {
+        int size = sizeFor(expectedLength);
+        ArrayDeque<byte[]> free = mFree[sizeClassOf(size)];
+        byte[] buffer;
+        synchronized (free) {
+            buffer = free.pollFirst();
+        }
+        if (buffer != null) {
+            mReuseCount.incrementAndGet();
+            return buffer;
+        }
+        mAllocationCount.incrementAndGet();
+        return new byte[size];
+    }
+
+    /**
+     * Takes back a buffer from {@link #acquire(long)}. The buffer must not be used afterwards.
+     *
+     * @param buffer is the buffer, ignored if null or not from a pool
+     */
+    void release(byte[] buffer) {
+        if (buffer == null || buffer.length < MIN_SIZE || buffer.length > MAX_SIZE
+                || Integer.bitCount(buffer.length) != 1) {
+            return;
+        }
+        ArrayDeque<byte[]> free = mFree[sizeClassOf(buffer.length)];
+        synchronized (free) {
+            if (free.size() < MAX_POOLED_PER_SIZE) {
+                free.addFirst(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return the number of buffers allocated
+     */
+    long getAllocationCount() {
+        return mAllocationCount.get();
+    }
+
+    /**
+     * @return the number of buffers handed out again instead of being allocated
+     */
+    long getReuseCount() {
+        return mReuseCount.get();
+    }
+
+    /**
+     * @return the size of the buffer for a response of the given length
+     */
+    static int sizeFor(long expectedLength) {
+        if (expectedLength < 0) {
+            return DEFAULT_SIZE;
+        }
+        if (expectedLength <= MIN_SIZE) {
+            return MIN_SIZE;
+        }
+        if (expectedLength >= MAX_SIZE) {
+            return MAX_SIZE;
+        }
+        return Integer.highestOneBit((int) expectedLength - 1) << 1;
+    }
+
+    /**
+     * @return the index of the free list of buffers of the given power of two size
+     */
+    private static int sizeClassOf(int size) {
+        return Integer.numberOfTrailingZeros(size) - Integer.numberOfTrailingZeros(MIN_SIZE);
+    }
+}
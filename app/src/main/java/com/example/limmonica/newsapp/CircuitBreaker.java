@@ -0,0 +1,136 @@
+package com.example.limmonica.newsapp;
+
+/**
+ * Stops sending requests to a server which keeps failing, so loads fail fast instead of each
+ * waiting out its timeouts and retries.
+ * <p>
+ * The breaker is closed while requests succeed. After a number of failures in a row it opens
+ * and turns every request down for a while. Once that while has passed it lets a single trial
+ * request through: if it succeeds the breaker closes again, otherwise it stays open for another
+ * while.
+ */
+final class CircuitBreaker {
+
+    /**
+     * State of a {@link CircuitBreaker}
+     */
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * Source of the current time, so tests can move it forward
+     */
+    interface Clock {
+
+        /**
+         * @return the current time in milliseconds
+         */
+        long millis();
+    }
+
+    // Reads the time of the system
+    static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long millis() {
+            return System.currentTimeMillis();
+        }
+    };
+
+    // Number of failures in a row opening the breaker
+    private final int mFailureThreshold;
+    // Time the breaker stays open before letting a trial request through, in milliseconds
+    private final long mOpenMillis;
+    // Source of the current time
+    private final Clock mClock;
+
+    // Current state
+    private State mState = State.CLOSED;
+    // Number of failures in a row
+    private int mFailures;
+    // Time the breaker last opened at
+    private long mOpenedAt;
+    // Number of times the breaker opened
+    private int mOpenCount;
+
+    /**
+     * Creates a new {@link CircuitBreaker}
+     *
+     * @param failureThreshold is the number of failures in a row opening the breaker
+     * @param openMillis       is the time the breaker stays open, in milliseconds
+     * @param clock            is the source of the current time
+     */
+    CircuitBreaker(int failureThreshold, long openMillis, Clock clock) {
+        mFailureThreshold = failureThreshold;
+        mOpenMillis = openMillis;
+        mClock = clock;
+    }
+
+    /**
+     * Asks whether a request may be sent. While the breaker is half open, only the first caller
+     * is let through until its request has been recorded.
+     *
+     * @return true if the request may be sent
+     */
+    synchronized boolean allowRequest() {
+        switch (mState) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (mClock.millis() - mOpenedAt >= mOpenMillis) {
+                    mState = State.HALF_OPEN;
+                    return true;
+                }
+                return false;
+            default:
+                // A trial request is already on its way
+                return false;
+        }
+    }
+
+    /**
+     * Records a request which reached the server, closing the breaker
+     */
+    synchronized void recordSuccess() {
+        mFailures = 0;
+        mState = State.CLOSED;
+    }
+
+    /**
+     * Records a request which failed, opening the breaker after too many failures in a row or
+     * if the trial request failed
+     */
+    synchronized void recordFailure() {
+        mFailures++;
+        if (mState == State.HALF_OPEN
+                || (mState == State.CLOSED && mFailures >= mFailureThreshold)) {
+            mState = State.OPEN;
+            mOpenedAt = mClock.millis();
+            mOpenCount++;
+        }
+    }
+
+    /**
+     * Records a request given up before it got an answer, which tells nothing about the server.
+     * A trial request given up lets the next caller make another one.
+     */
+    synchronized void recordAbandoned() {
+        if (mState == State.HALF_OPEN) {
+            mState = State.OPEN;
+        }
+    }
+
+    /**
+     * @return the current state
+     */
+    synchronized State getState() {
+        return mState;
+    }
+
+    /**
+     * @return the number of times the breaker opened
+     */
+    synchronized int getOpenCount() {
+        return mOpenCount;
+    }
+}
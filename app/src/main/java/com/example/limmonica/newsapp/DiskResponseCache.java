@@ -0,0 +1,552 @@
+package com.example.limmonica.newsapp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * A bounded on-disk cache of response bodies, used to revalidate requests with conditional GETs.
+ * <p>
+ * Entries are keyed by the request URL with its query parameters sorted and the "api-key"
+ * parameter removed, so changing the key does not throw the cache away. Each entry is a body file
+ * holding the decoded response next to a small properties file holding its validators. When the
+ * total size of the bodies grows past the limit, the least recently used entries are evicted.
+ */
+final class DiskResponseCache {
+
+    // Query parameter which is not part of the cache key
+    private static final String STRIPPED_PARAMETER = "api-key";
+    // Suffixes of the files making up an entry
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // Keys of the properties stored for an entry
+    private static final String META_KEY = "key";
+    private static final String META_ETAG = "etag";
+    private static final String META_LAST_MODIFIED = "lastModified";
+    private static final String META_EXPIRES = "expires";
+    // Charset of the cache keys
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // The cache installed for the app, if any
+    private static DiskResponseCache sInstalled;
+
+    // The directory holding the entries
+    private final File mDirectory;
+    // The maximum number of body bytes kept on disk
+    private final long mMaxSize;
+    // The number of body bytes currently on disk
+    private long mSize;
+    // The entries, from the least to the most recently used
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    // Number of requests answered from disk
+    private int mHitCount;
+    // Number of requests which downloaded a full body
+    private int mMissCount;
+    // Number of body bytes read from disk instead of the network
+    private long mBytesServed;
+
+    /**
+     * Creates a new {@link DiskResponseCache} and loads the entries already in the directory.
+     *
+     * @param directory is the directory holding the entries
+     * @param maxSize   is the maximum number of body bytes kept on disk
+     */
+    DiskResponseCache(File directory, long maxSize) {
+        mDirectory = directory;
+        mMaxSize = maxSize;
+        load();
+    }
+
+    /**
+     * Creates the cache used by all requests of the app.
+     *
+     * @param directory is the directory holding the entries
+     * @param maxSize   is the maximum number of body bytes kept on disk
+     * @return the installed cache
+     */
+    static synchronized DiskResponseCache install(File directory, long maxSize) {
+        if (sInstalled == null || !sInstalled.mDirectory.equals(directory)) {
+            sInstalled = new DiskResponseCache(directory, maxSize);
+        }
+        return sInstalled;
+    }
+
+    /**
+     * @return the cache used by all requests of the app, or null if none was installed
+     */
+    static synchronized DiskResponseCache getInstalled() {
+        return sInstalled;
+    }
+
+    /**
+     * Returns the cache key of a request url: its query parameters are sorted and the api key is
+     * removed.
+     */
+    static String normalizeKey(String url) {
+        int queryStart = url.indexOf('?');
+        if (queryStart == -1) {
+            return url;
+        }
+        List<String> parameters = new ArrayList<>();
+        for (String parameter : url.substring(queryStart + 1).split("&")) {
+            if (!parameter.isEmpty() && !parameter.equals(STRIPPED_PARAMETER)
+                    && !parameter.startsWith(STRIPPED_PARAMETER + "=")) {
+                parameters.add(parameter);
+            }
+        }
+        Collections.sort(parameters);
+        StringBuilder key = new StringBuilder(url.length()).append(url, 0, queryStart);
+        for (int i = 0; i < parameters.size(); i++) {
+            key.append(i == 0 ? '?' : '&').append(parameters.get(i));
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the entry stored for the given request url.
+     *
+     * @param url is the request url
+     * @return the entry, or null if there is none
+     */
+    synchronized Entry get(String url) {
+        Entry entry = mEntries.get(normalizeKey(url));
+        if (entry != null && !entry.getBodyFile().exists()) {
+            // The body was deleted behind our back
+            remove(entry);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Opens the stored body of an entry, counting the request as a hit.
+     *
+     * @param entry is the entry to read
+     * @return the body of the entry
+     * @throws IOException if the body can not be read
+     */
+    InputStream openHit(Entry entry) throws IOException {
+        File bodyFile = entry.getBodyFile();
+        InputStream body = new FileInputStream(bodyFile);
+        synchronized (this) {
+            mHitCount++;
+            mBytesServed += entry.mSize;
+        }
+        // Remember the access across restarts
+        bodyFile.setLastModified(System.currentTimeMillis());
+        return body;
+    }
+
+    /**
+     * Copies a downloaded body into the cache while it is being read, counting the request as a
+     * miss. Nothing is stored unless the response can be revalidated or is fresh for a while.
+     *
+     * @param url          is the request url
+     * @param body         is the downloaded body
+     * @param etag         is the ETag header of the response, may be null
+     * @param lastModified is the Last-Modified header of the response, may be null
+     * @param cacheControl is the Cache-Control header of the response, may be null
+     * @return a stream reading the body, whose {@link Writer#commit()} must be called once the
+     * body was read successfully
+     */
+    Writer store(String url, InputStream body, String etag, String lastModified,
+                 String cacheControl) throws IOException {
+        synchronized (this) {
+            mMissCount++;
+        }
+        long maxAge = parseMaxAge(cacheControl);
+        if (etag == null && lastModified == null && maxAge <= 0) {
+            return new Writer(body, null, null);
+        }
+        String key = normalizeKey(url);
+        Entry entry = new Entry(key, etag, lastModified,
+                maxAge > 0 ? System.currentTimeMillis() + maxAge * 1000 : 0);
+        mDirectory.mkdirs();
+        File temp = File.createTempFile(entry.mFileName, TEMP_SUFFIX, mDirectory);
+        return new Writer(body, entry, temp);
+    }
+
+    /**
+     * Updates the validators and the freshness of an entry the server answered 304 Not Modified
+     * for, so the next requests do not revalidate it again before its new max-age has passed.
+     *
+     * @param entry        is the entry which was revalidated
+     * @param etag         is the ETag header of the response, may be null to keep the stored one
+     * @param lastModified is the Last-Modified header of the response, may be null to keep the
+     *                     stored one
+     * @param cacheControl is the Cache-Control header of the response, may be null
+     */
+    synchronized void refresh(Entry entry, String etag, String lastModified,
+                              String cacheControl) throws IOException {
+        if (mEntries.get(entry.mKey) != entry) {
+            // Replaced or evicted since it was read
+            return;
+        }
+        long maxAge = parseMaxAge(cacheControl);
+        Entry refreshed = new Entry(entry.mKey, etag != null ? etag : entry.mEtag,
+                lastModified != null ? lastModified : entry.mLastModified,
+                maxAge > 0 ? System.currentTimeMillis() + maxAge * 1000 : 0);
+        refreshed.mSize = entry.mSize;
+        writeMeta(refreshed);
+        mEntries.put(refreshed.mKey, refreshed);
+    }
+
+    /**
+     * @return the number of requests answered from disk
+     */
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of requests which downloaded a full body
+     */
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return the number of body bytes read from disk instead of the network
+     */
+    synchronized long getBytesServed() {
+        return mBytesServed;
+    }
+
+    /**
+     * @return the number of body bytes currently on disk
+     */
+    synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * Adds a completely written entry, evicting the least recently used ones if needed
+     */
+    private synchronized void commit(Entry entry, File temp) throws IOException {
+        writeMeta(entry);
+
+        Entry previous = mEntries.remove(entry.mKey);
+        if (previous != null) {
+            mSize -= previous.mSize;
+        }
+        if (!temp.renameTo(entry.getBodyFile())) {
+            temp.delete();
+            new File(mDirectory, entry.mFileName + META_SUFFIX).delete();
+            throw new IOException("Could not commit cache entry " + entry.mFileName);
+        }
+        entry.mSize = entry.getBodyFile().length();
+        mEntries.put(entry.mKey, entry);
+        mSize += entry.mSize;
+        trimToSize();
+    }
+
+    /**
+     * Writes the properties file of an entry
+     */
+    private void writeMeta(Entry entry) throws IOException {
+        Properties meta = new Properties();
+        meta.setProperty(META_KEY, entry.mKey);
+        if (entry.mEtag != null) {
+            meta.setProperty(META_ETAG, entry.mEtag);
+        }
+        if (entry.mLastModified != null) {
+            meta.setProperty(META_LAST_MODIFIED, entry.mLastModified);
+        }
+        meta.setProperty(META_EXPIRES, String.valueOf(entry.mExpires));
+        OutputStream metaOut = new FileOutputStream(new File(mDirectory,
+                entry.mFileName + META_SUFFIX));
+        try {
+            meta.store(metaOut, null);
+        } finally {
+            metaOut.close();
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits its maximum size
+     */
+    private void trimToSize() {
+        Iterator<Entry> iterator = mEntries.values().iterator();
+        while (mSize > mMaxSize && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            deleteFiles(eldest);
+        }
+    }
+
+    /**
+     * Removes an entry and its files
+     */
+    private void remove(Entry entry) {
+        mEntries.remove(entry.mKey);
+        deleteFiles(entry);
+    }
+
+    /**
+     * Deletes the files of an entry which is no longer in the map
+     */
+    private void deleteFiles(Entry entry) {
+        mSize -= entry.mSize;
+        entry.getBodyFile().delete();
+        new File(mDirectory, entry.mFileName + META_SUFFIX).delete();
+    }
+
+    /**
+     * Loads the entries found in the directory, ordered by when they were last used
+     */
+    private void load() {
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<Entry> loaded = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // Left over by a write that never finished
+                file.delete();
+            } else if (name.endsWith(META_SUFFIX)) {
+                Entry entry = readEntry(file);
+                if (entry != null && entry.getBodyFile().exists()) {
+                    entry.mSize = entry.getBodyFile().length();
+                    loaded.add(entry);
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        Entry[] sorted = loaded.toArray(new Entry[0]);
+        Arrays.sort(sorted, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                long lastUsedA = a.getBodyFile().lastModified();
+                long lastUsedB = b.getBodyFile().lastModified();
+                return lastUsedA < lastUsedB ? -1 : (lastUsedA == lastUsedB ? 0 : 1);
+            }
+        });
+        for (Entry entry : sorted) {
+            mEntries.put(entry.mKey, entry);
+            mSize += entry.mSize;
+        }
+        trimToSize();
+    }
+
+    /**
+     * @return the entry described by a properties file, or null if it can not be read
+     */
+    private Entry readEntry(File metaFile) {
+        Properties meta = new Properties();
+        try {
+            InputStream in = new FileInputStream(metaFile);
+            try {
+                meta.load(in);
+            } finally {
+                in.close();
+            }
+            String key = meta.getProperty(META_KEY);
+            if (key == null) {
+                return null;
+            }
+            return new Entry(key, meta.getProperty(META_ETAG),
+                    meta.getProperty(META_LAST_MODIFIED),
+                    Long.parseLong(meta.getProperty(META_EXPIRES, "0")));
+        } catch (IOException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the max-age directive of a Cache-Control header in seconds, or 0
+     */
+    private static long parseMaxAge(String cacheControl) {
+        if (cacheControl == null || cacheControl.contains("no-store")
+                || cacheControl.contains("no-cache")) {
+            return 0;
+        }
+        for (String directive : cacheControl.split(",")) {
+            directive = directive.trim();
+            if (directive.startsWith("max-age=")) {
+                try {
+                    return Long.parseLong(directive.substring("max-age=".length()));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the name of the files of an entry, derived from its key
+     */
+    private static String fileName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    /**
+     * A stored response and the validators used to revalidate it
+     */
+    final class Entry {
+
+        // The normalized request url
+        private final String mKey;
+        // The name of the entry's files
+        private final String mFileName;
+        // The ETag of the response, may be null
+        private final String mEtag;
+        // The Last-Modified date of the response, may be null
+        private final String mLastModified;
+        // When the response stops being fresh, or 0
+        private final long mExpires;
+        // The size of the body in bytes
+        private long mSize;
+
+        private Entry(String key, String etag, String lastModified, long expires) {
+            mKey = key;
+            mFileName = fileName(key);
+            mEtag = etag;
+            mLastModified = lastModified;
+            mExpires = expires;
+        }
+
+        /**
+         * @return the size of the stored body, in bytes
+         */
+        long getSize() {
+            return mSize;
+        }
+
+        /**
+         * @return the ETag to send as If-None-Match, may be null
+         */
+        String getEtag() {
+            return mEtag;
+        }
+
+        /**
+         * @return the date to send as If-Modified-Since, may be null
+         */
+        String getLastModified() {
+            return mLastModified;
+        }
+
+        /**
+         * @return true if the response can be used without asking the server
+         */
+        boolean isFresh() {
+            return mExpires > System.currentTimeMillis();
+        }
+
+        private File getBodyFile() {
+            return new File(mDirectory, mFileName + BODY_SUFFIX);
+        }
+    }
+
+    /**
+     * Reads a downloaded body, copying it into a temporary file which only becomes an entry once
+     * {@link #commit()} is called
+     */
+    final class Writer extends FilterInputStream {
+
+        // The entry being written, or null if the response is not stored
+        private final Entry mEntry;
+        // The temporary file the body is copied to
+        private final File mTemp;
+        // The stream writing the temporary file
+        private OutputStream mOut;
+
+        private Writer(InputStream body, Entry entry, File temp) throws IOException {
+            super(body);
+            mEntry = entry;
+            mTemp = temp;
+            mOut = temp != null ? new FileOutputStream(temp) : null;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1 && mOut != null) {
+                mOut.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0 && mOut != null) {
+                mOut.write(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would be missing from the copy, so read them instead
+            byte[] skipBuffer = new byte[(int) Math.min(n, 4096)];
+            long skipped = 0;
+            int count;
+            while (skipped < n && (count = read(skipBuffer, 0,
+                    (int) Math.min(skipBuffer.length, n - skipped))) != -1) {
+                skipped += count;
+            }
+            return skipped;
+        }
+
+        /**
+         * Stores the body read so far as the entry for its request
+         */
+        void commit() throws IOException {
+            if (mOut == null) {
+                return;
+            }
+            OutputStream out = mOut;
+            mOut = null;
+            out.close();
+            DiskResponseCache.this.commit(mEntry, mTemp);
+        }
+
+        /**
+         * Drops the copy unless it was committed. The body itself is left open for the response
+         * it belongs to, which drains what is left of it so the connection can be reused.
+         */
+        @Override
+        public void close() throws IOException {
+            if (mOut != null) {
+                OutputStream out = mOut;
+                mOut = null;
+                try {
+                    out.close();
+                } finally {
+                    mTemp.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.example.limmonica.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Runs several queries at once and merges their articles into a single list ordered by
+ * publishing date, without duplicates.
+ * <p>
+ * The queries run in parallel on a small bounded pool, so a feed built from several queries
+ * takes about as long as its slowest query rather than the sum of all of them. Every time a query
+ * finishes before the last one, the articles of the queries finished so far are merged and handed
+ * to a listener, so the fastest queries can be shown while the others are still running.
+ * <p>
+ * The pool is shared by the loads of every {@link LoadExecutor.Priority}, and runs the queries
+ * in the lanes of their load the way {@link LoadExecutor} runs the loads: the queries of a
+ * prefetch never take the last thread, so the queries of a load the user sees only ever wait
+ * behind other visible queries. A query never waits on another one, so this order cannot block
+ * any of them for good.
+ */
+final class FanOutFetcher {
+
+    /**
+     * Fetches the articles of a single query
+     */
+    interface Fetcher {
+
+        /**
+         * @return the articles of the query, or null if they could not be fetched
+         */
+        List<Article> fetch(String url);
+    }
+
+    /**
+     * Callback invoked with the merged articles of the queries finished so far
+     */
+    interface OnBatchMergedListener {
+
+        /**
+         * @param articles is the merged list of articles
+         * @param finished is the number of queries finished
+         * @param total    is the number of queries
+         */
+        void onBatchMerged(List<Article> articles, int finished, int total);
+    }
+
+    // Tag for log messages
+    private static final String LOG_TAG = FanOutFetcher.class.getSimpleName();
+
+    // Constant value for the largest number of queries running at the same time
+    private static final int MAX_CONCURRENT_QUERIES = 4;
+
+    // The pool shared by all fan-outs, running the queries in the lanes of their priority
+    private static final LoadExecutor sExecutor =
+            new LoadExecutor("FanOut", MAX_CONCURRENT_QUERIES, null);
+
+    // Newest articles first
+    static final Comparator<Article> NEWEST_FIRST = new Comparator<Article>() {
+        @Override
+        public int compare(Article a, Article b) {
+            long first = a.getPublishedMillis();
+            long second = b.getPublishedMillis();
+            return first > second ? -1 : (first == second ? 0 : 1);
+        }
+    };
+    // Oldest articles first
+    static final Comparator<Article> OLDEST_FIRST = Collections.reverseOrder(NEWEST_FIRST);
+
+    // Fetches the articles of a single query
+    private final Fetcher mFetcher;
+    // Runs the queries
+    private final LoadExecutor mExecutor;
+    // Order of the merged articles
+    private final Comparator<Article> mOrder;
+    // Priority of the load the queries are run for
+    private final LoadExecutor.Priority mPriority;
+
+    /**
+     * Creates a new {@link FanOutFetcher} running the queries on the shared pool
+     *
+     * @param oldestFirst  is true to list the oldest articles first, the newest come first
+     *                     otherwise
+     * @param priority     is the priority of the load the queries are run for
+     * @param cancellation aborts all the queries when it is cancelled, may be null
+     * @param revalidate   is true to ask the server even for the queries whose stored copy is
+     *                     still fresh
+     */
+    FanOutFetcher(boolean oldestFirst, LoadExecutor.Priority priority,
+                  final HttpClient.Cancellation cancellation, final boolean revalidate) {
+        this(new Fetcher() {
+            @Override
+            public List<Article> fetch(String url) {
+                return QueryUtils.fetchArticleData(url, null,
+                        cancellation != null ? cancellation.newChild() : null, revalidate);
+            }
+        }, sExecutor, oldestFirst, priority);
+    }
+
+    /**
+     * Creates a new {@link FanOutFetcher} running the queries of a visible load
+     *
+     * @param fetcher     fetches the articles of a single query
+     * @param executor    runs the queries
+     * @param oldestFirst is true to list the oldest articles first, the newest come first
+     *                    otherwise
+     */
+    FanOutFetcher(Fetcher fetcher, LoadExecutor executor, boolean oldestFirst) {
+        this(fetcher, executor, oldestFirst, LoadExecutor.Priority.VISIBLE);
+    }
+
+    /**
+     * Creates a new {@link FanOutFetcher}
+     *
+     * @param fetcher     fetches the articles of a single query
+     * @param executor    runs the queries
+     * @param oldestFirst is true to list the oldest articles first, the newest come first
+     *                    otherwise
+     * @param priority    is the priority of the load the queries are run for
+     */
+    FanOutFetcher(Fetcher fetcher, LoadExecutor executor, boolean oldestFirst,
+                  LoadExecutor.Priority priority) {
+        mFetcher = fetcher;
+        mExecutor = executor;
+        mOrder = oldestFirst ? OLDEST_FIRST : NEWEST_FIRST;
+        mPriority = priority;
+    }
+
+    /**
+     * Runs the queries in parallel and waits for all of them.
+     *
+     * @param urls     is the list of query urls
+     * @param listener is notified of the merged articles every time a query finishes before the
+     *                 last one, may be null
+     * @return the merged articles of all queries, or null if none of them could be fetched. If
+     * the thread is interrupted, the queries still running are cancelled and the articles of the
+     * ones finished are returned.
+     */
+    List<Article> fetchAll(List<String> urls, OnBatchMergedListener listener) {
+        BlockingQueue<Query> completion = new LinkedBlockingQueue<>();
+        List<Query> queries = new ArrayList<>(urls.size());
+        List<LoadExecutor.Task> tasks = new ArrayList<>(urls.size());
+        for (final String url : urls) {
+            Query query = new Query(new Callable<List<Article>>() {
+                @Override
+                public List<Article> call() {
+                    return mFetcher.fetch(url);
+                }
+            }, completion);
+            queries.add(query);
+            tasks.add(mExecutor.execute(query, mPriority));
+        }
+
+        List<List<Article>> results = new ArrayList<>(urls.size());
+        int total = urls.size();
+        try {
+            for (int finished = 1; finished <= total; finished++) {
+                List<Article> articles = getResult(completion.take());
+                if (articles == null) {
+                    continue;
+                }
+                results.add(articles);
+                if (listener != null && finished < total && !articles.isEmpty()) {
+                    listener.onBatchMerged(merge(results, mOrder), finished, total);
+                }
+            }
+        } catch (InterruptedException e) {
+            for (int i = 0; i < queries.size(); i++) {
+                // Take the queued queries out of their lane, and interrupt the running ones
+                tasks.get(i).cancel(false);
+                queries.get(i).cancel(true);
+            }
+            Thread.currentThread().interrupt();
+        }
+        return results.isEmpty() ? null : merge(results, mOrder);
+    }
+
+    /**
+     * Merges lists of articles into a single list in the given order, keeping the first of the
+     * articles sharing the same url. Each list is merged as a sorted run, a list not already in
+     * order is sorted first.
+     *
+     * @param lists is the list of lists of articles
+     * @param order is the order of the merged list
+     * @return the merged list
+     */
+    static List<Article> merge(List<List<Article>> lists, final Comparator<Article> order) {
+        int size = 0;
+        PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, lists.size()),
+                new Comparator<Run>() {
+                    @Override
+                    public int compare(Run a, Run b) {
+                        int byArticle = order.compare(a.head(), b.head());
+                        // Keep the order of the lists between articles of the same date
+                        return byArticle != 0 ? byArticle : a.mRank - b.mRank;
+                    }
+                });
+        for (int i = 0; i < lists.size(); i++) {
+            List<Article> articles = lists.get(i);
+            if (articles.isEmpty()) {
+                continue;
+            }
+            if (!isSorted(articles, order)) {
+                articles = new ArrayList<>(articles);
+                Collections.sort(articles, order);
+            }
+            size += articles.size();
+            heads.add(new Run(articles, i));
+        }
+
+        List<Article> merged = new ArrayList<>(size);
+        Set<String> urls = new HashSet<>(size * 2);
+        while (!heads.isEmpty()) {
+            Run run = heads.poll();
+            Article article = run.head();
+            if (urls.add(article.getArticleUrl())) {
+                merged.add(article);
+            }
+            if (run.advance()) {
+                heads.add(run);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * @return the articles of a finished query, or null if it failed
+     */
+    private static List<Article> getResult(Future<List<Article>> future)
+            throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Log.e(LOG_TAG, "Problem running a query.", e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * @return true if the articles are already in the given order
+     */
+    private static boolean isSorted(List<Article> articles, Comparator<Article> order) {
+        for (int i = 1; i < articles.size(); i++) {
+            if (order.compare(articles.get(i - 1), articles.get(i)) > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A single query, which joins the queue of its fan-out once it has finished
+     */
+    private static final class Query extends FutureTask<List<Article>> {
+
+        // The queries of the fan-out finished so far
+        private final BlockingQueue<Query> mCompletion;
+
+        Query(Callable<List<Article>> callable, BlockingQueue<Query> completion) {
+            super(callable);
+            mCompletion = completion;
+        }
+
+        @Override
+        protected void done() {
+            mCompletion.add(this);
+        }
+    }
+
+    /**
+     * A sorted list of articles being merged, with the position of its next article
+     */
+    private static final class Run {
+
+        // The articles of the list
+        private final List<Article> mArticles;
+        // Position of the list among the merged lists
+        private final int mRank;
+        // Position of the next article
+        private int mIndex;
+
+        Run(List<Article> articles, int rank) {
+            mArticles = articles;
+            mRank = rank;
+        }
+
+        Article head() {
+            return mArticles.get(mIndex);
+        }
+
+        /**
+         * @return true if there are articles left
+         */
+        boolean advance() {
+            return ++mIndex < mArticles.size();
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.example.limmonica.newsapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A shared HTTP client which keeps connections alive between loads and downloads responses
+ * gzip compressed.
+ * <p>
+ * Connections are never disconnected: once a response body has been read to the end and closed,
+ * the underlying socket goes back to the platform's connection pool and the next request to the
+ * same host skips the TCP and TLS handshakes. Compression is negotiated explicitly, rather than
+ * left to the platform, so the body can be decoded as a stream while counting the bytes that
+ * actually travelled over the network.
+ */
+final class HttpClient {
+
+    // Constant value for the read timeout
+    private static final int READ_TIMEOUT = 10000;
+    // Constant value for the connect timeout
+    private static final int CONNECT_TIMEOUT = 15000;
+    // Constant value for the largest leftover body drained to keep a connection reusable
+    private static final int MAX_DRAIN_BYTES = 64 * 1024;
+    // Constant value for how many times longer a gzip body of JSON usually gets once decoded
+    private static final int GZIP_RATIO = 4;
+
+    // The single instance shared by all loads
+    private static final HttpClient sInstance = new HttpClient();
+
+    // Number of requests made
+    private final AtomicLong mRequestCount = new AtomicLong();
+    // Number of body bytes received over the network, compressed or not
+    private final AtomicLong mWireBytes = new AtomicLong();
+    // Number of body bytes after decompression
+    private final AtomicLong mDecodedBytes = new AtomicLong();
+    // Number of requests aborted while in flight
+    private final AtomicLong mAbortedCount = new AtomicLong();
+
+    /**
+     * Creates the {@link HttpClient}, making sure the platform pools connections
+     */
+    private HttpClient() {
+        System.setProperty("http.keepAlive", "true");
+    }
+
+    /**
+     * @return the shared {@link HttpClient}
+     */
+    static HttpClient getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Makes a GET request to the given URL.
+     *
+     * @param url is the url to request
+     * @return the response, which must be closed once its body has been read
+     * @throws IOException if the connection can not be established
+     */
+    Response get(URL url) throws IOException {
+        return get(url, null, null);
+    }
+
+    /**
+     * Makes a conditional GET request to the given URL, which the server answers with
+     * {@link HttpURLConnection#HTTP_NOT_MODIFIED} if the copy we hold is still current.
+     *
+     * @param url             is the url to request
+     * @param ifNoneMatch     is the ETag of the copy we hold, may be null
+     * @param ifModifiedSince is the Last-Modified date of the copy we hold, may be null
+     * @return the response, which must be closed once its body has been read
+     * @throws IOException if the connection can not be established
+     */
+    Response get(URL url, String ifNoneMatch, String ifModifiedSince) throws IOException {
+        return get(url, ifNoneMatch, ifModifiedSince, null);
+    }
+
+    /**
+     * Makes a conditional GET request to the given URL, which can be aborted from another
+     * thread.
+     *
+     * @param url             is the url to request
+     * @param ifNoneMatch     is the ETag of the copy we hold, may be null
+     * @param ifModifiedSince is the Last-Modified date of the copy we hold, may be null
+     * @param cancellation    aborts the request when it is cancelled, may be null
+     * @return the response, which must be closed once its body has been read
+     * @throws IOException if the connection can not be established or the request was cancelled
+     */
+    Response get(URL url, String ifNoneMatch, String ifModifiedSince, Cancellation cancellation)
+            throws IOException {
+        LoadMetrics metrics = LoadMetrics.getInstance();
+        long start = LoadMetrics.start();
+        HttpURLConnection urlConnection = (HttpURLConnection) url.openConnection();
+        if (cancellation != null) {
+            cancellation.attach(urlConnection);
+        }
+        urlConnection.setReadTimeout(READ_TIMEOUT);
+        urlConnection.setConnectTimeout(CONNECT_TIMEOUT);
+        urlConnection.setRequestMethod("GET");
+        // Asking for gzip ourselves turns off the platform's transparent decompression
+        urlConnection.setRequestProperty("Accept-Encoding", "gzip");
+        urlConnection.setRequestProperty("Connection", "keep-alive");
+        if (ifNoneMatch != null) {
+            urlConnection.setRequestProperty("If-None-Match", ifNoneMatch);
+        }
+        if (ifModifiedSince != null) {
+            urlConnection.setRequestProperty("If-Modified-Since", ifModifiedSince);
+        }
+        urlConnection.connect();
+        mRequestCount.incrementAndGet();
+        long connected = LoadMetrics.start();
+        metrics.record(LoadMetrics.Phase.CONNECT, connected - start);
+        Response response = new Response(urlConnection, cancellation);
+        metrics.recordSince(LoadMetrics.Phase.FIRST_BYTE, connected);
+        return response;
+    }
+
+    /**
+     * @return the number of requests made
+     */
+    long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return the number of body bytes received over the network
+     */
+    long getWireBytes() {
+        return mWireBytes.get();
+    }
+
+    /**
+     * @return the number of body bytes after decompression
+     */
+    long getDecodedBytes() {
+        return mDecodedBytes.get();
+    }
+
+    /**
+     * @return the number of requests aborted through their {@link Cancellation} while in flight
+     */
+    long getAbortedCount() {
+        return mAbortedCount.get();
+    }
+
+    /**
+     * Lets another thread abort a request, or all the requests and parsing of a load.
+     * Cancelling disconnects the connection of the request in flight, so a read blocked on the
+     * socket fails straight away instead of waiting for the read timeout, and every piece of work
+     * checking it stops at its next check.
+     */
+    static final class Cancellation {
+
+        // Whether the request has been cancelled
+        private boolean mCancelled;
+        // The connection of the request in flight, if any
+        private HttpURLConnection mConnection;
+        // Cancellations of the requests made on behalf of this one, cancelled along with it
+        private List<Cancellation> mChildren;
+
+        /**
+         * Aborts the request, now or as soon as its connection is opened, along with the
+         * requests made on its behalf
+         */
+        void cancel() {
+            HttpURLConnection connection;
+            List<Cancellation> children;
+            synchronized (this) {
+                if (mCancelled) {
+                    return;
+                }
+                mCancelled = true;
+                connection = mConnection;
+                children = mChildren;
+                mConnection = null;
+                mChildren = null;
+                // Wake up a backoff waiting on this cancellation
+                notifyAll();
+            }
+            if (connection != null) {
+                sInstance.mAbortedCount.incrementAndGet();
+                connection.disconnect();
+            }
+            if (children != null) {
+                for (Cancellation child : children) {
+                    child.cancel();
+                }
+            }
+        }
+
+        /**
+         * Creates the cancellation of a request made on behalf of this one, which is cancelled
+         * along with it
+         *
+         * @return the cancellation of the request
+         */
+        Cancellation newChild() {
+            Cancellation child = new Cancellation();
+            synchronized (this) {
+                if (!mCancelled) {
+                    if (mChildren == null) {
+                        mChildren = new ArrayList<>();
+                    }
+                    mChildren.add(child);
+                    return child;
+                }
+            }
+            child.cancel();
+            return child;
+        }
+
+        /**
+         * @return true if the request has been cancelled
+         */
+        synchronized boolean isCancelled() {
+            return mCancelled;
+        }
+
+        /**
+         * @throws InterruptedIOException if the request has been cancelled
+         */
+        void throwIfCancelled() throws InterruptedIOException {
+            if (isCancelled()) {
+                throw new InterruptedIOException("Request cancelled");
+            }
+        }
+
+        /**
+         * Waits for the given time unless the request is cancelled first
+         *
+         * @param millis is the time to wait, in milliseconds
+         * @return true if the request has been cancelled
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        synchronized boolean await(long millis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + millis;
+            long left = millis;
+            while (!mCancelled && left > 0) {
+                wait(left);
+                left = deadline - System.currentTimeMillis();
+            }
+            return mCancelled;
+        }
+
+        /**
+         * Remembers the connection of the request, failing if it has already been cancelled
+         */
+        private synchronized void attach(HttpURLConnection connection)
+                throws InterruptedIOException {
+            if (mCancelled) {
+                throw new InterruptedIOException("Request cancelled");
+            }
+            mConnection = connection;
+        }
+
+        /**
+         * Forgets the connection of a request which completed, so a later cancel does not tear
+         * down a connection which went back to the pool
+         */
+        private synchronized void detach(HttpURLConnection connection) {
+            if (mConnection == connection) {
+                mConnection = null;
+            }
+        }
+    }
+
+    /**
+     * Thrown when the server answers a request with an error status
+     */
+    static final class StatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        // The status code of the response
+        private final int mCode;
+
+        StatusException(int code) {
+            super("Error response code: " + code);
+            mCode = code;
+        }
+
+        /**
+         * @return the status code of the response
+         */
+        int getCode() {
+            return mCode;
+        }
+    }
+
+    /**
+     * The response to a request made through {@link HttpClient}
+     */
+    final class Response implements Closeable {
+
+        // The connection the response was received on
+        private final HttpURLConnection mConnection;
+        // The status code of the response
+        private final int mCode;
+        // The raw body as it comes off the socket, opened lazily
+        private InputStream mRawBody;
+        // The decoded body, opened lazily
+        private InputStream mBody;
+        // Aborts the request, may be null
+        private final Cancellation mCancellation;
+        // Time spent waiting for the raw body, in nanoseconds
+        private long mReadNanos;
+
+        /**
+         * Creates a new {@link Response} from a connected {@link HttpURLConnection}
+         */
+        private Response(HttpURLConnection connection, Cancellation cancellation)
+                throws IOException {
+            mConnection = connection;
+            mCancellation = cancellation;
+            mCode = connection.getResponseCode();
+        }
+
+        /**
+         * @return the status code of the response
+         */
+        int getCode() {
+            return mCode;
+        }
+
+        /**
+         * @return the value of the given response header, or null
+         */
+        String getHeader(String name) {
+            return mConnection.getHeaderField(name);
+        }
+
+        /**
+         * @return the decompressed body of the response
+         */
+        InputStream getBody() throws IOException {
+            if (mBody == null) {
+                InputStream raw = mCode < HttpURLConnection.HTTP_BAD_REQUEST
+                        ? mConnection.getInputStream() : mConnection.getErrorStream();
+                if (raw == null) {
+                    raw = new ByteArrayInputStream(new byte[0]);
+                }
+                mRawBody = new CountingInputStream(new TimingInputStream(raw), mWireBytes);
+                InputStream decoded = "gzip".equalsIgnoreCase(
+                        mConnection.getContentEncoding())
+                        ? new GZIPInputStream(mRawBody) : mRawBody;
+                mBody = new CountingInputStream(decoded, mDecodedBytes);
+            }
+            return mBody;
+        }
+
+        /**
+         * Returns the length of the decoded body, from the Content-Length header. A compressed
+         * body is guessed to be {@link #GZIP_RATIO} times as long once decoded.
+         *
+         * @return the length in bytes, or -1 if the server did not send it
+         */
+        long getExpectedLength() {
+            long length = mConnection.getContentLength();
+            if (length < 0) {
+                return -1;
+            }
+            return "gzip".equalsIgnoreCase(mConnection.getContentEncoding())
+                    ? length * GZIP_RATIO : length;
+        }
+
+        /**
+         * @return the time spent so far waiting for the bytes of the body, in nanoseconds
+         */
+        long getReadNanos() {
+            return mReadNanos;
+        }
+
+        /**
+         * Reads whatever is left of a small body and closes it, so the connection goes back to
+         * the pool instead of being torn down
+         */
+        @Override
+        public void close() throws IOException {
+            if (mCancellation != null) {
+                if (mCancellation.isCancelled()) {
+                    // The connection has been torn down already, so there is nothing to drain,
+                    // but the decoder of the body still holds native memory until it is closed
+                    if (mBody != null) {
+                        mBody.close();
+                    }
+                    return;
+                }
+                mCancellation.detach(mConnection);
+            }
+            InputStream body = getBody();
+            BufferPool pool = BufferPool.getInstance();
+            byte[] skipBuffer = pool.acquire(-1);
+            try {
+                int drained = 0;
+                int count;
+                while (drained < MAX_DRAIN_BYTES
+                        && (count = mRawBody.read(skipBuffer)) != -1) {
+                    drained += count;
+                }
+            } catch (IOException e) {
+                // The connection can not be reused, closing it below is all that is left to do
+            } finally {
+                pool.release(skipBuffer);
+                body.close();
+                if (mCode == HttpURLConnection.HTTP_OK) {
+                    LoadMetrics.getInstance().record(LoadMetrics.Phase.DOWNLOAD, mReadNanos);
+                }
+            }
+        }
+
+        /**
+         * Adds the time spent in the reads of the raw body to {@link #mReadNanos}
+         */
+        private final class TimingInputStream extends FilterInputStream {
+
+            TimingInputStream(InputStream in) {
+                super(in);
+            }
+
+            @Override
+            public int read() throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return super.read();
+                } finally {
+                    mReadNanos += System.nanoTime() - start;
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return super.read(b, off, len);
+                } finally {
+                    mReadNanos += System.nanoTime() - start;
+                }
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read through it into a shared counter
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+
+        // The counter the bytes are added to
+        private final AtomicLong mCounter;
+
+        CountingInputStream(InputStream in, AtomicLong counter) {
+            super(in);
+            mCounter = counter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                mCounter.incrementAndGet();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = super.read(b, off, len);
+            if (count > 0) {
+                mCounter.addAndGet(count);
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            mCounter.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,694 @@
+package com.example.limmonica.newsapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * A forward-only JSON reader which pulls tokens straight off a UTF-8 encoded {@link InputStream}.
+ * <p>
+ * Unlike {@link org.json.JSONObject} it never holds the whole document in memory: bytes are read
+ * into a small buffer as they arrive from the network and only the values the caller asks for are
+ * turned into Strings. Everything else is skipped at the byte level.
+ */
+final class JsonPullParser implements Closeable {
+
+    /**
+     * A growable array the raw bytes of string values are copied to, see
+     * {@link #nextRawString(RawBuffer)}
+     */
+    static final class RawBuffer {
+
+        // The bytes copied so far
+        private byte[] mBytes = new byte[256];
+        // Number of bytes copied
+        private int mSize;
+
+        /**
+         * @return the number of bytes copied, which is where the next string starts
+         */
+        int size() {
+            return mSize;
+        }
+
+        /**
+         * Forgets the bytes copied so far, keeping the array
+         */
+        void clear() {
+            mSize = 0;
+        }
+
+        /**
+         * Copies the given range of bytes to the given position of an array
+         */
+        void copyTo(int start, int end, byte[] target, int targetStart) {
+            System.arraycopy(mBytes, start, target, targetStart, end - start);
+        }
+
+        /**
+         * Appends the given bytes
+         */
+        void append(byte[] bytes, int start, int count) {
+            if (mSize + count > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(mBytes.length * 2, mSize + count));
+            }
+            System.arraycopy(bytes, start, mBytes, mSize, count);
+            mSize += count;
+        }
+    }
+
+    /**
+     * The kind of token the parser is positioned on
+     */
+    enum Token {
+        BEGIN_ARRAY, END_ARRAY, BEGIN_OBJECT, END_OBJECT, NAME, STRING, NUMBER, BOOLEAN, NULL,
+        END_DOCUMENT
+    }
+
+    // Constant value for the size of the read buffer
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // Charset of the documents
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Constant value for the number of names cached, a power of two
+    private static final int NAME_CACHE_SIZE = 64;
+
+    // Lexical scopes kept on the stack
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    // The stream the bytes are read from
+    private final InputStream mIn;
+    // The read buffer
+    private final byte[] mBuffer;
+    // Position of the next byte to read in the buffer
+    private int mPos;
+    // Number of valid bytes in the buffer
+    private int mLimit;
+    // Number of bytes consumed before the current buffer
+    private long mBytesBefore;
+    // Stack of lexical scopes
+    private int[] mStack = new int[32];
+    private int mStackSize;
+    // The token returned by the last peek, or null if nothing was peeked
+    private Token mPeeked;
+    // Reused to build String values
+    private final StringBuilder mStringBuilder = new StringBuilder();
+    // Names decoded so far and their bytes, by hash, so the keys repeated by every element of
+    // an array are only decoded once
+    private final String[] mNames = new String[NAME_CACHE_SIZE];
+    private final byte[][] mNameBytes = new byte[NAME_CACHE_SIZE][];
+
+    /**
+     * Creates a new {@link JsonPullParser} with its own read buffer.
+     *
+     * @param in is the stream holding the UTF-8 encoded JSON document
+     */
+    JsonPullParser(InputStream in) {
+        this(in, new byte[BUFFER_SIZE]);
+    }
+
+    /**
+     * Creates a new {@link JsonPullParser} reading through the given buffer.
+     *
+     * @param in     is the stream holding the UTF-8 encoded JSON document
+     * @param buffer is the buffer used to read the stream
+     */
+    JsonPullParser(InputStream in, byte[] buffer) {
+        mIn = in;
+        mBuffer = buffer;
+        mStack[mStackSize++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @return the type of the next token without consuming it
+     */
+    Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+
+        int top = mStackSize - 1;
+        int c;
+        switch (mStack[top]) {
+            case EMPTY_ARRAY:
+                mStack[top] = NONEMPTY_ARRAY;
+                c = nextNonWhitespace(true);
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                mPos--;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace(true);
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                } else if (c != ',') {
+                    throw syntaxError("Unterminated array");
+                }
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                boolean empty = mStack[top] == EMPTY_OBJECT;
+                mStack[top] = DANGLING_NAME;
+                c = nextNonWhitespace(true);
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (!empty) {
+                    if (c != ',') {
+                        throw syntaxError("Unterminated object");
+                    }
+                    c = nextNonWhitespace(true);
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                // The opening quote of the name has been consumed
+                return mPeeked = Token.NAME;
+            case DANGLING_NAME:
+                mStack[top] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace(true) != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                mStack[top] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (nextNonWhitespace(false) == -1) {
+                    return mPeeked = Token.END_DOCUMENT;
+                }
+                throw syntaxError("Expected end of document");
+        }
+
+        c = nextNonWhitespace(true);
+        switch (c) {
+            case '{':
+                return mPeeked = Token.BEGIN_OBJECT;
+            case '[':
+                return mPeeked = Token.BEGIN_ARRAY;
+            case '"':
+                // The opening quote of the string has been consumed
+                return mPeeked = Token.STRING;
+            case 't':
+            case 'f':
+                mPos--;
+                return mPeeked = Token.BOOLEAN;
+            case 'n':
+                mPos--;
+                return mPeeked = Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    mPos--;
+                    return mPeeked = Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    /**
+     * Consumes the next token, which must be the beginning of an object
+     */
+    void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current object
+     */
+    void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        mStackSize--;
+    }
+
+    /**
+     * Consumes the next token, which must be the beginning of an array
+     */
+    void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the next token, which must be the end of the current array
+     */
+    void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        mStackSize--;
+    }
+
+    /**
+     * @return true if the current array or object has another element
+     */
+    boolean hasNext() throws IOException {
+        Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY
+                && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * @return the next property name of the current object
+     */
+    String nextName() throws IOException {
+        expect(Token.NAME);
+        String name = readCachedName();
+        return name != null ? name : readQuoted();
+    }
+
+    /**
+     * Returns the next value as a String. Numbers and booleans are returned as they appear in the
+     * document and a JSON null is returned as null.
+     */
+    String nextString() throws IOException {
+        Token token = peek();
+        mPeeked = null;
+        switch (token) {
+            case STRING:
+                return readQuoted();
+            case NUMBER:
+            case BOOLEAN:
+                return readLiteral();
+            case NULL:
+                readLiteral();
+                return null;
+            default:
+                throw syntaxError("Expected a value but was " + token);
+        }
+    }
+
+    /**
+     * Copies the bytes of the next value to the end of the given buffer as they appear in the
+     * document, undecoded and with their escapes, so that building a String out of them can be
+     * put off until it is needed through {@link #decodeRaw(byte[], int, int)}. Nothing is copied
+     * for a JSON null, and the quotes of a string are left out.
+     *
+     * @param out is the buffer the bytes are appended to
+     */
+    void nextRawString(RawBuffer out) throws IOException {
+        Token token = peek();
+        mPeeked = null;
+        switch (token) {
+            case STRING:
+                copyQuoted(out);
+                break;
+            case NUMBER:
+            case BOOLEAN:
+                byte[] literal = readLiteral().getBytes(UTF_8);
+                out.append(literal, 0, literal.length);
+                break;
+            case NULL:
+                readLiteral();
+                break;
+            default:
+                throw syntaxError("Expected a value but was " + token);
+        }
+    }
+
+    /**
+     * Decodes the bytes of a string value copied by {@link #nextRawString(RawBuffer)}.
+     *
+     * @param raw   is the array holding the bytes
+     * @param start is the position of the first byte of the value
+     * @param end   is the position after its last byte
+     * @return the value, the same as {@link #nextString()} would have returned for a string
+     */
+    static String decodeRaw(byte[] raw, int start, int end) {
+        int escape = start;
+        while (escape < end && raw[escape] != '\\') {
+            escape++;
+        }
+        if (escape == end) {
+            // Most values have no escape and are decoded in one go
+            return new String(raw, start, end - start, UTF_8);
+        }
+        StringBuilder builder = new StringBuilder(end - start);
+        int runStart = start;
+        int pos = escape;
+        while (pos < end) {
+            if (raw[pos] != '\\') {
+                pos++;
+                continue;
+            }
+            builder.append(new String(raw, runStart, pos - runStart, UTF_8));
+            pos++;
+            int c = pos < end ? raw[pos++] & 0xff : '\\';
+            switch (c) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    int value = 0;
+                    for (int i = 0; i < 4 && pos < end; i++) {
+                        value = (value << 4) | Math.max(0, Character.digit(raw[pos++], 16));
+                    }
+                    builder.append((char) value);
+                    break;
+                default:
+                    builder.append((char) c);
+                    break;
+            }
+            runStart = pos;
+        }
+        builder.append(new String(raw, runStart, end - runStart, UTF_8));
+        return builder.toString();
+    }
+
+    /**
+     * Skips the next value, including nested arrays and objects, without building any Strings
+     */
+    void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            Token token = peek();
+            switch (token) {
+                case BEGIN_ARRAY:
+                    beginArray();
+                    depth++;
+                    break;
+                case BEGIN_OBJECT:
+                    beginObject();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    endArray();
+                    depth--;
+                    break;
+                case END_OBJECT:
+                    endObject();
+                    depth--;
+                    break;
+                case NAME:
+                case STRING:
+                    mPeeked = null;
+                    skipQuoted();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of document");
+                default:
+                    mPeeked = null;
+                    readLiteral();
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * @return the number of bytes consumed from the stream so far
+     */
+    long getBytesRead() {
+        return mBytesBefore + mPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    /**
+     * Consumes the peeked token if it is of the expected type
+     */
+    private void expect(Token expected) throws IOException {
+        Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    /**
+     * Pushes a new scope on the stack, growing it if needed
+     */
+    private void push(int scope) {
+        if (mStackSize == mStack.length) {
+            int[] newStack = new int[mStackSize * 2];
+            System.arraycopy(mStack, 0, newStack, 0, mStackSize);
+            mStack = newStack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    /**
+     * Refills the buffer from the stream.
+     *
+     * @return false if the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+        mBytesBefore += mLimit;
+        mPos = 0;
+        mLimit = 0;
+        int count;
+        do {
+            count = mIn.read(mBuffer, 0, mBuffer.length);
+        } while (count == 0);
+        if (count == -1) {
+            return false;
+        }
+        mLimit = count;
+        return true;
+    }
+
+    /**
+     * @return the next byte which is not whitespace, or -1 at the end of the stream
+     */
+    private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+        while (true) {
+            if (mPos == mLimit && !fill()) {
+                if (throwOnEof) {
+                    throw syntaxError("Unexpected end of document");
+                }
+                return -1;
+            }
+            int c = mBuffer[mPos++] & 0xff;
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                return c;
+            }
+        }
+    }
+
+    /**
+     * @return the next byte of the stream, failing at the end of the stream
+     */
+    private int nextByte() throws IOException {
+        if (mPos == mLimit && !fill()) {
+            throw syntaxError("Unterminated string");
+        }
+        return mBuffer[mPos++] & 0xff;
+    }
+
+    /**
+     * Reads a string whose opening quote has already been consumed, decoding UTF-8 and escapes
+     */
+    private String readQuoted() throws IOException {
+        StringBuilder builder = mStringBuilder;
+        builder.setLength(0);
+        while (true) {
+            int c = nextByte();
+            if (c == '"') {
+                return builder.toString();
+            } else if (c == '\\') {
+                readEscape(builder);
+            } else if (c < 0x80) {
+                builder.append((char) c);
+            } else {
+                readMultiByte(builder, c);
+            }
+        }
+    }
+
+    /**
+     * Reads a name whose opening quote has already been consumed through the cache of names.
+     * Only a name lying whole in the buffer without escapes is looked up, anything else is left
+     * to {@link #readQuoted()}.
+     *
+     * @return the name, or null if it was not read
+     */
+    private String readCachedName() {
+        int hash = 0;
+        for (int end = mPos; end < mLimit; end++) {
+            byte b = mBuffer[end];
+            if (b == '\\') {
+                return null;
+            }
+            if (b != '"') {
+                hash = 31 * hash + b;
+                continue;
+            }
+            int slot = hash & (NAME_CACHE_SIZE - 1);
+            String name = mNames[slot];
+            byte[] bytes = mNameBytes[slot];
+            if (name == null || !rangeEquals(bytes, mPos, end)) {
+                name = new String(mBuffer, mPos, end - mPos, UTF_8);
+                mNames[slot] = name;
+                mNameBytes[slot] = Arrays.copyOfRange(mBuffer, mPos, end);
+            }
+            mPos = end + 1;
+            return name;
+        }
+        return null;
+    }
+
+    /**
+     * @return true if the given bytes are the same as the given range of the buffer
+     */
+    private boolean rangeEquals(byte[] bytes, int start, int end) {
+        if (bytes.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != mBuffer[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips a string whose opening quote has already been consumed
+     */
+    private void skipQuoted() throws IOException {
+        while (true) {
+            int c = nextByte();
+            if (c == '"') {
+                return;
+            } else if (c == '\\') {
+                // The escaped byte can never terminate the string
+                nextByte();
+            }
+        }
+    }
+
+    /**
+     * Copies a string whose opening quote has already been consumed, a run of bytes at a time
+     */
+    private void copyQuoted(RawBuffer out) throws IOException {
+        boolean escaped = false;
+        while (true) {
+            if (mPos == mLimit && !fill()) {
+                throw syntaxError("Unterminated string");
+            }
+            int start = mPos;
+            while (mPos < mLimit) {
+                byte b = mBuffer[mPos++];
+                if (escaped) {
+                    // The escaped byte can never terminate the string
+                    escaped = false;
+                } else if (b == '\\') {
+                    escaped = true;
+                } else if (b == '"') {
+                    out.append(mBuffer, start, mPos - 1 - start);
+                    return;
+                }
+            }
+            out.append(mBuffer, start, mPos - start);
+        }
+    }
+
+    /**
+     * Decodes the escape sequence following a backslash
+     */
+    private void readEscape(StringBuilder builder) throws IOException {
+        int c = nextByte();
+        switch (c) {
+            case 'b':
+                builder.append('\b');
+                break;
+            case 'f':
+                builder.append('\f');
+                break;
+            case 'n':
+                builder.append('\n');
+                break;
+            case 'r':
+                builder.append('\r');
+                break;
+            case 't':
+                builder.append('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(nextByte(), 16);
+                    if (digit == -1) {
+                        throw syntaxError("Malformed unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                builder.append((char) value);
+                break;
+            default:
+                // Covers \" \\ \/ and anything a lenient server sends
+                builder.append((char) c);
+                break;
+        }
+    }
+
+    /**
+     * Decodes a UTF-8 sequence whose lead byte has already been consumed
+     */
+    private void readMultiByte(StringBuilder builder, int lead) throws IOException {
+        int codePoint;
+        int continuation;
+        if ((lead & 0xe0) == 0xc0) {
+            codePoint = lead & 0x1f;
+            continuation = 1;
+        } else if ((lead & 0xf0) == 0xe0) {
+            codePoint = lead & 0x0f;
+            continuation = 2;
+        } else if ((lead & 0xf8) == 0xf0) {
+            codePoint = lead & 0x07;
+            continuation = 3;
+        } else {
+            builder.append('\uFFFD');
+            return;
+        }
+        for (int i = 0; i < continuation; i++) {
+            codePoint = (codePoint << 6) | (nextByte() & 0x3f);
+        }
+        builder.appendCodePoint(codePoint);
+    }
+
+    /**
+     * Reads an unquoted number, boolean or null literal
+     */
+    private String readLiteral() throws IOException {
+        StringBuilder builder = mStringBuilder;
+        builder.setLength(0);
+        while (mPos < mLimit || fill()) {
+            int c = mBuffer[mPos] & 0xff;
+            if (c == ',' || c == '}' || c == ']' || c == ':'
+                    || c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                break;
+            }
+            builder.append((char) c);
+            mPos++;
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return an exception describing the problem and where it happened
+     */
+    private IOException syntaxError(String message) {
+        return new IOException(message + " at byte " + getBytesRead());
+    }
+}
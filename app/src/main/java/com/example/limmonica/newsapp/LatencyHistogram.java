@@ -0,0 +1,115 @@
+package com.example.limmonica.newsapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts latencies into buckets so percentiles can be read back without keeping every sample.
+ * <p>
+ * Latencies are kept in microseconds. Every power of two is split into 8 buckets, so a
+ * percentile is off by at most an eighth of its value, whatever its magnitude, in a fixed amount
+ * of memory. Recording is lock-free and allocates nothing, so it can be called from any thread
+ * on every request and every bind.
+ */
+final class LatencyHistogram {
+
+    // Constant value for the number of bits of a value picking its bucket within a power of two
+    private static final int SUB_BUCKET_BITS = 3;
+    // Constant value for the number of buckets within a power of two
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Constant value for the largest power of two counted, about 12 days in microseconds
+    private static final int MAX_MAGNITUDE = 40;
+    // Constant value for the largest latency counted, larger ones are counted as this one
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    // Number of latencies in each bucket
+    private final AtomicLongArray mCounts =
+            new AtomicLongArray(bucketOf(MAX_VALUE) + 1);
+    // Number of latencies recorded
+    private final AtomicLong mCount = new AtomicLong();
+    // Largest latency recorded, in microseconds
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos is the latency in nanoseconds, negative ones are counted as 0
+     */
+    void record(long nanos) {
+        long micros = Math.min(Math.max(0, nanos / 1000), MAX_VALUE);
+        mCounts.incrementAndGet(bucketOf(micros));
+        mCount.incrementAndGet();
+        long max = mMax.get();
+        while (micros > max && !mMax.compareAndSet(max, micros)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * @return the number of latencies recorded
+     */
+    long getCount() {
+        return mCount.get();
+    }
+
+    /**
+     * @return the largest latency recorded, in microseconds
+     */
+    long getMaxMicros() {
+        return mMax.get();
+    }
+
+    /**
+     * Returns the latency which the given fraction of the recorded latencies do not exceed.
+     *
+     * @param fraction is the percentile as a fraction, i.e. 0.95 for the 95th percentile
+     * @return the upper bound of the bucket holding the percentile in microseconds, never more
+     * than the largest latency recorded, or 0 if none has been
+     */
+    long getPercentileMicros(double fraction) {
+        long total = 0;
+        int buckets = mCounts.length();
+        long[] counts = new long[buckets];
+        for (int i = 0; i < buckets; i++) {
+            counts[i] = mCounts.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < buckets; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * @return the bucket of a latency in microseconds
+     */
+    static int bucketOf(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros);
+        int subBucket = (int) (micros >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @return the largest latency in microseconds counted in the given bucket
+     */
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
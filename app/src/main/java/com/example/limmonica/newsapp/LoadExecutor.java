@@ -0,0 +1,308 @@
+package com.example.limmonica.newsapp;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the loads of articles on a bounded pool of threads of its own, in priority lanes, so a
+ * load the user is waiting for never queues behind speculative work.
+ * <p>
+ * A task is queued in the lane of its {@link Priority}. Whenever a thread is free, the lanes are
+ * drained in the order of their priority, and each lane in the order its tasks were queued. The
+ * speculative lanes never take the last thread, which is kept for {@link Priority#VISIBLE}
+ * tasks: a visible task only waits while every thread runs another visible task.
+ * <p>
+ * The time every task waited in its lane is counted in a {@link LatencyHistogram} per lane, and
+ * the wait of the visible tasks is recorded into the {@link LoadMetrics} as well. The number of
+ * tasks running and queued in each lane can be read at any time.
+ */
+final class LoadExecutor {
+
+    /**
+     * The lane of a task, from the most to the least urgent
+     */
+    enum Priority {
+        // A load the user is waiting for, such as the first page or a refresh
+        VISIBLE(Thread.NORM_PRIORITY - 1),
+        // A load made ahead of the user, such as the next page
+        PREFETCH(Thread.NORM_PRIORITY - 2),
+        // Work the user does not wait for, such as the periodic sync
+        BACKGROUND(Thread.MIN_PRIORITY);
+
+        // The priority of the thread while it runs a task of the lane, below the UI thread's
+        private final int mThreadPriority;
+
+        Priority(int threadPriority) {
+            mThreadPriority = threadPriority;
+        }
+
+        /**
+         * @return the priority of the thread while it runs a task of the lane
+         */
+        int getThreadPriority() {
+            return mThreadPriority;
+        }
+    }
+
+    // Tag for log messages
+    private static final String LOG_TAG = LoadExecutor.class.getSimpleName();
+
+    // Constant value for the number of threads of the shared executor
+    private static final int THREAD_COUNT = 3;
+    // Constant value for the number of threads only visible tasks may take
+    private static final int RESERVED_THREADS = 1;
+    // Constant value for the time an idle thread is kept, in seconds
+    private static final int KEEP_ALIVE_SECONDS = 30;
+
+    // The executor shared by all loads
+    private static final LoadExecutor sInstance =
+            new LoadExecutor(THREAD_COUNT, LoadMetrics.getInstance());
+
+    // Runs the tasks handed out of the lanes, never more than it has threads
+    private final ThreadPoolExecutor mPool;
+    // Number of threads
+    private final int mThreadCount;
+    // Receives the wait of the visible tasks
+    private final LoadMetrics mMetrics;
+    // The tasks waiting for a thread, by lane, guarded by this
+    private final Map<Priority, ArrayDeque<Task>> mLanes = new EnumMap<>(Priority.class);
+    // Number of tasks running, by lane, guarded by this
+    private final Map<Priority, Integer> mRunning = new EnumMap<>(Priority.class);
+    // Number of tasks running in all lanes, guarded by this
+    private int mRunningCount;
+    // The time the tasks of each lane waited for a thread
+    private final Map<Priority, LatencyHistogram> mWaits = new EnumMap<>(Priority.class);
+
+    /**
+     * Creates a new {@link LoadExecutor}
+     *
+     * @param threadCount is the number of threads, one of which is kept for the visible tasks
+     * @param metrics     receives the wait of the visible tasks, may be null
+     */
+    LoadExecutor(int threadCount, LoadMetrics metrics) {
+        this("Load", threadCount, metrics);
+    }
+
+    /**
+     * Creates a new {@link LoadExecutor}
+     *
+     * @param name        is the name of the threads, which are numbered after it
+     * @param threadCount is the number of threads, one of which is kept for the visible tasks
+     * @param metrics     receives the wait of the visible tasks, may be null
+     */
+    LoadExecutor(final String name, int threadCount, LoadMetrics metrics) {
+        if (threadCount <= RESERVED_THREADS) {
+            throw new IllegalArgumentException("Too few threads: " + threadCount);
+        }
+        mThreadCount = threadCount;
+        mMetrics = metrics;
+        for (Priority priority : Priority.values()) {
+            mLanes.put(priority, new ArrayDeque<Task>());
+            mRunning.put(priority, 0);
+            mWaits.put(priority, new LatencyHistogram());
+        }
+        mPool = new ThreadPoolExecutor(threadCount, threadCount, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + " #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mPool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return the executor shared by all loads
+     */
+    static LoadExecutor getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Queues a task in the lane of its priority
+     *
+     * @param runnable is the task
+     * @param priority is the lane of the task
+     * @return the task, which can be cancelled
+     */
+    Task execute(Runnable runnable, Priority priority) {
+        Task task = new Task(runnable, priority);
+        synchronized (this) {
+            mLanes.get(priority).add(task);
+            schedule();
+        }
+        return task;
+    }
+
+    /**
+     * @return the number of tasks of the lane currently running
+     */
+    synchronized int getRunningCount(Priority priority) {
+        return mRunning.get(priority);
+    }
+
+    /**
+     * @return the number of tasks of the lane waiting for a thread
+     */
+    synchronized int getQueuedCount(Priority priority) {
+        return mLanes.get(priority).size();
+    }
+
+    /**
+     * @return the time the tasks of the lane waited for a thread
+     */
+    LatencyHistogram getWaitHistogram(Priority priority) {
+        return mWaits.get(priority);
+    }
+
+    /**
+     * Logs the tasks running and queued in every lane, and how long they waited
+     */
+    void logStats() {
+        for (Priority priority : Priority.values()) {
+            LatencyHistogram waits = mWaits.get(priority);
+            Log.v(LOG_TAG, priority + ": " + getRunningCount(priority) + " running, "
+                    + getQueuedCount(priority) + " queued, " + waits.getCount()
+                    + " waited p50 " + waits.getPercentileMicros(0.50) + " us, p95 "
+                    + waits.getPercentileMicros(0.95) + " us, max " + waits.getMaxMicros()
+                    + " us");
+        }
+    }
+
+    /**
+     * Hands the tasks at the head of the lanes to the pool while it has free threads. This is
+     * called holding the lock.
+     */
+    private void schedule() {
+        while (mRunningCount < mThreadCount) {
+            Task task = next();
+            if (task == null) {
+                return;
+            }
+            task.mState = Task.RUNNING;
+            mRunning.put(task.mPriority, mRunning.get(task.mPriority) + 1);
+            mRunningCount++;
+            mPool.execute(task);
+        }
+    }
+
+    /**
+     * @return the next task allowed to run, taken out of its lane, or null if there is none
+     */
+    private Task next() {
+        for (Priority priority : Priority.values()) {
+            ArrayDeque<Task> lane = mLanes.get(priority);
+            if (lane.isEmpty()) {
+                continue;
+            }
+            if (priority != Priority.VISIBLE
+                    && mRunningCount >= mThreadCount - RESERVED_THREADS) {
+                // The other threads are kept for the visible tasks to come
+                return null;
+            }
+            return lane.poll();
+        }
+        return null;
+    }
+
+    /**
+     * A task queued in a lane, run at most once
+     */
+    final class Task implements Runnable {
+
+        // Constant values for the states of a task
+        private static final int QUEUED = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+
+        // What the task does
+        private final Runnable mRunnable;
+        // The lane of the task
+        private final Priority mPriority;
+        // Time the task was queued at, from System.nanoTime()
+        private final long mQueuedAt = System.nanoTime();
+        // The state of the task, guarded by the executor
+        private int mState = QUEUED;
+        // The thread running the task, or null, guarded by the executor
+        private Thread mThread;
+        // Whether the task was interrupted before its thread was known, guarded by the executor
+        private boolean mInterrupted;
+
+        Task(Runnable runnable, Priority priority) {
+            mRunnable = runnable;
+            mPriority = priority;
+        }
+
+        /**
+         * Cancels the task: a queued task is taken out of its lane and never runs, a running
+         * one is interrupted if asked to
+         *
+         * @param interrupt is true to interrupt the thread of a running task
+         * @return true if the task was taken out of its lane before it ran
+         */
+        boolean cancel(boolean interrupt) {
+            synchronized (LoadExecutor.this) {
+                if (mState == QUEUED) {
+                    mLanes.get(mPriority).remove(this);
+                    mState = DONE;
+                    return true;
+                }
+                if (mState == RUNNING && interrupt) {
+                    if (mThread != null) {
+                        mThread.interrupt();
+                    } else {
+                        mInterrupted = true;
+                    }
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Runs the task on a thread of the pool, at the priority of its lane
+         */
+        @Override
+        public void run() {
+            long waited = System.nanoTime() - mQueuedAt;
+            mWaits.get(mPriority).record(waited);
+            if (mPriority == Priority.VISIBLE && mMetrics != null) {
+                mMetrics.record(LoadMetrics.Phase.QUEUE, waited);
+            }
+            Thread thread = Thread.currentThread();
+            synchronized (LoadExecutor.this) {
+                mThread = thread;
+                if (mInterrupted) {
+                    thread.interrupt();
+                }
+            }
+            int threadPriority = thread.getPriority();
+            thread.setPriority(mPriority.getThreadPriority());
+            try {
+                mRunnable.run();
+            } finally {
+                thread.setPriority(threadPriority);
+                synchronized (LoadExecutor.this) {
+                    // An interruption meant for this task must not reach the next one
+                    Thread.interrupted();
+                    mThread = null;
+                    mState = DONE;
+                    mRunning.put(mPriority, mRunning.get(mPriority) - 1);
+                    mRunningCount--;
+                    schedule();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.limmonica.newsapp;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times every phase of loading articles, from opening the connection to binding the rows, into
+ * one {@link LatencyHistogram} per phase, and hands their percentiles to pluggable
+ * {@link Sink}s every few loads.
+ * <p>
+ * Recording a phase costs two clock reads and a few atomic increments, so the metrics stay on in
+ * release builds. They can still be turned off with {@link #setEnabled(boolean)}.
+ */
+final class LoadMetrics {
+
+    /**
+     * A phase of loading articles
+     */
+    enum Phase {
+        // Opening the connection to the server
+        CONNECT,
+        // From the request being sent to the response headers arriving
+        FIRST_BYTE,
+        // Waiting for the bytes of the body to come off the socket
+        DOWNLOAD,
+        // Parsing the articles, apart from waiting for the body, including stored copies
+        PARSE,
+        // Formatting the articles into rows
+        FORMAT,
+        // Saving the articles to the database and the snapshot
+        SAVE,
+        // Waiting for a thread to run a load the user sees
+        QUEUE,
+        // A whole run of an article loader
+        LOAD,
+        // Binding a row to its views
+        BIND,
+        // Finding the rows matching a search, including indexing the rows added since the last
+        SEARCH
+    }
+
+    /**
+     * Receives the percentiles of every phase
+     */
+    interface Sink {
+
+        /**
+         * @param summaries is the summary of every phase recorded at least once, in the order of
+         *                  the phases
+         */
+        void report(List<Summary> summaries);
+    }
+
+    /**
+     * The percentiles of a phase at the time of a report
+     */
+    static final class Summary {
+
+        // The phase
+        private final Phase mPhase;
+        // Number of times the phase was recorded
+        private final long mCount;
+        // Percentiles and largest latency, in microseconds
+        private final long mP50;
+        private final long mP95;
+        private final long mP99;
+        private final long mMax;
+
+        Summary(Phase phase, LatencyHistogram histogram) {
+            mPhase = phase;
+            mCount = histogram.getCount();
+            mP50 = histogram.getPercentileMicros(0.50);
+            mP95 = histogram.getPercentileMicros(0.95);
+            mP99 = histogram.getPercentileMicros(0.99);
+            mMax = histogram.getMaxMicros();
+        }
+
+        /**
+         * @return the phase
+         */
+        Phase getPhase() {
+            return mPhase;
+        }
+
+        /**
+         * @return the number of times the phase was recorded
+         */
+        long getCount() {
+            return mCount;
+        }
+
+        /**
+         * @return the median latency, in microseconds
+         */
+        long getP50Micros() {
+            return mP50;
+        }
+
+        /**
+         * @return the 95th percentile latency, in microseconds
+         */
+        long getP95Micros() {
+            return mP95;
+        }
+
+        /**
+         * @return the 99th percentile latency, in microseconds
+         */
+        long getP99Micros() {
+            return mP99;
+        }
+
+        /**
+         * @return the largest latency, in microseconds
+         */
+        long getMaxMicros() {
+            return mMax;
+        }
+
+        @Override
+        public String toString() {
+            return mPhase + ": " + mCount + " times, p50 " + mP50 + " us, p95 " + mP95
+                    + " us, p99 " + mP99 + " us, max " + mMax + " us";
+        }
+    }
+
+    // Tag for log messages
+    private static final String LOG_TAG = LoadMetrics.class.getSimpleName();
+
+    // Constant value for the number of loads between two reports
+    private static final int REPORT_EVERY_LOADS = 5;
+
+    // The metrics shared by all loads
+    private static final LoadMetrics sInstance = new LoadMetrics();
+
+    // One histogram per phase
+    private final Map<Phase, LatencyHistogram> mHistograms = new EnumMap<>(Phase.class);
+    // The sinks the reports are handed to
+    private final List<Sink> mSinks = new CopyOnWriteArrayList<>();
+    // Number of loads finished
+    private final AtomicLong mLoadCount = new AtomicLong();
+    // Whether phases are recorded
+    private volatile boolean mEnabled = true;
+    // Whether the default sinks have been installed
+    private boolean mDefaultSinksInstalled;
+
+    /**
+     * Creates a new {@link LoadMetrics} with no sink
+     */
+    LoadMetrics() {
+        for (Phase phase : Phase.values()) {
+            mHistograms.put(phase, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * @return the metrics shared by all loads
+     */
+    static LoadMetrics getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Installs the logcat sink and a file sink writing to the given directory, unless they have
+     * been installed already
+     *
+     * @param directory is the directory of the metrics file
+     */
+    synchronized void installDefaultSinks(File directory) {
+        if (mDefaultSinksInstalled) {
+            return;
+        }
+        mDefaultSinksInstalled = true;
+        addSink(new LogcatSink());
+        addSink(new FileSink(new File(directory, "load_metrics.csv")));
+    }
+
+    /**
+     * @param sink receives the reports from now on
+     */
+    void addSink(Sink sink) {
+        mSinks.add(sink);
+    }
+
+    /**
+     * @param enabled is false to stop recording phases
+     */
+    void setEnabled(boolean enabled) {
+        mEnabled = enabled;
+    }
+
+    /**
+     * @return the current time to start timing a phase from, in nanoseconds
+     */
+    static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records a phase which started at the given time and ends now
+     *
+     * @param phase      is the phase
+     * @param startNanos is the time the phase started at, from {@link #start()}
+     */
+    void recordSince(Phase phase, long startNanos) {
+        record(phase, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the duration of a phase
+     *
+     * @param phase is the phase
+     * @param nanos is its duration in nanoseconds
+     */
+    void record(Phase phase, long nanos) {
+        if (mEnabled) {
+            mHistograms.get(phase).record(nanos);
+        }
+    }
+
+    /**
+     * Notes the end of a load, reporting to the sinks every few loads. This is done on a
+     * background thread, since the sinks may write to disk.
+     */
+    void onLoadFinished() {
+        if (mLoadCount.incrementAndGet() % REPORT_EVERY_LOADS == 0) {
+            report();
+        }
+    }
+
+    /**
+     * @return the summary of every phase recorded at least once, in the order of the phases
+     */
+    List<Summary> summarize() {
+        List<Summary> summaries = new ArrayList<>();
+        for (Phase phase : Phase.values()) {
+            LatencyHistogram histogram = mHistograms.get(phase);
+            if (histogram.getCount() > 0) {
+                summaries.add(new Summary(phase, histogram));
+            }
+        }
+        return summaries;
+    }
+
+    /**
+     * Hands the summary of every phase to the sinks
+     */
+    void report() {
+        if (mSinks.isEmpty()) {
+            return;
+        }
+        List<Summary> summaries = Collections.unmodifiableList(summarize());
+        if (summaries.isEmpty()) {
+            return;
+        }
+        for (Sink sink : mSinks) {
+            sink.report(summaries);
+        }
+    }
+
+    /**
+     * Writes a line per phase to logcat
+     */
+    static final class LogcatSink implements Sink {
+
+        @Override
+        public void report(List<Summary> summaries) {
+            for (Summary summary : summaries) {
+                Log.v(LOG_TAG, summary.toString());
+            }
+        }
+    }
+
+    /**
+     * Appends a CSV line per phase to a file, starting it over once it grows too large
+     */
+    static final class FileSink implements Sink {
+
+        // Constant value for the size past which the file is started over, in bytes
+        private static final long MAX_FILE_BYTES = 256 * 1024;
+
+        // The file the lines are appended to
+        private final File mFile;
+
+        /**
+         * @param file is the file the lines are appended to
+         */
+        FileSink(File file) {
+            mFile = file;
+        }
+
+        @Override
+        public void report(List<Summary> summaries) {
+            boolean append = mFile.length() < MAX_FILE_BYTES;
+            try {
+                Writer writer = new FileWriter(mFile, append);
+                try {
+                    if (!append || mFile.length() == 0) {
+                        writer.write("time,phase,count,p50_us,p95_us,p99_us,max_us\n");
+                    }
+                    long now = System.currentTimeMillis();
+                    for (Summary summary : summaries) {
+                        writer.write(now + "," + summary.getPhase() + "," + summary.getCount()
+                                + "," + summary.getP50Micros() + "," + summary.getP95Micros()
+                                + "," + summary.getP99Micros() + "," + summary.getMaxMicros()
+                                + "\n");
+                    }
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Problem writing the load metrics", e);
+            }
+        }
+    }
+}
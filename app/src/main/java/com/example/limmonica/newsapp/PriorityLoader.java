@@ -0,0 +1,197 @@
+package com.example.limmonica.newsapp;
+
+import android.content.Context;
+import android.content.Loader;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * A {@link Loader} running {@link #loadInBackground()} in a lane of the {@link LoadExecutor},
+ * where an {@link android.content.AsyncTaskLoader} would queue it on the shared AsyncTask pool
+ * with every other task of the app.
+ * <p>
+ * It keeps the contract of an AsyncTaskLoader: a new load cancels the one in progress, whose
+ * result is then handed to {@link #onCanceled(Object)}, and it only starts once the cancelled one
+ * has stopped. A load which is cancelled before leaving its lane never runs, and one still
+ * running when the loader is reset is cancelled as well.
+ *
+ * @param <D> is the type of the result
+ */
+abstract class PriorityLoader<D> extends Loader<D> {
+
+    // Runs the loads
+    private final LoadExecutor mExecutor;
+    // The lane of the loads
+    private final LoadExecutor.Priority mPriority;
+    // Delivers the results on the UI thread
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    // The load whose result is to be delivered, or null
+    private LoadTask mTask;
+    // The cancelled load the next one waits for, or null
+    private volatile LoadTask mCancellingTask;
+
+    /**
+     * Creates a new {@link PriorityLoader} running its loads on the shared executor
+     *
+     * @param context  is the context
+     * @param priority is the lane of the loads
+     */
+    PriorityLoader(Context context, LoadExecutor.Priority priority) {
+        super(context);
+        mExecutor = LoadExecutor.getInstance();
+        mPriority = priority;
+    }
+
+    /**
+     * @return the lane of the loads
+     */
+    LoadExecutor.Priority getPriority() {
+        return mPriority;
+    }
+
+    /**
+     * Called on a background thread to perform the load
+     *
+     * @return the result of the load
+     */
+    public abstract D loadInBackground();
+
+    /**
+     * Called on the UI thread when the load running in the background is cancelled, to make it
+     * stop early. Does nothing by default.
+     */
+    public void cancelLoadInBackground() {
+    }
+
+    /**
+     * @return true if the load running in the background has been cancelled
+     */
+    public boolean isLoadInBackgroundCanceled() {
+        return mCancellingTask != null;
+    }
+
+    /**
+     * Called with the result of a load which was cancelled, to release it. Does nothing by
+     * default.
+     *
+     * @param data is the result, may be null
+     */
+    public void onCanceled(D data) {
+    }
+
+    @Override
+    protected void onForceLoad() {
+        super.onForceLoad();
+        onCancelLoad();
+        mTask = new LoadTask();
+        executePendingTask();
+    }
+
+    /**
+     * Cancels the current load. Called by the framework from API 16 on, and by the loader itself
+     * before every new load.
+     *
+     * @return true if the load was cancelled and the cancellation will be delivered
+     */
+    @Override
+    protected boolean onCancelLoad() {
+        final LoadTask task = mTask;
+        if (task == null) {
+            return false;
+        }
+        mTask = null;
+        if (task.mHandle == null) {
+            // It was waiting for another cancelled load, and never started
+            return false;
+        }
+        task.mCancelled = true;
+        mCancellingTask = task;
+        if (task.mHandle.cancel(false)) {
+            // Taken out of its lane, so it will not deliver anything itself
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    dispatchOnCancelled(task, null);
+                }
+            });
+        } else {
+            cancelLoadInBackground();
+        }
+        return true;
+    }
+
+    /**
+     * A destroyed loader has nobody to deliver to, so its load is stopped
+     */
+    @Override
+    protected void onReset() {
+        super.onReset();
+        onCancelLoad();
+    }
+
+    /**
+     * Queues the next load, unless a cancelled one is still running
+     */
+    private void executePendingTask() {
+        if (mCancellingTask == null && mTask != null && mTask.mHandle == null) {
+            mTask.mHandle = mExecutor.execute(mTask, mPriority);
+        }
+    }
+
+    /**
+     * Hands over the result of a load which was cancelled, and starts the next one
+     */
+    private void dispatchOnCancelled(LoadTask task, D data) {
+        onCanceled(data);
+        if (mCancellingTask == task) {
+            mCancellingTask = null;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                deliverCancellation();
+            }
+            executePendingTask();
+        }
+    }
+
+    /**
+     * Delivers the result of a load, unless it was replaced by a newer one
+     */
+    private void dispatchOnLoadComplete(LoadTask task, D data) {
+        if (mTask != task) {
+            dispatchOnCancelled(task, data);
+            return;
+        }
+        mTask = null;
+        if (isAbandoned()) {
+            onCanceled(data);
+        } else {
+            deliverResult(data);
+        }
+    }
+
+    /**
+     * A single load, run in the lane of the loader
+     */
+    private final class LoadTask implements Runnable {
+
+        // The task queued in the executor, or null until then
+        LoadExecutor.Task mHandle;
+        // Whether the load was cancelled, set on the UI thread
+        volatile boolean mCancelled;
+
+        @Override
+        public void run() {
+            final D data = mCancelled ? null : loadInBackground();
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (mCancelled) {
+                        dispatchOnCancelled(LoadTask.this, data);
+                    } else {
+                        dispatchOnLoadComplete(LoadTask.this, data);
+                    }
+                }
+            });
+        }
+    }
+}
@@ -1,16 +1,10 @@
 package com.example.limmonica.newsapp;
 
-import android.text.TextUtils;
 import android.util.Log;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
-
-import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -25,10 +19,10 @@ public final class QueryUtils {
 
     // Tag for the log messages
     private static final String LOG_TAG = QueryUtils.class.getSimpleName();
-    // Constant value for the read timeout
-    private static final int READ_TIMEOUT = 10000;
-    // Constant value for the connect timeout
-    private static final int CONNECT_TIMEOUT = 15000;
+    // Charset of the responses
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Prefix of the keys of the shared fetches which revalidate the stored copy
+    private static final String REVALIDATE_KEY_PREFIX = "revalidate:";
 
     /**
      * Create a private constructor because no one should ever create a {@link QueryUtils} object.
@@ -58,125 +52,175 @@ public final class QueryUtils {
     }
 
     /**
-     * Make a HTTP request to the given URL and return a String as the response
+     * Make a HTTP request to the given URL and return the list of articles parsed from the
+     * response while it is being downloaded
+     *
+     * @param url          is the url of the request
+     * @param listener     is notified of each article while the response is downloaded, may be
+     *                     null
+     * @param cancellation aborts the request when it is cancelled, may be null
+     * @return the list of articles, which holds the articles parsed so far if the response
+     * breaks off after the first one
+     * @throws IOException if the request fails before any article could be parsed or has been
+     *                     cancelled, a {@link HttpClient.StatusException} if the server answers
+     *                     with an error
      */
-    private static String makeHttpRequest(URL url) throws IOException {
-
-        // Initialize the response
-        String jsonResponse = "";
+    static List<Article> makeHttpRequest(URL url, ArticleParser.OnArticleParsedListener listener,
+                                         HttpClient.Cancellation cancellation)
+            throws IOException {
 
-        // If the Url is null, then return early
-        if (url == null) {
-            return jsonResponse;
-        }
+        // Initialize the list of articles
+        List<Article> articles = new ArrayList<>();
 
-        // Initialize the url connection
-        HttpURLConnection urlConnection = null;
+        // Look for a copy of the response stored by an earlier load
+        String requestUrl = url.toString();
+        DiskResponseCache cache = DiskResponseCache.getInstalled();
+        DiskResponseCache.Entry cached = cache != null ? cache.get(requestUrl) : null;
 
-        // Initialize the input stream
-        InputStream inputStream = null;
+        // Make the request through the shared client, which reuses kept-alive connections, asking
+        // the server to only send the body if it changed since the stored copy
+        HttpClient.Response response = cached != null
+                ? HttpClient.getInstance().get(url, cached.getEtag(), cached.getLastModified(),
+                cancellation)
+                : HttpClient.getInstance().get(url, null, null, cancellation);
 
-        // Try to establish a connection
         try {
-            // Open the connection
-            urlConnection = (HttpURLConnection) url.openConnection();
-
-            // Set a read timeout to 10 seconds
-            urlConnection.setReadTimeout(READ_TIMEOUT);
-
-            // Set a timeout for the connection to 15 seconds
-            urlConnection.setConnectTimeout(CONNECT_TIMEOUT);
-
-            // Set the request method, for when connected to the url, to get/read the data
-            urlConnection.setRequestMethod("GET");
-
-            // Connect tot the url
-            urlConnection.connect();
-
-            // If the connection was successful then read the input stream and parse the response
-            if (urlConnection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+            // If the connection was successful then parse the response
+            if (response.getCode() == HttpURLConnection.HTTP_OK) {
+
+                long parseStart = LoadMetrics.start();
+                if (cache != null) {
+                    // Parse the articles while copying the body to the cache
+                    DiskResponseCache.Writer body = cache.store(requestUrl, response.getBody(),
+                            response.getHeader("ETag"), response.getHeader("Last-Modified"),
+                            response.getHeader("Cache-Control"));
+                    try {
+                        ArticleParser.parse(body, listener, articles, cancellation,
+                                response.getExpectedLength());
+                        body.commit();
+                    } finally {
+                        body.close();
+                    }
+                } else {
+                    // Parse the articles straight off the decompressed body as the bytes arrive
+                    ArticleParser.parse(response.getBody(), listener, articles, cancellation,
+                            response.getExpectedLength());
+                }
+                // The time spent waiting for the body is the download, not the parsing
+                LoadMetrics.getInstance().record(LoadMetrics.Phase.PARSE,
+                        System.nanoTime() - parseStart - response.getReadNanos());
 
-                // Read the input stream
-                inputStream = urlConnection.getInputStream();
+            } else if (response.getCode() == HttpURLConnection.HTTP_NOT_MODIFIED
+                    && cached != null) {
 
-                // Parse the response from input stream and store it into a String
-                jsonResponse = readFromStream(inputStream);
+                // Nothing changed since the stored copy, so read it from disk, and keep it fresh
+                // for as long as the server now allows
+                cache.refresh(cached, response.getHeader("ETag"),
+                        response.getHeader("Last-Modified"), response.getHeader("Cache-Control"));
+                parseCached(cache, cached, listener, articles, cancellation);
 
             } else {
 
-                // Otherwise log the error message and the connection response code
-                Log.e(LOG_TAG, "Error response code: " + urlConnection.getResponseCode());
+                // Otherwise fail with the connection response code, which tells whether the
+                // request is worth retrying
+                throw new HttpClient.StatusException(response.getCode());
             }
 
+        } catch (HttpClient.StatusException e) {
+            throw e;
+
         } catch (IOException e) {
-            // Catch the IOException error if there are problems with connecting
+            // If there are problems with reading or if the JSON is malformed, keep the articles
+            // parsed so far. The request only fails if there are none, or if it was cancelled
+            // since nobody is waiting for the articles any more.
+            if (articles.isEmpty() || (cancellation != null && cancellation.isCancelled())) {
+                throw e;
+            }
             Log.e(LOG_TAG, "Problem retrieving the articles JSON results.", e);
 
         } finally {
 
-            // If the connection is not null
-            if (urlConnection != null) {
-
-                // Disconnect
-                urlConnection.disconnect();
-            }
-
-            // If there was an input stream, closing it could throw a IOException which is why it
-            // is specified in the method signature
-            if (inputStream != null) {
-
-                // Close it
-                inputStream.close();
-
-            }
+            // Close the response rather than disconnecting, so the connection can be reused.
+            // Closing could throw a IOException which is why it is specified in the method
+            // signature
+            response.close();
         }
 
-        // Return the response from reading the JSON data in a String
-        return jsonResponse;
+        // Return the articles parsed from the response
+        return articles;
     }
 
     /**
-     * Convert the {@link InputStream} into a String which contains the whole JSON response from
-     * the server
+     * Returns the articles of the copy of a response stored by an earlier load, if it is still
+     * fresh, so the server does not need to be asked at all.
+     *
+     * @param url          is the url of the request
+     * @param listener     is notified of each article as it is parsed, may be null
+     * @param cancellation stops the parsing when it is cancelled, may be null
+     * @return the list of articles, or null if there is no fresh stored copy
      */
-    private static String readFromStream(InputStream inputStream) throws IOException {
-
-        // Create a new String builder object
-        StringBuilder output = new StringBuilder();
-
-        // If the input stream is not null
-        if (inputStream != null) {
-
-            // Create a new input stream reader object based on the input stream
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream, Charset.forName("UTF-8"));
-
-            // Create a new buffered reader object from the input stream reader
-            BufferedReader reader = new BufferedReader(inputStreamReader);
+    static List<Article> readFresh(URL url, ArticleParser.OnArticleParsedListener listener,
+                                   HttpClient.Cancellation cancellation) {
+        DiskResponseCache cache = DiskResponseCache.getInstalled();
+        DiskResponseCache.Entry cached = cache != null ? cache.get(url.toString()) : null;
+        if (cached == null || !cached.isFresh()) {
+            return null;
+        }
+        List<Article> articles = new ArrayList<>();
+        parseCached(cache, cached, listener, articles, cancellation);
+        return articles;
+    }
 
-            // Read and store into the buffer the first line
-            String line = reader.readLine();
+    /**
+     * Returns the articles of the copy of a response stored by an earlier load, however old it
+     * is, for when the server can not be reached.
+     *
+     * @param url          is the url of the request
+     * @param listener     is notified of each article as it is parsed, may be null
+     * @param cancellation stops the parsing when it is cancelled, may be null
+     * @return the list of articles, or null if there is no stored copy
+     */
+    static List<Article> readStale(URL url, ArticleParser.OnArticleParsedListener listener,
+                                   HttpClient.Cancellation cancellation) {
+        DiskResponseCache cache = DiskResponseCache.getInstalled();
+        DiskResponseCache.Entry cached = cache != null ? cache.get(url.toString()) : null;
+        if (cached == null) {
+            return null;
+        }
+        List<Article> articles = new ArrayList<>();
+        parseCached(cache, cached, listener, articles, cancellation);
+        return articles;
+    }
 
-            // While the line is not null
-            while (line != null) {
-                // Append it to the output string builder
-                output.append(line);
-                // Read and store into the buffer the next line
-                line = reader.readLine();
+    /**
+     * Parse the articles of a response stored in the disk cache
+     */
+    private static void parseCached(DiskResponseCache cache, DiskResponseCache.Entry cached,
+                                    ArticleParser.OnArticleParsedListener listener,
+                                    List<Article> articles,
+                                    HttpClient.Cancellation cancellation) {
+        try {
+            long start = LoadMetrics.start();
+            InputStream body = cache.openHit(cached);
+            try {
+                ArticleParser.parse(body, listener, articles, cancellation, cached.getSize());
+            } finally {
+                body.close();
             }
+            LoadMetrics.getInstance().recordSince(LoadMetrics.Phase.PARSE, start);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the cached articles JSON results.", e);
         }
-
-        // Return the output
-        return output.toString();
     }
 
     /**
      * Return a list of {@link Article} objects that has been built up from
      * parsing a JSON response.
      */
-    private static List<Article> extractResponseFromJson(String articleJSON) {
+    static List<Article> extractResponseFromJson(String articleJSON) {
 
         // If the JSON string is empty or null, then return early
-        if (TextUtils.isEmpty(articleJSON)) {
+        if (articleJSON == null || articleJSON.isEmpty()) {
             return null;
         }
 
@@ -184,66 +228,15 @@ public final class QueryUtils {
         List<Article> articles = new ArrayList<>();
 
         // Try to parse the data read from The Guardian. If there's a problem with the way the JSON
-        // is formatted, a JSONException exception object will be thrown.
+        // is formatted, an IOException will be thrown.
         try {
+            ArticleParser.parse(new ByteArrayInputStream(articleJSON.getBytes(UTF_8)), null,
+                    articles);
+        } catch (IOException e) {
 
-            // Parse the response and build up a list of Article objects with the corresponding data:
-            // Create a JSONObject from the data received
-            JSONObject baseJsonResponse = new JSONObject(articleJSON);
-
-            // Extract "response" JSONObject
-            JSONObject responseObject = baseJsonResponse.getJSONObject("response");
-
-            // Extract the JSONArray associated with the key called "results", which represents a
-            // list of results (or articles).
-            JSONArray articleArray = responseObject.getJSONArray("results");
-
-            // For each article in the articleArray, create an {@link Article} object
-            for (int i = 0; i < articleArray.length(); i++) {
-
-                // Get a single article JSONObject at position i within the list of articles
-                JSONObject currentArticle = articleArray.getJSONObject(i);
-
-                // Extract the value for the key called "webPublicationDate"
-                String date = currentArticle.optString("webPublicationDate");
-
-                // Extract the value for the key called "sectionName"
-                String section = currentArticle.optString("sectionName");
-
-                // Extract the value for the key called "webUrl"
-                String url = currentArticle.optString("webUrl");
-
-                // For a given article, extract the JSONObject associated with the key called
-                // "fields", which represents a list of additional fields for that article
-                JSONObject fields = currentArticle.getJSONObject("fields");
-
-                // Extract the value for the key called "headline"
-                String title = fields.optString("headline");
-
-                // Extract the value for the key called "byline"
-                String author = fields.optString("byline");
-
-                // Extract the value for the key called "trailText"
-                String trail = fields.optString("trailText");
-
-                String thumbnail = null;
-                if (fields.has("thumbnail")) {
-                    // Extract the value for the key called "thumbnail"
-                    thumbnail = fields.optString("thumbnail");
-                }
-
-                // Create Article java object from: date, section, title, author, trail, and url
-                Article article = new Article(date, section, thumbnail, title, author, trail, url);
-
-                // Add article to list of articles
-                articles.add(article);
-            }
-
-        } catch (JSONException e) {
-
-            // If an error is thrown when executing any of the above statements in the "try" block
-            // print a log message with the message from the exception.
-            Log.e("QueryUtils", "Problem parsing the article JSON results", e);
+            // If an error is thrown while parsing, print a log message with the message from the
+            // exception.
+            Log.e(LOG_TAG, "Problem parsing the article JSON results", e);
         }
 
         // Return the list of articles
@@ -251,29 +244,115 @@ public final class QueryUtils {
     }
 
     /**
-     * Query the USGS dataset and return a list of {@link Article} objects.
+     * Query The Guardian dataset and return a list of {@link Article} objects.
      */
     public static List<Article> fetchArticleData(String requestUrl) {
+        return fetchArticleData(requestUrl, null);
+    }
 
-        // Create a URL Object
-        URL url = createUrl(requestUrl);
-
-        // Perform HTTP request to the URL and receive a JSON response back
-        String jsonResponse = null;
+    /**
+     * Query The Guardian dataset and return a list of {@link Article} objects, notifying the
+     * listener of every article as soon as it has been parsed from the response.
+     *
+     * @param requestUrl is the url of the request
+     * @param listener   is notified of each article while the response is downloaded, may be null
+     */
+    public static List<Article> fetchArticleData(String requestUrl,
+                                                 ArticleParser.OnArticleParsedListener listener) {
+        return fetchArticleData(requestUrl, listener, null);
+    }
 
-        try {
+    /**
+     * Query The Guardian dataset and return a list of {@link Article} objects, giving up as soon
+     * as the cancellation is cancelled: the socket is torn down, the response is no longer read
+     * and the parsing stops before the next article.
+     *
+     * @param requestUrl   is the url of the request
+     * @param listener     is notified of each article while the response is downloaded, may be
+     *                     null
+     * @param cancellation aborts the request when it is cancelled, may be null
+     * @return the list of articles, or null if the request was cancelled or failed with no stored
+     * copy to fall back to
+     */
+    static List<Article> fetchArticleData(String requestUrl,
+                                          ArticleParser.OnArticleParsedListener listener,
+                                          HttpClient.Cancellation cancellation) {
+        return fetchArticleData(requestUrl, listener, cancellation, false);
+    }
 
-            jsonResponse = makeHttpRequest(url);
+    /**
+     * Query The Guardian dataset and return a list of {@link Article} objects, giving up as soon
+     * as the cancellation is cancelled.
+     *
+     * @param requestUrl   is the url of the request
+     * @param listener     is notified of each article while the response is downloaded, may be
+     *                     null
+     * @param cancellation aborts the request when it is cancelled, may be null
+     * @param revalidate   is true to ask the server even if the stored copy of the response is
+     *                     still fresh, which then only sends the body if it changed
+     * @return the list of articles, or null if the request was cancelled or failed with no stored
+     * copy to fall back to
+     */
+    static List<Article> fetchArticleData(String requestUrl,
+                                          ArticleParser.OnArticleParsedListener listener,
+                                          HttpClient.Cancellation cancellation,
+                                          final boolean revalidate) {
 
-        } catch (IOException e) {
+        // Create a URL Object
+        URL url = createUrl(requestUrl);
 
-            Log.e(LOG_TAG, "Problem making the HTTP request", e);
+        // If the Url is null, then return early
+        if (url == null) {
+            return new ArrayList<>();
         }
 
-        // Extract relevant fields from the JSON response and create a list of {@link Article}s.
-        List<Article> articles = extractResponseFromJson(jsonResponse);
+        // Perform HTTP request to the URL and parse the articles from the JSON response, retrying
+        // on failure and falling back to the stored copy while the server can not be reached.
+        // Calls for the same request at the same time share a single fetch. A call revalidating
+        // the stored copy only shares the fetch of another one, which may not have asked the
+        // server otherwise
+        final URL requestedUrl = url;
+        final ResilientFetcher fetcher = ResilientFetcher.getInstance();
+        SingleFlight flights = SingleFlight.getInstance();
+        String key = DiskResponseCache.normalizeKey(requestUrl);
+        List<Article> articles = flights.get(revalidate ? REVALIDATE_KEY_PREFIX + key : key,
+                listener, cancellation, new SingleFlight.Fetch() {
+                    @Override
+                    public List<Article> fetch(ArticleParser.OnArticleParsedListener listener,
+                                               HttpClient.Cancellation cancellation) {
+                        return fetcher.fetch(requestedUrl, listener, cancellation, revalidate);
+                    }
+                });
 
         // Return the list of {@link Article}s
         return articles;
     }
+
+    /**
+     * Logs how much the compression, the disk cache, the retries and the shared fetches saved
+     * over all the requests so far
+     */
+    static void logStats() {
+        HttpClient client = HttpClient.getInstance();
+        Log.v(LOG_TAG, "Received " + client.getWireBytes() + " bytes for "
+                + client.getDecodedBytes() + " decoded bytes over "
+                + client.getRequestCount() + " requests, " + client.getAbortedCount()
+                + " aborted");
+        DiskResponseCache cache = DiskResponseCache.getInstalled();
+        if (cache != null) {
+            Log.v(LOG_TAG, "Cache hits: " + cache.getHitCount() + ", misses: "
+                    + cache.getMissCount() + ", bytes served from disk: "
+                    + cache.getBytesServed());
+        }
+        ResilientFetcher fetcher = ResilientFetcher.getInstance();
+        Log.v(LOG_TAG, "Retries: " + fetcher.getRetryCount() + ", hedged requests: "
+                + fetcher.getHedgeCount() + " (" + fetcher.getHedgeWinCount() + " won), "
+                + "fallbacks to stored copies: " + fetcher.getFallbackCount()
+                + ", cancelled: " + fetcher.getCancelledCount()
+                + ", circuit breaker: " + fetcher.getCircuitBreaker().getState());
+        SingleFlight flights = SingleFlight.getInstance();
+        Log.v(LOG_TAG, "Fetches: " + flights.getFetchCount() + ", calls sharing a fetch in flight: "
+                + flights.getCoalescedCount() + ", calls reusing a fetch just finished: "
+                + flights.getReusedCount());
+    }
 }
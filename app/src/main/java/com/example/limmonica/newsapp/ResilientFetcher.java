@@ -0,0 +1,462 @@
+package com.example.limmonica.newsapp;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes the requests of the loads hold up on flaky networks.
+ * <p>
+ * A request failing with an I/O error or a server error is retried a few times, waiting a
+ * random part of an exponentially growing delay between the attempts so clients do not retry in
+ * lockstep. An attempt which has not answered by the time most requests have (the 95th
+ * percentile of the recent ones) gets a second, hedged attempt, and whichever answers first
+ * wins while the other is aborted. A {@link CircuitBreaker} stops the requests altogether while
+ * the server keeps failing, and the copy of the response stored by an earlier load is returned
+ * instead, however old it is.
+ */
+final class ResilientFetcher {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ResilientFetcher.class.getSimpleName();
+
+    // Constant value for the number of attempts of a request, the first one included
+    private static final int MAX_ATTEMPTS = 3;
+    // Constant value for the delay before the first retry, in milliseconds
+    private static final long BASE_BACKOFF_MILLIS = 500;
+    // Constant value for the longest delay before a retry, in milliseconds
+    private static final long MAX_BACKOFF_MILLIS = 4000;
+    // Constant value for the number of failures in a row opening the circuit breaker
+    private static final int BREAKER_FAILURE_THRESHOLD = 5;
+    // Constant value for the time the circuit breaker stays open, in milliseconds
+    private static final long BREAKER_OPEN_MILLIS = 30000;
+
+    // Constant value for the percentile of the recent latencies after which a request is hedged
+    private static final double HEDGE_PERCENTILE = 0.95;
+    // Constant value for the number of latencies needed before requests are hedged
+    private static final int MIN_HEDGE_SAMPLES = 10;
+    // Constant value for the number of recent latencies kept
+    private static final int LATENCY_WINDOW = 64;
+    // Constant value for the shortest wait before a hedged request, in milliseconds
+    private static final long MIN_HEDGE_DELAY_MILLIS = 100;
+    // Constant value for the largest number of attempts running at the same time
+    private static final int MAX_CONCURRENT_ATTEMPTS = 8;
+
+    // The fetcher shared by all loads
+    private static final ResilientFetcher sInstance = new ResilientFetcher(MAX_ATTEMPTS,
+            BASE_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS, true, new CircuitBreaker(
+            BREAKER_FAILURE_THRESHOLD, BREAKER_OPEN_MILLIS, CircuitBreaker.SYSTEM_CLOCK));
+
+    // The pool running the attempts of hedged requests
+    private static final ExecutorService sExecutor = createExecutor();
+
+    // Number of attempts of a request
+    private final int mMaxAttempts;
+    // Delay before the first retry
+    private final long mBaseBackoffMillis;
+    // Longest delay before a retry
+    private final long mMaxBackoffMillis;
+    // Whether slow requests are hedged
+    private final boolean mHedging;
+    // Stops the requests while the server keeps failing
+    private final CircuitBreaker mBreaker;
+    // Spreads the retries of different clients
+    private final Random mRandom = new Random();
+
+    // Latencies of the recent successful attempts, in milliseconds
+    private final long[] mLatencies = new long[LATENCY_WINDOW];
+    // Number of latencies recorded
+    private int mLatencyCount;
+
+    // Number of retries
+    private final AtomicLong mRetryCount = new AtomicLong();
+    // Number of hedged attempts sent
+    private final AtomicLong mHedgeCount = new AtomicLong();
+    // Number of hedged attempts which answered first
+    private final AtomicLong mHedgeWinCount = new AtomicLong();
+    // Number of requests answered with a stored copy
+    private final AtomicLong mFallbackCount = new AtomicLong();
+    // Number of requests given up because they were cancelled
+    private final AtomicLong mCancelledCount = new AtomicLong();
+
+    /**
+     * Creates a new {@link ResilientFetcher}
+     *
+     * @param maxAttempts       is the number of attempts of a request, the first one included
+     * @param baseBackoffMillis is the delay before the first retry, in milliseconds
+     * @param maxBackoffMillis  is the longest delay before a retry, in milliseconds
+     * @param hedging           is true to hedge the requests slower than most
+     * @param breaker           stops the requests while the server keeps failing
+     */
+    ResilientFetcher(int maxAttempts, long baseBackoffMillis, long maxBackoffMillis,
+                     boolean hedging, CircuitBreaker breaker) {
+        mMaxAttempts = maxAttempts;
+        mBaseBackoffMillis = baseBackoffMillis;
+        mMaxBackoffMillis = maxBackoffMillis;
+        mHedging = hedging;
+        mBreaker = breaker;
+    }
+
+    /**
+     * @return the fetcher shared by all loads
+     */
+    static ResilientFetcher getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Requests the articles of the given URL, retrying and hedging as needed.
+     * <p>
+     * Requests with a listener are never hedged, since both attempts would notify it.
+     *
+     * @param url      is the url of the request
+     * @param listener is notified of each article while the response is downloaded, may be null
+     * @return the list of articles, the stored copy of the response if the server could not be
+     * reached, or null if there is none
+     */
+    List<Article> fetch(URL url, ArticleParser.OnArticleParsedListener listener) {
+        return fetch(url, listener, null);
+    }
+
+    /**
+     * Requests the articles of the given URL, retrying and hedging as needed, until the
+     * cancellation is cancelled. Cancelling aborts the attempt in flight, cuts a backoff short
+     * and skips the stored copy.
+     * <p>
+     * Requests with a listener are never hedged, since both attempts would notify it.
+     *
+     * @param url          is the url of the request
+     * @param listener     is notified of each article while the response is downloaded, may be
+     *                     null
+     * @param cancellation gives up the request when it is cancelled, may be null
+     * @return the list of articles, the stored copy of the response if the server could not be
+     * reached, or null if there is none or the request was cancelled
+     */
+    List<Article> fetch(URL url, ArticleParser.OnArticleParsedListener listener,
+                        HttpClient.Cancellation cancellation) {
+        return fetch(url, listener, cancellation, false);
+    }
+
+    /**
+     * Requests the articles of the given URL, retrying and hedging as needed, until the
+     * cancellation is cancelled.
+     *
+     * @param url          is the url of the request
+     * @param listener     is notified of each article while the response is downloaded, may be
+     *                     null
+     * @param cancellation gives up the request when it is cancelled, may be null
+     * @param revalidate   is true to ask the server even if the stored copy is still fresh, as
+     *                     when the user refreshes the list
+     * @return the list of articles, the stored copy of the response if the server could not be
+     * reached, or null if there is none or the request was cancelled
+     */
+    List<Article> fetch(URL url, ArticleParser.OnArticleParsedListener listener,
+                        HttpClient.Cancellation cancellation, boolean revalidate) {
+        if (cancellation == null) {
+            cancellation = new HttpClient.Cancellation();
+        }
+        if (!revalidate) {
+            // A copy stored by an earlier load which is still fresh needs no request at all
+            List<Article> fresh = QueryUtils.readFresh(url, listener, cancellation);
+            if (cancellation.isCancelled()) {
+                return cancelled();
+            }
+            if (fresh != null) {
+                return fresh;
+            }
+        }
+        for (int attempt = 0; attempt < mMaxAttempts; attempt++) {
+            if (!mBreaker.allowRequest()) {
+                Log.w(LOG_TAG, "The server keeps failing, not sending the request");
+                break;
+            }
+            // The attempt may hold the only trial of a half open breaker, which must be released
+            // however the attempt ends, or the breaker would turn every request down for good
+            boolean recorded = false;
+            try {
+                if (attempt > 0) {
+                    mRetryCount.incrementAndGet();
+                    try {
+                        if (cancellation.await(backoffMillis(attempt))) {
+                            // Nobody waits for the request any more
+                            return cancelled();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+                try {
+                    List<Article> articles = mHedging && listener == null
+                            ? hedgedAttempt(url, cancellation)
+                            : attempt(url, listener, cancellation);
+                    mBreaker.recordSuccess();
+                    recorded = true;
+                    return articles;
+                } catch (IOException e) {
+                    if (cancellation.isCancelled()) {
+                        // The failure is ours rather than the server's
+                        return cancelled();
+                    }
+                    Log.e(LOG_TAG, "Problem making the HTTP request", e);
+                    if (!isRetryable(e)) {
+                        // The server is up, it just did not like the request
+                        mBreaker.recordSuccess();
+                        recorded = true;
+                        break;
+                    }
+                    mBreaker.recordFailure();
+                    recorded = true;
+                    if (Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
+                }
+            } finally {
+                if (!recorded) {
+                    // Given up before the server answered, which tells nothing about it
+                    mBreaker.recordAbandoned();
+                }
+            }
+        }
+        mFallbackCount.incrementAndGet();
+        return QueryUtils.readStale(url, listener, cancellation);
+    }
+
+    /**
+     * Records a request given up because it was cancelled
+     *
+     * @return null, as there are no articles for a cancelled request
+     */
+    private List<Article> cancelled() {
+        mCancelledCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return the circuit breaker of the requests
+     */
+    CircuitBreaker getCircuitBreaker() {
+        return mBreaker;
+    }
+
+    /**
+     * @return the number of retries
+     */
+    long getRetryCount() {
+        return mRetryCount.get();
+    }
+
+    /**
+     * @return the number of hedged attempts sent
+     */
+    long getHedgeCount() {
+        return mHedgeCount.get();
+    }
+
+    /**
+     * @return the number of hedged attempts which answered before the first attempt
+     */
+    long getHedgeWinCount() {
+        return mHedgeWinCount.get();
+    }
+
+    /**
+     * @return the number of requests answered with a stored copy of the response
+     */
+    long getFallbackCount() {
+        return mFallbackCount.get();
+    }
+
+    /**
+     * @return the number of requests given up because they were cancelled
+     */
+    long getCancelledCount() {
+        return mCancelledCount.get();
+    }
+
+    /**
+     * Returns the delay after which a request is hedged, the given percentile of the latencies of
+     * the recent requests.
+     *
+     * @return the delay in milliseconds, or 0 if there are not enough recent requests yet
+     */
+    synchronized long getHedgeDelayMillis() {
+        if (mLatencyCount < MIN_HEDGE_SAMPLES) {
+            return 0;
+        }
+        int count = Math.min(mLatencyCount, LATENCY_WINDOW);
+        long[] sorted = Arrays.copyOf(mLatencies, count);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(HEDGE_PERCENTILE * count) - 1;
+        return Math.max(MIN_HEDGE_DELAY_MILLIS, sorted[Math.max(0, index)]);
+    }
+
+    /**
+     * Makes a single attempt, recording its latency if it succeeds
+     */
+    private List<Article> attempt(URL url, ArticleParser.OnArticleParsedListener listener,
+                                  HttpClient.Cancellation cancellation) throws IOException {
+        long start = System.nanoTime();
+        List<Article> articles = QueryUtils.makeHttpRequest(url, listener, cancellation);
+        recordLatency((System.nanoTime() - start) / 1000000);
+        return articles;
+    }
+
+    /**
+     * Makes an attempt and, if it has not answered by the hedge delay, a second one, returning
+     * whichever succeeds first. The attempt still running is then aborted, and both are if the
+     * request is cancelled.
+     */
+    private List<Article> hedgedAttempt(final URL url, HttpClient.Cancellation cancellation)
+            throws IOException {
+        long hedgeDelay = getHedgeDelayMillis();
+        if (hedgeDelay <= 0) {
+            return attempt(url, null, cancellation);
+        }
+        CompletionService<List<Article>> completion = new ExecutorCompletionService<>(sExecutor);
+        HttpClient.Cancellation first = cancellation.newChild();
+        HttpClient.Cancellation second = null;
+        Future<List<Article>> firstFuture = completion.submit(attemptTask(url, first));
+        Future<List<Article>> done = null;
+        try {
+            done = completion.poll(hedgeDelay, TimeUnit.MILLISECONDS);
+            if (done == null) {
+                second = cancellation.newChild();
+                completion.submit(attemptTask(url, second));
+                mHedgeCount.incrementAndGet();
+                done = completion.take();
+            }
+            try {
+                List<Article> articles = done.get();
+                if (done != firstFuture) {
+                    mHedgeWinCount.incrementAndGet();
+                }
+                return articles;
+            } catch (ExecutionException e) {
+                if (second == null) {
+                    throw asIOException(e);
+                }
+                // The other attempt may still succeed
+                done = completion.take();
+                try {
+                    List<Article> articles = done.get();
+                    if (done != firstFuture) {
+                        mHedgeWinCount.incrementAndGet();
+                    }
+                    return articles;
+                } catch (ExecutionException again) {
+                    throw asIOException(again);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the response");
+        } finally {
+            // Abort whichever attempt is still running, the one which answered is left alone
+            // so its connection can be reused
+            if (done != firstFuture) {
+                first.cancel();
+            }
+            if (second != null && (done == null || done == firstFuture)) {
+                second.cancel();
+            }
+        }
+    }
+
+    /**
+     * @return a task making an attempt which can be aborted through the given cancellation
+     */
+    private Callable<List<Article>> attemptTask(final URL url,
+                                                final HttpClient.Cancellation cancellation) {
+        return new Callable<List<Article>>() {
+            @Override
+            public List<Article> call() throws IOException {
+                return attempt(url, null, cancellation);
+            }
+        };
+    }
+
+    /**
+     * Records the latency of a successful attempt
+     */
+    private synchronized void recordLatency(long millis) {
+        mLatencies[mLatencyCount % LATENCY_WINDOW] = millis;
+        mLatencyCount++;
+    }
+
+    /**
+     * @return a random delay of up to the exponentially growing backoff of the given retry
+     */
+    private long backoffMillis(int attempt) {
+        long ceiling = Math.min(mMaxBackoffMillis, mBaseBackoffMillis << Math.min(attempt - 1, 16));
+        synchronized (mRandom) {
+            return (long) (mRandom.nextDouble() * ceiling);
+        }
+    }
+
+    /**
+     * @return true if the failure may go away on another attempt: an I/O error, a server error,
+     * a request timeout or too many requests
+     */
+    private static boolean isRetryable(IOException e) {
+        if (!(e instanceof HttpClient.StatusException)) {
+            return true;
+        }
+        int code = ((HttpClient.StatusException) e).getCode();
+        return code >= HttpURLConnection.HTTP_INTERNAL_ERROR
+                || code == HttpURLConnection.HTTP_CLIENT_TIMEOUT || code == 429;
+    }
+
+    /**
+     * @return the failure of an attempt run on the pool
+     */
+    private static IOException asIOException(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        return new IOException(cause);
+    }
+
+    /**
+     * Creates the pool running the attempts of hedged requests, whose threads stop when they are
+     * idle
+     */
+    private static ExecutorService createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_CONCURRENT_ATTEMPTS,
+                MAX_CONCURRENT_ATTEMPTS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Attempt #" + mCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
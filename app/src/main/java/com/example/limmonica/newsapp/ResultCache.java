@@ -0,0 +1,206 @@
+package com.example.limmonica.newsapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded in-memory cache of the parsed articles of recent loads, so going back to a
+ * combination of settings seen shortly before shows its articles without fetching and parsing
+ * them again.
+ * <p>
+ * Entries are keyed by the request urls of a load, normalized as the disk cache does. They
+ * expire once they are older than the maximum age, and when the estimated size of the articles
+ * grows past the limit, the least recently used entries are evicted.
+ */
+final class ResultCache {
+
+    // Constant value for the time the articles of a load are kept, in milliseconds
+    private static final long MAX_AGE_MILLIS = 5 * 60 * 1000;
+    // Constant value for the largest share of the heap the cache may hold, as a divisor
+    private static final int HEAP_FRACTION = 64;
+    // Constant value for the largest size of the cache, in bytes, whatever the heap
+    private static final long MAX_SIZE = 4 * 1024 * 1024;
+
+    // The cache shared by all loads
+    private static final ResultCache sInstance = new ResultCache(
+            Math.min(Runtime.getRuntime().maxMemory() / HEAP_FRACTION, MAX_SIZE),
+            MAX_AGE_MILLIS, CircuitBreaker.SYSTEM_CLOCK);
+
+    // The maximum estimated size of the articles kept, in bytes
+    private final long mMaxSize;
+    // The time the articles of a load are kept, in milliseconds
+    private final long mMaxAgeMillis;
+    // Tells the time the entries are stored at
+    private final CircuitBreaker.Clock mClock;
+    // The entries, from the least to the most recently used
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    // The estimated size of the articles currently kept, in bytes
+    private long mSize;
+    // Number of loads answered from memory
+    private int mHitCount;
+    // Number of loads which were not
+    private int mMissCount;
+    // Number of entries evicted to make room
+    private int mEvictionCount;
+
+    /**
+     * Creates a new {@link ResultCache}
+     *
+     * @param maxSize      is the maximum estimated size of the articles kept, in bytes
+     * @param maxAgeMillis is the time the articles of a load are kept, in milliseconds
+     * @param clock        tells the time
+     */
+    ResultCache(long maxSize, long maxAgeMillis, CircuitBreaker.Clock clock) {
+        mMaxSize = maxSize;
+        mMaxAgeMillis = maxAgeMillis;
+        mClock = clock;
+    }
+
+    /**
+     * @return the cache shared by all loads
+     */
+    static ResultCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * @return the cache key of the load of the given request urls
+     */
+    static String keyOf(List<String> urls) {
+        StringBuilder key = new StringBuilder();
+        for (String url : urls) {
+            key.append(DiskResponseCache.normalizeKey(url)).append('\n');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Returns the articles kept for a load, unless they have expired
+     *
+     * @param key is the key of the load, from {@link #keyOf}
+     * @return the unmodifiable list of articles, or null if there is none
+     */
+    synchronized List<Article> get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry != null && mClock.millis() - entry.mStoredAt >= mMaxAgeMillis) {
+            remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        return entry.mArticles;
+    }
+
+    /**
+     * Keeps the articles of a load, replacing those kept for it before. Articles larger than
+     * the whole cache are not kept.
+     *
+     * @param key      is the key of the load, from {@link #keyOf}
+     * @param articles is the list of articles, which is copied
+     */
+    void put(String key, List<Article> articles) {
+        // Size the articles outside the lock, the loads on other threads need not wait for it
+        long size = 0;
+        for (Article article : articles) {
+            size += article.estimateSize();
+        }
+        List<Article> copy = Collections.unmodifiableList(new ArrayList<>(articles));
+        synchronized (this) {
+            remove(key);
+            if (size > mMaxSize) {
+                return;
+            }
+            mEntries.put(key, new Entry(copy, size, mClock.millis()));
+            mSize += size;
+            trimToSize(mMaxSize);
+        }
+    }
+
+    /**
+     * Forgets the articles kept for a load, if any
+     *
+     * @param key is the key of the load, from {@link #keyOf}
+     */
+    synchronized void remove(String key) {
+        Entry entry = mEntries.remove(key);
+        if (entry != null) {
+            mSize -= entry.mSize;
+        }
+    }
+
+    /**
+     * Evicts the least recently used entries until the articles kept fit in the given size,
+     * as when the system runs low on memory
+     *
+     * @param maxSize is the size to fit in, in bytes, 0 to evict everything
+     */
+    synchronized void trimToSize(long maxSize) {
+        Iterator<Map.Entry<String, Entry>> entries = mEntries.entrySet().iterator();
+        while (mSize > maxSize && entries.hasNext()) {
+            mSize -= entries.next().getValue().mSize;
+            entries.remove();
+            mEvictionCount++;
+        }
+    }
+
+    /**
+     * @return the maximum estimated size of the articles kept, in bytes
+     */
+    long getMaxSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * @return the estimated size of the articles currently kept, in bytes
+     */
+    synchronized long getSize() {
+        return mSize;
+    }
+
+    /**
+     * @return the number of loads answered from memory
+     */
+    synchronized int getHitCount() {
+        return mHitCount;
+    }
+
+    /**
+     * @return the number of loads which were not answered from memory
+     */
+    synchronized int getMissCount() {
+        return mMissCount;
+    }
+
+    /**
+     * @return the number of entries evicted to make room
+     */
+    synchronized int getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    /**
+     * The articles of a load
+     */
+    private static final class Entry {
+
+        // The unmodifiable list of articles
+        final List<Article> mArticles;
+        // The estimated size of the articles, in bytes
+        final long mSize;
+        // Time the articles were stored at
+        final long mStoredAt;
+
+        Entry(List<Article> articles, long size, long storedAt) {
+            mArticles = articles;
+            mSize = size;
+            mStoredAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package com.example.limmonica.newsapp;
+
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the articles of the last successful first page in a small file, so a cold start can
+ * show them straight away while the page is fetched again behind them.
+ * <p>
+ * The snapshot is a compact binary encoding of the articles, laid out as:
+ * <pre>
+ * int     magic, int format version
+ * varint  length of the key, then its UTF-8 bytes
+ * varint  number of strings, then for each its varint length and UTF-8 bytes
+ * varint  number of articles, then for each a record of fixed size: the long publishing date
+ *         and the int index in the string table of its section, thumbnail url prefix and
+ *         suffix, title, author, trail, url prefix and suffix, or -1 for a missing value
+ * </pre>
+ * Every distinct string is stored once, so the sections, authors and url prefixes shared by
+ * the articles cost a few bytes each. Reading maps the file into memory and decodes nothing
+ * up front: an article is built when it is first asked for, and a string when the first
+ * article holding it is, so the rows on screen are all that is decoded before the first frame.
+ * <p>
+ * The snapshot is tagged with a key describing the request it answered, typically its urls,
+ * and a snapshot of another request is ignored. A new snapshot is written to a temporary file
+ * first and then renamed over the old one, so a reader never sees half of it.
+ */
+final class ResultSnapshot {
+
+    // Tag for log messages
+    private static final String LOG_TAG = ResultSnapshot.class.getSimpleName();
+    // Charset of the strings
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    // Constant value starting every snapshot, "ASNP"
+    private static final int MAGIC = 0x41534e50;
+    // Constant value identifying the format of the file, bumped whenever it changes
+    private static final int FORMAT_VERSION = 2;
+    // Constant value for the largest number of articles kept
+    private static final int MAX_ARTICLES = 200;
+    // Constant value for the number of strings of an article record
+    private static final int STRINGS_PER_RECORD = 8;
+    // Constant value for the size of an article record, in bytes
+    private static final int RECORD_SIZE = 8 + 4 * STRINGS_PER_RECORD;
+    // Constant value for the index of a missing string
+    private static final int NO_STRING = -1;
+
+    // The snapshot file
+    private final File mFile;
+
+    /**
+     * Creates a new {@link ResultSnapshot}
+     *
+     * @param file is the snapshot file, which does not need to exist yet
+     */
+    ResultSnapshot(File file) {
+        mFile = file;
+    }
+
+    /**
+     * @return the key of the snapshot answering the given request urls
+     */
+    static String keyOf(List<String> urls) {
+        StringBuilder key = new StringBuilder();
+        for (String url : urls) {
+            key.append(url).append('\n');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Opens the articles of the snapshot. They are decoded as they are asked for, so the list
+     * should only be read from one thread at a time.
+     *
+     * @param key describes the request whose articles are wanted
+     * @return the list of articles, or null if there is no snapshot of that request or it can
+     * not be read
+     */
+    List<Article> read(String key) {
+        if (!mFile.exists()) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = map(mFile);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                return null;
+            }
+            int keyLength = readLength(buffer);
+            if (!key.equals(decode(buffer, buffer.position(), keyLength))) {
+                return null;
+            }
+            buffer.position(buffer.position() + keyLength);
+            return new LazyArticleList(buffer);
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem reading the snapshot", e);
+            return null;
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            Log.e(LOG_TAG, "The snapshot is truncated or corrupt", e);
+            return null;
+        }
+    }
+
+    /**
+     * Replaces the snapshot with the given articles, keeping the first {@link #MAX_ARTICLES}.
+     * This is done on a background thread.
+     *
+     * @param key      describes the request the articles answered
+     * @param articles is the list of articles
+     * @return true if the snapshot was written
+     */
+    boolean write(String key, List<Article> articles) {
+        int count = Math.min(articles.size(), MAX_ARTICLES);
+        StringTable strings = new StringTable();
+        ByteBuffer records = ByteBuffer.allocate(count * RECORD_SIZE);
+        for (int i = 0; i < count; i++) {
+            Article article = articles.get(i);
+            records.putLong(article.getPublishedMillis());
+            records.putInt(strings.indexOf(article.getArticleSection()));
+            String thumbnailUrl = article.getThumbnailUrl();
+            if (thumbnailUrl != null) {
+                int split = ArticleStore.urlSplit(thumbnailUrl);
+                records.putInt(strings.indexOf(thumbnailUrl.substring(0, split)));
+                records.putInt(strings.indexOf(thumbnailUrl.substring(split)));
+            } else {
+                records.putInt(NO_STRING);
+                records.putInt(NO_STRING);
+            }
+            // Decoded without being kept by the article, which only keeps what is shown
+            records.putInt(strings.indexOf(article.decodeTitle()));
+            records.putInt(strings.indexOf(article.decodeAuthor()));
+            records.putInt(strings.indexOf(article.decodeTrail()));
+            String url = article.getArticleUrl();
+            int split = ArticleStore.urlSplit(url);
+            records.putInt(strings.indexOf(url.substring(0, split)));
+            records.putInt(strings.indexOf(url.substring(split)));
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        writeInt(header, MAGIC);
+        writeInt(header, FORMAT_VERSION);
+        writeString(header, key);
+        strings.writeTo(header);
+        writeVarint(header, count);
+
+        File temporary = new File(mFile.getPath() + ".tmp");
+        try {
+            OutputStream out = new FileOutputStream(temporary);
+            try {
+                header.writeTo(out);
+                out.write(records.array(), 0, records.position());
+            } finally {
+                out.close();
+            }
+            if (!temporary.renameTo(mFile)) {
+                throw new IOException("Could not replace " + mFile);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Problem writing the snapshot", e);
+            temporary.delete();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the articles of a list read from a snapshot without the ones it has built so far,
+     * so they can be reclaimed while the list is kept. The new list shares the mapped file and
+     * builds its articles again as they are asked for.
+     *
+     * @param articles is a list returned by {@link #read(String)}, or any other list
+     * @return a new list of the same articles, or the given list if it was not read from a
+     * snapshot
+     */
+    static List<Article> reopen(List<Article> articles) {
+        if (articles instanceof LazyArticleList) {
+            return new LazyArticleList((LazyArticleList) articles);
+        }
+        return articles;
+    }
+
+    /**
+     * Maps a whole file into memory, read only
+     */
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(file, "r");
+        try {
+            // The mapping outlives the file being closed, or replaced by a newer snapshot
+            FileChannel channel = in.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return the UTF-8 string of the given length at the given position of the buffer
+     */
+    private static String decode(ByteBuffer buffer, int position, int length) {
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + position, length, UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(position);
+        source.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Reads a varint length, checking that that many bytes follow it
+     */
+    private static int readLength(ByteBuffer buffer) {
+        int length = readVarint(buffer);
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Bad length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Reads an unsigned varint: 7 bits per byte, the lowest first, with the high bit set on
+     * every byte but the last
+     */
+    static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+
+    /**
+     * Writes an unsigned varint, as {@link #readVarint(ByteBuffer)} reads it
+     */
+    static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    /**
+     * Writes a big-endian int, as {@link ByteBuffer#getInt()} reads it
+     */
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /**
+     * Writes a string as its varint length followed by its UTF-8 bytes
+     */
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * The distinct strings of the articles being written, in the order they were first met
+     */
+    private static final class StringTable {
+
+        // Index of every string of the table
+        private final Map<String, Integer> mIndices = new HashMap<>();
+        // The strings of the table, encoded
+        private final ByteArrayOutputStream mBytes = new ByteArrayOutputStream();
+
+        /**
+         * @return the index of the given string, added to the table if needed, or
+         * {@link #NO_STRING} if it is null
+         */
+        int indexOf(String value) {
+            if (value == null) {
+                return NO_STRING;
+            }
+            Integer index = mIndices.get(value);
+            if (index == null) {
+                index = mIndices.size();
+                mIndices.put(value, index);
+                writeString(mBytes, value);
+            }
+            return index;
+        }
+
+        /**
+         * Writes the number of strings followed by the strings
+         */
+        void writeTo(ByteArrayOutputStream out) {
+            writeVarint(out, mIndices.size());
+            byte[] bytes = mBytes.toByteArray();
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * The articles of a snapshot, built as they are asked for
+     */
+    private static final class LazyArticleList extends AbstractList<Article> {
+
+        // The snapshot
+        private final ByteBuffer mBuffer;
+        // Position and length in bytes of every string of the table
+        private final int[] mStringPositions;
+        private final int[] mStringLengths;
+        // The strings decoded so far
+        private final String[] mStrings;
+        // Position of the first article record
+        private final int mRecordsPosition;
+        // The articles built so far
+        private final Article[] mArticles;
+
+        /**
+         * Finds the strings and records of a snapshot, without decoding any of them. The string
+         * indices of every record are checked here, so a corrupt record fails the read rather
+         * than the bind of its row.
+         *
+         * @param buffer is the snapshot, positioned on its string table
+         */
+        LazyArticleList(ByteBuffer buffer) {
+            mBuffer = buffer;
+            int stringCount = readVarint(buffer);
+            // Every string takes at least the byte of its length
+            if (stringCount < 0 || stringCount > buffer.remaining()) {
+                throw new IllegalArgumentException("Bad string count " + stringCount);
+            }
+            mStringPositions = new int[stringCount];
+            mStringLengths = new int[stringCount];
+            mStrings = new String[stringCount];
+            for (int i = 0; i < stringCount; i++) {
+                mStringLengths[i] = readLength(buffer);
+                mStringPositions[i] = buffer.position();
+                buffer.position(buffer.position() + mStringLengths[i]);
+            }
+            int count = readVarint(buffer);
+            if (count < 0 || count > MAX_ARTICLES || count * RECORD_SIZE > buffer.remaining()) {
+                throw new IllegalArgumentException("Bad article count " + count);
+            }
+            mRecordsPosition = buffer.position();
+            mArticles = new Article[count];
+            for (int record = 0; record < count; record++) {
+                int position = mRecordsPosition + record * RECORD_SIZE + 8;
+                for (int i = 0; i < STRINGS_PER_RECORD; i++) {
+                    int index = buffer.getInt(position + 4 * i);
+                    if (index != NO_STRING && (index < 0 || index >= stringCount)) {
+                        throw new IllegalArgumentException("Bad string index " + index);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Shares the snapshot and the string table of another list, with nothing decoded yet
+         *
+         * @param list is the list read from the snapshot
+         */
+        LazyArticleList(LazyArticleList list) {
+            mBuffer = list.mBuffer;
+            mStringPositions = list.mStringPositions;
+            mStringLengths = list.mStringLengths;
+            mStrings = new String[list.mStrings.length];
+            mRecordsPosition = list.mRecordsPosition;
+            mArticles = new Article[list.mArticles.length];
+        }
+
+        @Override
+        public Article get(int index) {
+            Article article = mArticles[index];
+            if (article == null) {
+                int position = mRecordsPosition + index * RECORD_SIZE;
+                long publishedMillis = mBuffer.getLong(position);
+                position += 8;
+                article = new Article(publishedMillis, string(position), string(position + 4),
+                        string(position + 8), string(position + 12), string(position + 16),
+                        string(position + 20), string(position + 24), string(position + 28));
+                mArticles[index] = article;
+            }
+            return article;
+        }
+
+        @Override
+        public int size() {
+            return mArticles.length;
+        }
+
+        /**
+         * @return the string whose index in the table is stored at the given position
+         */
+        private String string(int position) {
+            int index = mBuffer.getInt(position);
+            if (index == NO_STRING) {
+                return null;
+            }
+            String value = mStrings[index];
+            if (value == null) {
+                value = decode(mBuffer, mStringPositions[index], mStringLengths[index]);
+                mStrings[index] = value;
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.limmonica.newsapp;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.preference.PreferenceManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds the requests made to The Guardian search API, for the list of articles as well as for
+ * the background sync.
+ */
+final class SearchRequests {
+
+    // The Guardian search endpoint
+    private static final String GUARDIAN_REQUEST_URL =
+            "https://content.guardianapis.com/search";
+
+    // Date the list of articles starts from
+    static final String DEFAULT_FROM_DATE = "2018-08-01";
+    // Constant value for the largest number of articles per page the API serves
+    static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * Create a private constructor because no one should ever create a {@link SearchRequests}
+     * object. This class is only meant to hold static methods.
+     */
+    private SearchRequests() {
+    }
+
+    /**
+     * Builds the url requesting a single page of articles.
+     *
+     * @param topic    is the search terms of the request
+     * @param orderBy  is the order of the articles
+     * @param pageSize is the number of articles per page
+     * @param page     is the 1-based number of the page
+     * @param fromDate is the date of the oldest articles requested, in The Guardian format, or
+     *                 null for no limit
+     * @return the url of the request
+     */
+    static String buildUrl(String topic, String orderBy, String pageSize, int page,
+                           String fromDate) {
+
+        // Breaks apart the URI string that's passed into its param
+        Uri baseUri = Uri.parse(GUARDIAN_REQUEST_URL);
+
+        // Prepares the baseUri that we just parsed so we can add query params to it
+        Uri.Builder uriBuilder = baseUri.buildUpon();
+
+        String apiKey = BuildConfig.THE_GUARDIAN_API_KEY;
+        // Append query params and its value
+        if (fromDate != null) {
+            uriBuilder.appendQueryParameter("from-date", fromDate);
+        }
+        uriBuilder.appendQueryParameter("show-fields", "byline,trailText,thumbnail,headline");
+        uriBuilder.appendQueryParameter("order-by", orderBy);
+        uriBuilder.appendQueryParameter("page-size", pageSize);
+        uriBuilder.appendQueryParameter("page", String.valueOf(page));
+        uriBuilder.appendQueryParameter("q", topic);
+        uriBuilder.appendQueryParameter("api-key", apiKey);
+        return uriBuilder.toString();
+    }
+
+    /**
+     * Reads the number of articles per page typed in the settings, which the field leaves free
+     *
+     * @param value       is the text of the preference
+     * @param defaultSize is the number used when the text is not a whole number
+     * @return the number of articles per page, between 1 and {@link #MAX_PAGE_SIZE}
+     */
+    static int parsePageSize(String value, int defaultSize) {
+        int pageSize;
+        try {
+            pageSize = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            pageSize = defaultSize;
+        }
+        return Math.max(1, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    /**
+     * @return the distinct topics of the comma separated "Topics" preference, the default topic
+     * if there are none
+     */
+    static List<String> getTopics(Context context) {
+        // Get the preferences
+        SharedPreferences sharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+
+        String preference = sharedPrefs.getString(
+                context.getString(R.string.settings_topics_key),
+                context.getString(R.string.settings_topics_default)
+        );
+        List<String> topics = new ArrayList<>();
+        for (String topic : preference.split(",")) {
+            topic = topic.trim();
+            if (!topic.isEmpty() && !topics.contains(topic)) {
+                topics.add(topic);
+            }
+        }
+        if (topics.isEmpty()) {
+            topics.add(context.getString(R.string.settings_topics_default));
+        }
+        return topics;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.limmonica.newsapp;
+
+/**
+ * The groups of sections sharing a color in the list of articles.
+ */
+enum SectionCategory {
+    NEWS, OPINION, SPORT, CULTURE, LIFESTYLE, OTHER;
+
+    /**
+     * Returns the category of a section
+     *
+     * @param sectionTitle is the title of the section
+     * @return the category
+     */
+    static SectionCategory of(String sectionTitle) {
+
+        // Assign the categories based on the title of the section
+        switch (sectionTitle) {
+            case "News":
+            case "World news":
+            case "UK news":
+            case "US news":
+            case "Australia news":
+            case "Technology":
+            case "Science":
+            case "Cities":
+            case "Global development":
+            case "Business":
+            case "Society":
+            case "Education":
+            case "Environment":
+            case "Politics":
+                return NEWS;
+            case "Opinion":
+                return OPINION;
+            case "Sport":
+                return SPORT;
+            case "Culture":
+            case "Film":
+            case "Music":
+            case "TV and radio":
+            case "Books":
+            case "Art and design":
+            case "Stage":
+            case "Games":
+            case "Classical":
+                return CULTURE;
+            case "Lifestyle":
+            case "Fashion":
+            case "Food":
+            case "Travel":
+            case "Health and fitness":
+            case "Women":
+            case "Love and sex":
+            case "Beauty":
+            case "Home and garden":
+            case "Money":
+            case "Cars":
+                return LIFESTYLE;
+            default:
+                return OTHER;
+        }
+    }
+}
@@ -24,11 +24,14 @@ public class SettingsActivity extends AppCompatActivity {
             addPreferencesFromResource(R.xml.settings_main);
             // Get the "Number of Articles Shown" Preference object according to its key
             Preference numberArticles = findPreference(getString(R.string.settings_number_articles_key));
+            // Get the "Topics" Preference object according to its key
+            Preference topics = findPreference(getString(R.string.settings_topics_key));
             // Get the "Order by" Preference object according to its key
             Preference orderBy = findPreference(getString(R.string.settings_order_by_key));
             // Bind the value that's in SharedPreferences to what will show up
             // in the preference summary
             bindPreferenceSummaryToValue(numberArticles);
+            bindPreferenceSummaryToValue(topics);
             bindPreferenceSummaryToValue(orderBy);
         }
 
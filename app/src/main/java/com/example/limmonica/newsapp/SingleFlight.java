@@ -0,0 +1,258 @@
+package com.example.limmonica.newsapp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets concurrent fetches of the same request share a single download and parse: the first
+ * caller fetches, and the callers arriving while it does wait for its articles instead of
+ * fetching them again. The articles are then handed out for a short while to the callers which
+ * come right after, as when the device is rotated or refresh is tapped twice.
+ * <p>
+ * Every caller gets a list of its own, holding the same articles. A caller with a listener which
+ * did not fetch the articles itself is notified of all of them once they are in. A caller which
+ * is cancelled stops waiting without affecting the others, and when the fetching caller is
+ * cancelled one of the waiting callers fetches in its place.
+ */
+final class SingleFlight {
+
+    /**
+     * Fetches the articles of a request
+     */
+    interface Fetch {
+
+        /**
+         * @param listener     is notified of each article as it is parsed, may be null
+         * @param cancellation aborts the fetch when it is cancelled, may be null
+         * @return the list of articles, or null if the fetch failed or was cancelled
+         */
+        List<Article> fetch(ArticleParser.OnArticleParsedListener listener,
+                            HttpClient.Cancellation cancellation);
+    }
+
+    // Constant value for the time the articles of a fetch are handed out, in milliseconds
+    private static final long RESULT_TTL_MILLIS = 3000;
+    // Constant value for how often a waiting caller checks whether it has been cancelled
+    private static final long CANCEL_CHECK_MILLIS = 50;
+
+    // The instance shared by all loads
+    private static final SingleFlight sInstance = new SingleFlight(RESULT_TTL_MILLIS,
+            CircuitBreaker.SYSTEM_CLOCK);
+
+    // Time the articles of a fetch are handed out
+    private final long mTtlMillis;
+    // Tells the time the fetches finish at
+    private final CircuitBreaker.Clock mClock;
+    // The fetches running or recently finished, by key, guarded by itself
+    private final Map<String, Flight> mFlights = new HashMap<>();
+
+    // Number of fetches made
+    private final AtomicLong mFetchCount = new AtomicLong();
+    // Number of calls which waited for a fetch in flight
+    private final AtomicLong mCoalescedCount = new AtomicLong();
+    // Number of calls handed the articles of a fetch which had just finished
+    private final AtomicLong mReusedCount = new AtomicLong();
+
+    /**
+     * Creates a new {@link SingleFlight}
+     *
+     * @param ttlMillis is the time the articles of a fetch are handed out once it has finished,
+     *                  in milliseconds, 0 to only share fetches in flight
+     * @param clock     tells the time
+     */
+    SingleFlight(long ttlMillis, CircuitBreaker.Clock clock) {
+        mTtlMillis = ttlMillis;
+        mClock = clock;
+    }
+
+    /**
+     * @return the instance shared by all loads
+     */
+    static SingleFlight getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Returns the articles of a request, fetching them unless the same request is already being
+     * fetched or has just been.
+     *
+     * @param key          identifies the request, as {@link DiskResponseCache#normalizeKey}
+     * @param listener     is notified of each article, may be null
+     * @param cancellation stops the call when it is cancelled, may be null
+     * @param fetch        fetches the articles if needed
+     * @return a list of the articles, or null if the fetch failed or the call was cancelled
+     */
+    List<Article> get(String key, ArticleParser.OnArticleParsedListener listener,
+                      HttpClient.Cancellation cancellation, Fetch fetch) {
+        while (cancellation == null || !cancellation.isCancelled()) {
+            Flight flight;
+            boolean fetching = false;
+            synchronized (mFlights) {
+                removeExpired();
+                flight = mFlights.get(key);
+                if (flight == null) {
+                    flight = new Flight();
+                    mFlights.put(key, flight);
+                    fetching = true;
+                }
+            }
+
+            if (fetching) {
+                mFetchCount.incrementAndGet();
+                List<Article> articles = null;
+                try {
+                    articles = fetch.fetch(listener, cancellation);
+                } finally {
+                    finish(key, flight, articles, cancellation);
+                }
+                return copy(articles);
+            }
+
+            List<Article> articles;
+            if (flight.isDone()) {
+                mReusedCount.incrementAndGet();
+                articles = flight.getArticles();
+            } else {
+                mCoalescedCount.incrementAndGet();
+                try {
+                    if (!flight.await(cancellation)) {
+                        // Abandoned by a cancelled caller, fetch again
+                        continue;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+                articles = flight.getArticles();
+            }
+            if (articles != null && listener != null) {
+                for (Article article : articles) {
+                    listener.onArticleParsed(article);
+                }
+            }
+            return copy(articles);
+        }
+        return null;
+    }
+
+    /**
+     * Hands the articles of a fetch to the callers waiting for them
+     */
+    private void finish(String key, Flight flight, List<Article> articles,
+                        HttpClient.Cancellation cancellation) {
+        boolean abandoned = cancellation != null && cancellation.isCancelled();
+        synchronized (mFlights) {
+            // Only successful fetches are handed out after they finish
+            if ((abandoned || articles == null || mTtlMillis <= 0)
+                    && mFlights.get(key) == flight) {
+                mFlights.remove(key);
+            }
+        }
+        if (abandoned) {
+            flight.abandon();
+        } else {
+            flight.complete(articles, mClock.millis());
+        }
+    }
+
+    /**
+     * Forgets the fetches which finished too long ago, guarded by {@link #mFlights}
+     */
+    private void removeExpired() {
+        long now = mClock.millis();
+        Iterator<Flight> flights = mFlights.values().iterator();
+        while (flights.hasNext()) {
+            Flight flight = flights.next();
+            if (flight.isDone() && now - flight.getFinishedAt() >= mTtlMillis) {
+                flights.remove();
+            }
+        }
+    }
+
+    /**
+     * @return a list of the given articles of its own, or null
+     */
+    private static List<Article> copy(List<Article> articles) {
+        return articles == null ? null : new ArrayList<>(articles);
+    }
+
+    /**
+     * @return the number of fetches made
+     */
+    long getFetchCount() {
+        return mFetchCount.get();
+    }
+
+    /**
+     * @return the number of calls which waited for a fetch in flight instead of fetching
+     */
+    long getCoalescedCount() {
+        return mCoalescedCount.get();
+    }
+
+    /**
+     * @return the number of calls handed the articles of a fetch which had just finished
+     */
+    long getReusedCount() {
+        return mReusedCount.get();
+    }
+
+    /**
+     * A fetch running or recently finished
+     */
+    private static final class Flight {
+
+        // Whether the fetch has finished
+        private boolean mDone;
+        // Whether the fetch was cancelled before finishing
+        private boolean mAbandoned;
+        // The articles, or null if the fetch failed
+        private List<Article> mArticles;
+        // Time the fetch finished at
+        private long mFinishedAt;
+
+        synchronized void complete(List<Article> articles, long finishedAt) {
+            mArticles = articles;
+            mFinishedAt = finishedAt;
+            mDone = true;
+            notifyAll();
+        }
+
+        synchronized void abandon() {
+            mAbandoned = true;
+            notifyAll();
+        }
+
+        synchronized boolean isDone() {
+            return mDone;
+        }
+
+        synchronized List<Article> getArticles() {
+            return mArticles;
+        }
+
+        synchronized long getFinishedAt() {
+            return mFinishedAt;
+        }
+
+        /**
+         * Waits for the fetch to finish, unless the given cancellation is cancelled first
+         *
+         * @return true if the fetch finished, false if it was abandoned or the wait cancelled
+         */
+        synchronized boolean await(HttpClient.Cancellation cancellation)
+                throws InterruptedException {
+            while (!mDone && !mAbandoned) {
+                if (cancellation != null && cancellation.isCancelled()) {
+                    return false;
+                }
+                wait(CANCEL_CHECK_MILLIS);
+            }
+            return mDone;
+        }
+    }
+}
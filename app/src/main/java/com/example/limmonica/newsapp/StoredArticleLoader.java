@@ -0,0 +1,71 @@
+package com.example.limmonica.newsapp;
+
+import android.content.Context;
+
+import java.util.List;
+
+/**
+ * Loads a list of formatted article rows from the articles saved by earlier loads, which is
+ * available without waiting for the network, either all of them or those matching a search. The
+ * user is waiting for them, so they are loaded in the {@link LoadExecutor.Priority#VISIBLE} lane.
+ */
+public class StoredArticleLoader extends PriorityLoader<List<ArticleRow>> {
+
+    /**
+     * Value of the "order-by" preference
+     */
+    private String mOrderBy;
+
+    /**
+     * Largest number of articles loaded
+     */
+    private int mLimit;
+
+    /**
+     * Text of the search the articles must match, or null to load all of them
+     */
+    private String mQuery;
+
+    /**
+     * Constructs a new {@link StoredArticleLoader} loading all the saved articles.
+     *
+     * @param context of the activity
+     * @param orderBy is the value of the "order-by" preference
+     * @param limit   is the largest number of articles loaded
+     */
+    StoredArticleLoader(Context context, String orderBy, int limit) {
+        this(context, orderBy, limit, null);
+    }
+
+    /**
+     * Constructs a new {@link StoredArticleLoader}.
+     *
+     * @param context of the activity
+     * @param orderBy is the value of the "order-by" preference
+     * @param limit   is the largest number of articles loaded
+     * @param query   is the text of the search the articles must match, the newest first, or
+     *                null to load all of them
+     */
+    StoredArticleLoader(Context context, String orderBy, int limit, String query) {
+        super(context, LoadExecutor.Priority.VISIBLE);
+        mOrderBy = orderBy;
+        mLimit = limit;
+        mQuery = query;
+    }
+
+    @Override
+    protected void onStartLoading() {
+        forceLoad();
+    }
+
+    /**
+     * This is on a background thread
+     */
+    @Override
+    public List<ArticleRow> loadInBackground() {
+        ArticleDatabase database = ArticleDatabase.getInstance(getContext());
+        List<Article> articles = mQuery != null
+                ? database.search(mQuery, mLimit) : database.loadArticles(mOrderBy, mLimit);
+        return new ArticleRowFormatter(getContext()).formatAll(articles);
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.limmonica.newsapp;
+
+import android.os.SystemClock;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.widget.ImageView;
+
+import com.squareup.picasso.Callback;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.StatsSnapshot;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the thumbnails of the list of articles at the size they are displayed at, and fetches
+ * the thumbnails of the rows about to be scrolled into view ahead of time.
+ * <p>
+ * Every thumbnail is decoded and resized to the measured size of the thumbnail view, so a small
+ * view never holds a full size bitmap and a prefetched thumbnail is found in the memory cache
+ * under the same key as the one displayed. While the list is flung the requests are paused, and
+ * the request of a row is cancelled as soon as the row is recycled, so the rows flying past do
+ * not hold up the ones the list settles on.
+ */
+final class ThumbnailLoader extends RecyclerView.OnScrollListener {
+
+    /**
+     * Gives the thumbnail url of the rows of the list
+     */
+    interface ThumbnailSource {
+
+        /**
+         * @return the number of rows of the list
+         */
+        int getCount();
+
+        /**
+         * @return the thumbnail url of the row at the given position, or null if it has none
+         */
+        String getThumbnailUrl(int position);
+    }
+
+    // Tag for log messages
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    // Constant value for the number of off-screen rows whose thumbnails are fetched ahead
+    private static final int PREFETCH_COUNT = 4;
+
+    // Tag of the requests of the rows on screen
+    private static final Object DISPLAY_TAG = new Object();
+    // Tag of the requests of the rows ahead of the screen
+    private static final Object PREFETCH_TAG = new Object();
+
+    // Gives the urls of the rows
+    private final ThumbnailSource mSource;
+
+    // Measured size of the thumbnail view, 0 until a bound view has been laid out
+    private int mWidth;
+    private int mHeight;
+    // Position of the last row prefetched, so a scroll only fetches the rows it brings closer
+    private int mLastPrefetched = RecyclerView.NO_POSITION;
+    // Direction of the last scroll, 1 down the list and -1 up the list
+    private int mDirection = 1;
+    // Whether the requests are paused while the list is flung
+    private boolean mPaused;
+
+    // Number of thumbnails displayed straight from the memory cache
+    private final AtomicLong mHits = new AtomicLong();
+    // Number of thumbnails which had to be downloaded or read from disk and decoded
+    private final AtomicLong mMisses = new AtomicLong();
+    // Time spent between the request and the display of the thumbnails which missed the cache
+    private final AtomicLong mDecodeMillis = new AtomicLong();
+    // Longest of those times
+    private final AtomicLong mMaxDecodeMillis = new AtomicLong();
+
+    /**
+     * Creates a new {@link ThumbnailLoader}
+     *
+     * @param source gives the thumbnail url of the rows of the list
+     */
+    ThumbnailLoader(ThumbnailSource source) {
+        mSource = source;
+    }
+
+    /**
+     * Displays a thumbnail in the given view, resized to the size of the view.
+     *
+     * @param url  is the url of the thumbnail
+     * @param view is the view the thumbnail is displayed in
+     */
+    void load(final String url, ImageView view) {
+        if (view.getWidth() > 0 && view.getHeight() > 0) {
+            mWidth = view.getWidth();
+            mHeight = view.getHeight();
+        }
+        // On a memory cache hit the callback is invoked before into() returns
+        final long start = SystemClock.uptimeMillis();
+        final boolean[] requesting = {true};
+        Callback callback = new Callback() {
+            @Override
+            public void onSuccess() {
+                if (requesting[0]) {
+                    mHits.incrementAndGet();
+                } else {
+                    recordMiss(SystemClock.uptimeMillis() - start);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.w(LOG_TAG, "Problem loading the thumbnail " + url, e);
+            }
+        };
+        if (mWidth > 0) {
+            Picasso.get().load(url).resize(mWidth, mHeight).centerCrop()
+                    .tag(DISPLAY_TAG).into(view, callback);
+        } else {
+            // The first rows are bound before any of them is laid out, Picasso waits for the
+            // view to be measured before resizing to it
+            Picasso.get().load(url).fit().centerCrop().tag(DISPLAY_TAG).into(view, callback);
+        }
+        requesting[0] = false;
+    }
+
+    /**
+     * Starts prefetching over when the rows of the list are replaced
+     */
+    void reset() {
+        mLastPrefetched = RecyclerView.NO_POSITION;
+    }
+
+    /**
+     * Cancels the request of a view whose row has been recycled
+     *
+     * @param view is the thumbnail view of the recycled row
+     */
+    void cancel(ImageView view) {
+        Picasso.get().cancelRequest(view);
+    }
+
+    /**
+     * Fetches the thumbnails of the rows just past the screen in the direction of the scroll
+     */
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        if (dy == 0 || mWidth == 0) {
+            return;
+        }
+        int direction = dy > 0 ? 1 : -1;
+        if (direction != mDirection) {
+            mDirection = direction;
+            mLastPrefetched = RecyclerView.NO_POSITION;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int edge = direction > 0 ? layoutManager.findLastVisibleItemPosition()
+                : layoutManager.findFirstVisibleItemPosition();
+        if (edge == RecyclerView.NO_POSITION) {
+            return;
+        }
+        int count = mSource.getCount();
+        int start = edge + direction;
+        if (mLastPrefetched != RecyclerView.NO_POSITION
+                && (mLastPrefetched - start) * direction >= 0) {
+            // The rows up to the last one prefetched have been requested already
+            start = mLastPrefetched + direction;
+        }
+        int end = edge + direction * PREFETCH_COUNT;
+        for (int position = start; (end - position) * direction >= 0; position += direction) {
+            if (position < 0 || position >= count) {
+                break;
+            }
+            String url = mSource.getThumbnailUrl(position);
+            if (url != null) {
+                Picasso.get().load(url).resize(mWidth, mHeight).centerCrop()
+                        .priority(Picasso.Priority.LOW).tag(PREFETCH_TAG).fetch();
+            }
+            mLastPrefetched = position;
+        }
+    }
+
+    /**
+     * Pauses the requests while the list is flung, and resumes them once the user takes hold of
+     * the list again or it comes to rest
+     */
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+        boolean pause = newState == RecyclerView.SCROLL_STATE_SETTLING;
+        if (pause == mPaused) {
+            return;
+        }
+        mPaused = pause;
+        Picasso picasso = Picasso.get();
+        if (pause) {
+            picasso.pauseTag(PREFETCH_TAG);
+            picasso.pauseTag(DISPLAY_TAG);
+        } else {
+            picasso.resumeTag(DISPLAY_TAG);
+            picasso.resumeTag(PREFETCH_TAG);
+        }
+    }
+
+    /**
+     * @return the share of displayed thumbnails found in the memory cache, between 0 and 1
+     */
+    double getHitRate() {
+        long total = mHits.get() + mMisses.get();
+        return total == 0 ? 0 : (double) mHits.get() / total;
+    }
+
+    /**
+     * @return the average time in milliseconds to fetch and decode a thumbnail which missed the
+     * memory cache
+     */
+    long getAverageDecodeMillis() {
+        long misses = mMisses.get();
+        return misses == 0 ? 0 : mDecodeMillis.get() / misses;
+    }
+
+    /**
+     * Logs the hit rate and decode time of the thumbnails, along with the memory cache counters
+     * of Picasso, which include the prefetched thumbnails
+     */
+    void logStats() {
+        StatsSnapshot snapshot = Picasso.get().getSnapshot();
+        Log.v(LOG_TAG, "Thumbnails: " + mHits.get() + " hits, " + mMisses.get() + " misses ("
+                + Math.round(getHitRate() * 100) + "% hit rate), decode "
+                + getAverageDecodeMillis() + " ms average, " + mMaxDecodeMillis.get()
+                + " ms max; memory cache " + snapshot.cacheHits + " hits, "
+                + snapshot.cacheMisses + " misses, " + snapshot.size + "/" + snapshot.maxSize
+                + " bytes");
+    }
+
+    /**
+     * Records the time a thumbnail which missed the memory cache took to display
+     */
+    private void recordMiss(long millis) {
+        mMisses.incrementAndGet();
+        mDecodeMillis.addAndGet(millis);
+        long max = mMaxDecodeMillis.get();
+        while (millis > max && !mMaxDecodeMillis.compareAndSet(max, millis)) {
+            max = mMaxDecodeMillis.get();
+        }
+    }
+}
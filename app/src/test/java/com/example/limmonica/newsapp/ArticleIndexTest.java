@@ -0,0 +1,118 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ArticleIndex}.
+ */
+public class ArticleIndexTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void tokenize_normalizesTheWordsAndSkipsTheMarkup() {
+        assertEquals(Arrays.asList("robots", "in", "zurich", "cafe", "2018", "now"),
+                ArticleIndex.tokenize(
+                        "<strong>Robots</strong> in Zürich&nbsp;CAFÉ, 2018 “now”"));
+        assertEquals(Arrays.asList("ai", "jobs"), ArticleIndex.tokenize("AI &amp; jobs"));
+        assertTrue(ArticleIndex.tokenize(" – ").isEmpty());
+    }
+
+    @Test
+    public void search_matchesEveryWordAsAPrefix() {
+        ArticleIndex index = new ArticleIndex();
+        index.add(article("Robots are coming for the jobs", "Alex Hern", "A trail"));
+        index.add(article("New phone launch", "Samuel Gibbs", "Robotic arms in Zürich"));
+        index.add(article("Data privacy", "Kari Paul", "Startup raises millions"));
+
+        assertArrayEquals(new int[]{0, 1}, index.search("robot"));
+        assertArrayEquals(new int[]{1}, index.search("ROBOTIC"));
+        assertArrayEquals(new int[]{1}, index.search("rob zur"));
+        assertArrayEquals(new int[]{2}, index.search("kari"));
+        assertArrayEquals(new int[0], index.search("robots privacy"));
+        assertArrayEquals(new int[0], index.search("xylophone"));
+    }
+
+    @Test
+    public void search_withoutWordsMatchesEveryArticle() {
+        ArticleIndex index = new ArticleIndex();
+        index.add(article("One", null, "Trail"));
+        index.add(article("Two", null, "Trail"));
+
+        assertArrayEquals(new int[]{0, 1}, index.search(""));
+        assertArrayEquals(new int[]{0, 1}, index.search("  , "));
+    }
+
+    @Test
+    public void add_indexesArticlesAsTheyArrive() {
+        ArticleIndex index = new ArticleIndex();
+        index.add(article("Robots", null, "Trail"));
+        assertArrayEquals(new int[]{0}, index.search("rob"));
+
+        index.add(article("More robots", null, "Trail"));
+        assertArrayEquals(new int[]{0, 1}, index.search("rob"));
+
+        index.clear();
+        assertEquals(0, index.size());
+        assertArrayEquals(new int[0], index.search("rob"));
+    }
+
+    @Test
+    public void add_leavesParsedArticlesUndecoded() throws Exception {
+        String json = "{\"response\":{\"results\":[{\"webUrl\":\"https://www.theguardian.com/a\","
+                + "\"fields\":{\"headline\":\"Caf\\u00e9 robots\",\"byline\":\"Alex Hern\","
+                + "\"trailText\":\"<strong>Data</strong> privacy\"}}]}}";
+        byte[] body = json.getBytes(UTF_8);
+        List<Article> articles = new ArrayList<>();
+        ArticleParser.parse(new ByteArrayInputStream(body), null, articles, null, body.length);
+        ArticleIndex index = new ArticleIndex();
+        index.add(articles.get(0));
+
+        assertTrue(articles.get(0).isUndecoded());
+        assertArrayEquals(new int[]{0}, index.search("cafe"));
+        assertArrayEquals(new int[]{0}, index.search("data hern"));
+        assertArrayEquals(new int[0], index.search("strong"));
+    }
+
+    @Test
+    public void search_takesWellUnderAFrameForThousandsOfArticles() {
+        ArticleIndex index = new ArticleIndex();
+        String[] words = {"robots", "coming", "jobs", "data", "privacy", "phone", "startup",
+                "raises", "millions", "launch", "zürich", "café"};
+        for (int i = 0; i < 5000; i++) {
+            index.add(article(words[i % words.length] + " headline " + i,
+                    "Author " + i % 50, words[(i * 7) % words.length] + " trail " + i));
+        }
+        // Warm the search up so class loading and compilation are not measured
+        for (int i = 0; i < 200; i++) {
+            index.search("rob da");
+        }
+
+        long start = System.nanoTime();
+        int queries = 0;
+        for (String query : new String[]{"r", "ro", "rob", "robots", "robots d", "robots data",
+                "1", "12", "123", "author 4"}) {
+            index.search(query);
+            queries++;
+        }
+        long micros = (System.nanoTime() - start) / 1000 / queries;
+        // A frame lasts 16 ms
+        assertTrue(micros + " us", micros < 4000);
+    }
+
+    private static Article article(String title, String author, String trail) {
+        return new Article("2018-08-22T10:15:30Z", "Technology", "", title,
+                author == null ? "" : author, trail,
+                "https://www.theguardian.com/technology/" + title.hashCode());
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for {@link ArticleParser} against a canned The Guardian search response.
+ */
+public class ArticleParserTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Test
+    public void parse_readsAllResults() throws IOException {
+        List<Article> articles = ArticleParser.parse(openResponse());
+
+        assertEquals(3, articles.size());
+
+        Article first = articles.get(0);
+        assertEquals("2018-08-22T10:15:30Z", first.getArticleDate());
+        assertEquals("Technology", first.getArticleSection());
+        assertEquals("https://media.guim.co.uk/b4a1/500.jpg", first.getThumbnailUrl());
+        assertEquals("Hackers accessing PayPal via voicemail? Security expert says it's possible",
+                first.getArticleTitle());
+        assertEquals("Alex Hern in Las Vegas", first.getArticleAuthor());
+        assertTrue(first.getArticleTrail().contains("decades,\n to access"));
+        assertEquals("https://www.theguardian.com/technology/2018/aug/22/hackers-paypal-voicemail",
+                first.getArticleUrl());
+    }
+
+    @Test
+    public void parse_decodesEscapesAndMultiByteCharacters() throws IOException {
+        Article second = ArticleParser.parse(openResponse()).get(1);
+
+        assertEquals("Streaming études – the \"quiet\" revolution", second.getArticleTitle());
+        assertEquals("<strong>Café</strong> culture meets the cloud – 🎧",
+                second.getArticleTrail());
+        // A JSON null byline and a missing thumbnail
+        assertEquals("", second.getArticleAuthor());
+        assertNull(second.getThumbnailUrl());
+    }
+
+    @Test
+    public void parse_leavesFieldsUndecodedUntilRead() throws IOException {
+        List<Article> articles = ArticleParser.parse(openResponse());
+        Article first = articles.get(0);
+        for (Article article : articles) {
+            assertTrue(article.isUndecoded());
+        }
+
+        // Passes over every article decode without keeping anything
+        assertEquals("Alex Hern in Las Vegas", first.decodeAuthor());
+        assertTrue(first.decodeTrail().contains("decades,\n to access"));
+        assertTrue(first.isUndecoded());
+
+        // Reading a field keeps it
+        String title = first.getArticleTitle();
+        assertFalse(first.isUndecoded());
+        assertSame(title, first.getArticleTitle());
+        assertTrue(articles.get(1).isUndecoded());
+    }
+
+    @Test
+    public void parse_lazyArticlesEqualTheirDecodedCopies() throws IOException {
+        Article lazy = ArticleParser.parse(openResponse()).get(1);
+        Article decoded = new Article(lazy.getPublishedMillis(), lazy.getArticleSection(),
+                lazy.getThumbnailUrl(), lazy.decodeTitle(), lazy.decodeAuthor(),
+                lazy.decodeTrail(), lazy.getArticleUrl());
+
+        assertEquals(decoded, lazy);
+        assertEquals(lazy, decoded);
+        assertEquals(decoded.hashCode(), lazy.hashCode());
+        assertEquals(ArticleParser.parse(openResponse()).get(1), lazy);
+        assertTrue(lazy.isUndecoded());
+    }
+
+    @Test
+    public void nextRawString_copiesValuesSplitAcrossReads() throws IOException {
+        String json = "[\"plain\", \"a \\\"quoted\\\" \\u00e9t\u00e9 \\\\ caf\u00e9 \\n\","
+                + " null, 42]";
+        // A buffer of a few bytes splits every value, and its escapes, across reads
+        JsonPullParser parser = new JsonPullParser(
+                new ByteArrayInputStream(json.getBytes(UTF_8)), new byte[3]);
+        JsonPullParser.RawBuffer raw = new JsonPullParser.RawBuffer();
+        int[] ends = new int[4];
+
+        parser.beginArray();
+        for (int i = 0; i < ends.length; i++) {
+            parser.nextRawString(raw);
+            ends[i] = raw.size();
+        }
+        parser.endArray();
+        byte[] bytes = new byte[raw.size()];
+        raw.copyTo(0, raw.size(), bytes, 0);
+
+        assertEquals("plain", JsonPullParser.decodeRaw(bytes, 0, ends[0]));
+        assertEquals("a \"quoted\" \u00e9t\u00e9 \\ caf\u00e9 \n",
+                JsonPullParser.decodeRaw(bytes, ends[0], ends[1]));
+        assertEquals(ends[1], ends[2]);
+        assertEquals("42", JsonPullParser.decodeRaw(bytes, ends[2], ends[3]));
+    }
+
+    @Test
+    public void parse_allocatesLessThanDecodingEveryField() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        long thread = Thread.currentThread().getId();
+        byte[] body = largeResponse(200);
+        // Warm both paths up so class loading is not measured
+        for (int i = 0; i < 20; i++) {
+            readEveryField(ArticleParser.parse(new ByteArrayInputStream(body)));
+        }
+
+        long start = threads.getThreadAllocatedBytes(thread);
+        List<Article> articles = ArticleParser.parse(new ByteArrayInputStream(body));
+        long parsed = threads.getThreadAllocatedBytes(thread) - start;
+        // Only the rows of a screen are shown
+        for (int i = 0; i < 8; i++) {
+            articles.get(i).getArticleTrail();
+        }
+        long shown = threads.getThreadAllocatedBytes(thread) - start;
+        readEveryField(articles);
+        long everything = threads.getThreadAllocatedBytes(thread) - start;
+
+        // Showing a screen decodes the fields of its rows only
+        assertTrue(parsed + " > " + shown, parsed <= shown);
+        assertTrue(shown + " >= " + everything + " * 3 / 4", shown < everything * 3 / 4);
+    }
+
+    @Test
+    public void parse_emitsArticlesBeforeTheStreamEnds() throws IOException {
+        final byte[] json = readResponse();
+        final int[] bytesServed = new int[1];
+        final List<Integer> servedAtArticle = new ArrayList<>();
+
+        // Serve the response a few bytes at a time, the way it arrives from the network
+        InputStream trickle = new FilterInputStream(new ByteArrayInputStream(json)) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int count = super.read(b, off, Math.min(len, 64));
+                if (count > 0) {
+                    bytesServed[0] += count;
+                }
+                return count;
+            }
+        };
+
+        ArticleParser.parse(trickle, new ArticleParser.OnArticleParsedListener() {
+            @Override
+            public void onArticleParsed(Article article) {
+                servedAtArticle.add(bytesServed[0]);
+            }
+        }, new ArrayList<Article>());
+
+        assertEquals(3, servedAtArticle.size());
+        assertTrue(servedAtArticle.get(0) < servedAtArticle.get(1));
+        assertTrue(servedAtArticle.get(1) < json.length);
+    }
+
+    @Test
+    public void parse_keepsArticlesReadBeforeATruncation() throws IOException {
+        byte[] json = readResponse();
+        String text = new String(json, UTF_8);
+        int cut = text.indexOf("\"Opinion\"");
+        List<Article> articles = new ArrayList<>();
+
+        try {
+            ArticleParser.parse(new ByteArrayInputStream(text.substring(0, cut).getBytes(UTF_8)),
+                    null, articles);
+            fail("Expected a truncated response to fail");
+        } catch (IOException expected) {
+            assertEquals(2, articles.size());
+        }
+    }
+
+    @Test
+    public void parse_emptyResults() throws IOException {
+        String json = "{\"response\":{\"status\":\"ok\",\"results\":[]}}";
+
+        assertEquals(0, ArticleParser.parse(new ByteArrayInputStream(json.getBytes(UTF_8))).size());
+    }
+
+    private static void readEveryField(List<Article> articles) {
+        for (Article article : articles) {
+            article.getArticleTitle();
+            article.getArticleAuthor();
+            article.getArticleTrail();
+        }
+    }
+
+    private static byte[] largeResponse(int count) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"webPublicationDate\":\"2018-08-22T10:15:30Z\",")
+                    .append("\"sectionName\":\"Technology\",")
+                    .append("\"webUrl\":\"https://www.theguardian.com/technology/").append(i)
+                    .append("\",\"fields\":{\"headline\":\"A headline of a usual length, number ")
+                    .append(i).append("\",\"byline\":\"Alex Hern\",\"trailText\":\"");
+            for (int word = 0; word < 40; word++) {
+                json.append("trail ");
+            }
+            json.append("\"}}");
+        }
+        return json.append("]}}").toString().getBytes(UTF_8);
+    }
+
+    private InputStream openResponse() {
+        return getClass().getClassLoader().getResourceAsStream("guardian_search.json");
+    }
+
+    private byte[] readResponse() throws IOException {
+        InputStream in = openResponse();
+        byte[] buffer = new byte[64 * 1024];
+        int length = 0;
+        int count;
+        while ((count = in.read(buffer, length, buffer.length - length)) != -1) {
+            length += count;
+        }
+        in.close();
+        byte[] json = new byte[length];
+        System.arraycopy(buffer, 0, json, 0, length);
+        return json;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ArticleStore} and the compact form of {@link Article}.
+ */
+public class ArticleStoreTest {
+
+    // Approximate sizes on ART, whose Strings hold their chars inline at two bytes each
+    private static final int OBJECT_HEADER = 8;
+    private static final int REFERENCE = 4;
+    private static final int STRING_OBJECT = 16;
+    private static final int ARRAY_HEADER = 12;
+
+    private static final String[] SECTIONS = {"Technology", "Science", "Opinion", "Music", "Sport"};
+    private static final String[] AUTHORS = {"Alex Hern", "Jane Doe", "John Smith", "Kari Paul"};
+
+    @Test
+    public void article_sharesRepeatedValues() {
+        Article first = newArticle(1);
+        Article second = newArticle(1 + SECTIONS.length * AUTHORS.length);
+
+        assertSame(first.getArticleSection(), second.getArticleSection());
+        assertSame(first.getArticleAuthor(), second.getArticleAuthor());
+    }
+
+    @Test
+    public void article_restoresUrlsAndDates() {
+        Article article = new Article("2018-08-22T10:15:30Z", "Technology",
+                "https://media.guim.co.uk/b4a1/500.jpg", "Title", "Alex Hern", "Trail",
+                "https://www.theguardian.com/technology/2018/aug/22/hackers");
+
+        assertEquals("https://www.theguardian.com/technology/2018/aug/22/hackers",
+                article.getArticleUrl());
+        assertEquals("https://media.guim.co.uk/b4a1/500.jpg", article.getThumbnailUrl());
+        assertEquals("2018-08-22T10:15:30Z", article.getArticleDate());
+        assertEquals(1534932930000L, article.getPublishedMillis());
+    }
+
+    @Test
+    public void article_withoutThumbnailOrDate() {
+        Article article = new Article("", "Technology", "", "Title", "", "Trail",
+                "https://www.theguardian.com/a");
+
+        assertNull(article.getThumbnailUrl());
+        assertTrue(!article.hasThumbnail());
+        assertEquals(ArticleStore.NO_DATE, article.getPublishedMillis());
+        assertEquals("", article.getArticleDate());
+    }
+
+    @Test
+    public void parseDate_roundTripsAcrossYears() {
+        String[] dates = {"1970-01-01T00:00:00Z", "2000-02-29T23:59:59Z", "2018-12-31T12:00:01Z",
+                "2024-03-01T00:00:00Z", "1969-12-31T23:59:59Z"};
+        for (String date : dates) {
+            assertEquals(date, ArticleStore.formatDate(ArticleStore.parseDate(date)));
+        }
+        assertEquals(-1000L, ArticleStore.parseDate("1969-12-31T23:59:59Z"));
+        assertEquals(ArticleStore.NO_DATE, ArticleStore.parseDate("yesterday"));
+    }
+
+    @Test
+    public void footprint_isSmallerThanPlainStrings() throws IOException, IllegalAccessException {
+        // Articles as the parser builds them, from five pages of 200 results
+        List<Article> articles = new ArrayList<>();
+        for (int page = 1; page <= 5; page++) {
+            articles.addAll(ArticleParser.parse(new ByteArrayInputStream(
+                    GuardianFixtures.searchResponse(200, page, GuardianFixtures.TRAIL_WORDS))));
+        }
+        long compactBytes = retainedSize(articles);
+        long plainBytes = 0;
+        for (Article article : articles) {
+            // The same article as seven separate Strings, the way it used to be held. The
+            // fields are decoded without being kept, so the articles stay as they were measured
+            plainBytes += align(OBJECT_HEADER + 7 * REFERENCE)
+                    + stringSize(article.getArticleDate())
+                    + stringSize(article.getArticleSection())
+                    + stringSize(article.getThumbnailUrl())
+                    + stringSize(article.decodeTitle())
+                    + stringSize(article.decodeAuthor())
+                    + stringSize(article.decodeTrail())
+                    + stringSize(article.getArticleUrl());
+            assertTrue(article.isUndecoded());
+        }
+
+        long perArticle = compactBytes / articles.size();
+        long plainPerArticle = plainBytes / articles.size();
+
+        assertTrue("Expected " + perArticle + " to be below " + plainPerArticle,
+                perArticle < plainPerArticle * 3 / 4);
+    }
+
+    @Test
+    public void hashCode_followsTheUrl() {
+        Article article = newArticle(1);
+        Article sameUrl = new Article("2018-08-01T00:00:00Z", "Sport", "", "Other title", "",
+                "", article.getArticleUrl());
+
+        assertEquals(article.hashCode(), sameUrl.hashCode());
+        assertEquals(article, newArticle(1));
+        assertEquals(article.hashCode(), newArticle(1).hashCode());
+    }
+
+    private static Article newArticle(int i) {
+        // New String instances, the way the parser produces them
+        String section = new String(SECTIONS[i % SECTIONS.length]);
+        String author = new String(AUTHORS[i % AUTHORS.length]);
+        String day = String.valueOf(10 + i % 20);
+        return new Article("2018-08-" + day + "T10:15:30Z", section,
+                "https://i.guim.co.uk/img/media/" + Integer.toHexString(i * 7919) + "/500.jpg",
+                "Headline number " + i, author, "Short trail " + i,
+                "https://www.theguardian.com/" + section.toLowerCase() + "/2018/aug/" + day
+                        + "/story-" + i);
+    }
+
+    /**
+     * Sums the size of the articles and of every distinct String and array their fields hold
+     */
+    private static long retainedSize(List<Article> articles) throws IllegalAccessException {
+        Map<Object, Boolean> seen = new IdentityHashMap<>();
+        long size = 0;
+        for (Article article : articles) {
+            long fields = 0;
+            for (Field field : Article.class.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Class<?> type = field.getType();
+                if (type.isPrimitive()) {
+                    fields += primitiveSize(type);
+                    continue;
+                }
+                fields += REFERENCE;
+                field.setAccessible(true);
+                Object value = field.get(article);
+                if (value == null || seen.put(value, Boolean.TRUE) != null) {
+                    continue;
+                }
+                if (value instanceof String) {
+                    size += stringSize((String) value);
+                } else if (type.isArray()) {
+                    size += align(ARRAY_HEADER + (long) Array.getLength(value)
+                            * primitiveSize(type.getComponentType()));
+                } else {
+                    throw new AssertionError("Unexpected field " + field);
+                }
+            }
+            size += align(OBJECT_HEADER + fields);
+        }
+        return size;
+    }
+
+    private static long stringSize(String value) {
+        return value == null ? 0 : align(STRING_OBJECT + 2L * value.length());
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        }
+        if (type == int.class || type == float.class) {
+            return 4;
+        }
+        if (type == short.class || type == char.class) {
+            return 2;
+        }
+        if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        // An array of references
+        return REFERENCE;
+    }
+
+    /**
+     * @return the size rounded up to the 8 bytes objects are aligned on
+     */
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,231 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ArticleWindow}.
+ */
+public class ArticleWindowTest {
+
+    // Constant value for the size of the pages appended
+    private static final int PAGE_SIZE = 200;
+
+    // Writes the chunks on the thread of the test
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // Number of rows formatted by the window
+    private int mFormatted;
+    private final ArticleWindow.RowFormatter mFormatter = new ArticleWindow.RowFormatter() {
+        @Override
+        public ArticleRow format(Article article) {
+            mFormatted++;
+            return row(article);
+        }
+    };
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("window", "");
+        mDirectory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void get_returnsTheRowsAppendedAcrossPages() {
+        ArticleWindow window = new ArticleWindow(mDirectory, mFormatter, DIRECT);
+        List<ArticleRow> first = rows(0, 150);
+        List<ArticleRow> second = rows(150, 30);
+        window.addAll(first);
+        window.addAll(second);
+
+        assertEquals(180, window.size());
+        assertSame(first.get(0), window.get(0));
+        assertSame(second.get(29), window.get(179));
+        assertEquals(article(160), window.getArticle(160));
+        assertEquals(0, mFormatted);
+    }
+
+    @Test
+    public void rowsAndOpenChunksStayBoundedWhateverTheNumberOfArticles() {
+        ArticleWindow window = new ArticleWindow(mDirectory, mFormatter, DIRECT);
+        for (int start = 0; start < 5000; start += PAGE_SIZE) {
+            window.addAll(rows(start, PAGE_SIZE));
+            assertTrue(window.getRowCount() <= ArticleWindow.CAPACITY);
+            assertTrue(window.getChunksInMemory() <= ArticleWindow.OPEN_CHUNKS);
+        }
+        // Scroll back up through every row, and down again
+        for (int position = 4999; position >= 0; position--) {
+            assertEquals(article(position), window.get(position).getArticle());
+        }
+        for (int position = 0; position < 5000; position++) {
+            assertEquals(article(position), window.get(position).getArticle());
+        }
+
+        assertEquals(5000, window.size());
+        assertTrue(window.getRowCount() <= ArticleWindow.CAPACITY);
+        assertTrue(window.getChunksInMemory() <= ArticleWindow.OPEN_CHUNKS);
+    }
+
+    @Test
+    public void get_readsTheArticlesLeftBackFromTheirFile() {
+        ArticleWindow window = new ArticleWindow(mDirectory, mFormatter, DIRECT);
+        for (int start = 0; start < 1000; start += PAGE_SIZE) {
+            window.addAll(rows(start, PAGE_SIZE));
+        }
+
+        ArticleRow row = window.get(0);
+        Article article = row.getArticle();
+        // The rest of the block of the row and the next block are formatted ahead
+        assertEquals(2 * ArticleWindow.FORMAT_BLOCK, mFormatted);
+        assertEquals(article(0), article);
+        assertEquals("Author 0", article.getArticleAuthor());
+        assertEquals("<p>Trail 0</p>", article.getArticleTrail());
+        assertEquals(article(0).getPublishedMillis(), article.getPublishedMillis());
+        // A row is only formatted again once it is not kept anymore
+        assertSame(row, window.get(0));
+        assertEquals(2 * ArticleWindow.FORMAT_BLOCK, mFormatted);
+    }
+
+    @Test
+    public void get_formatsTheRowsAroundTheOneReadInTheBackground() {
+        QueuedExecutor executor = new QueuedExecutor();
+        ArticleWindow window = new ArticleWindow(mDirectory, mFormatter, executor);
+        for (int start = 0; start < 1000; start += PAGE_SIZE) {
+            window.addAll(rows(start, PAGE_SIZE));
+        }
+        executor.runAll();
+
+        // Only the row read is formatted on the thread reading it
+        assertEquals(article(500), window.get(500).getArticle());
+        assertEquals(1, mFormatted);
+        executor.runAll();
+        assertEquals(3 * ArticleWindow.FORMAT_BLOCK, mFormatted);
+
+        // The rows around it are then read without being formatted again
+        for (int position = 480; position < 540; position++) {
+            assertEquals(article(position), window.get(position).getArticle());
+        }
+        assertEquals(3 * ArticleWindow.FORMAT_BLOCK, mFormatted);
+    }
+
+    @Test
+    public void search_findsTheRowsOnceTheyAreIndexedInTheBackground() {
+        QueuedExecutor executor = new QueuedExecutor();
+        ArticleWindow window = new ArticleWindow(mDirectory, mFormatter, executor);
+        final int[] indexed = {0};
+        window.setOnIndexedListener(new Runnable() {
+            @Override
+            public void run() {
+                indexed[0]++;
+            }
+        });
+        window.addAll(rows(0, 150));
+        assertEquals(0, window.getIndexedCount());
+        assertEquals(0, window.search("title 42").length);
+
+        executor.runAll();
+        assertEquals(150, window.getIndexedCount());
+        // Once for each chunk
+        assertEquals(2, indexed[0]);
+        assertArrayEquals(new int[]{42}, window.search("title 42"));
+
+        window.clear();
+        assertEquals(0, window.getIndexedCount());
+    }
+
+    @Test
+    public void clear_deletesTheFilesOfTheChunks() {
+        ArticleWindow window = new ArticleWindow(mDirectory, mFormatter, DIRECT);
+        for (int start = 0; start < 1000; start += PAGE_SIZE) {
+            window.addAll(rows(start, PAGE_SIZE));
+        }
+        assertTrue(mDirectory.list().length > 0);
+
+        window.clear();
+        assertEquals(0, window.size());
+        assertEquals(0, window.getRowCount());
+        assertEquals(0, mDirectory.list().length);
+
+        window.addAll(rows(0, 10));
+        assertEquals(article(9), window.get(9).getArticle());
+    }
+
+    @Test
+    public void select_readsTheRowsAtThePositions() {
+        ArticleWindow window = new ArticleWindow(mDirectory, mFormatter, DIRECT);
+        window.addAll(rows(0, 50));
+
+        List<ArticleRow> selected = window.select(new int[]{3, 40});
+        assertEquals(2, selected.size());
+        assertSame(window.get(3), selected.get(0));
+        assertSame(window.get(40), selected.get(1));
+    }
+
+    /**
+     * Runs the background tasks of a window only when asked to
+     */
+    private static final class QueuedExecutor implements Executor {
+
+        private final List<Runnable> mTasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            mTasks.add(command);
+        }
+
+        void runAll() {
+            while (!mTasks.isEmpty()) {
+                mTasks.remove(0).run();
+            }
+        }
+    }
+
+    private static List<ArticleRow> rows(int start, int count) {
+        List<ArticleRow> rows = new ArrayList<>();
+        for (int i = start; i < start + count; i++) {
+            rows.add(row(article(i)));
+        }
+        return rows;
+    }
+
+    private static ArticleRow row(Article article) {
+        return new ArticleRow(article, article.getArticleSection() + " / ", "Aug 22, 2018", null,
+                "", 0);
+    }
+
+    private static Article article(int i) {
+        return new Article("2018-08-22T10:15:30Z", i % 2 == 0 ? "Technology" : "Science",
+                "https://media.guim.co.uk/" + i + ".jpg", "Title " + i, "Author " + i,
+                "<p>Trail " + i + "</p>", "https://www.theguardian.com/technology/" + i);
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link BufferPool} and the pooled reading of responses.
+ */
+public class BufferPoolTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Constant value for the number of responses read to measure the allocations
+    private static final int RESPONSES = 200;
+
+    @Test
+    public void sizeFor_holdsTheWholeResponseWithinBounds() {
+        assertEquals(BufferPool.DEFAULT_SIZE, BufferPool.sizeFor(-1));
+        assertEquals(BufferPool.MIN_SIZE, BufferPool.sizeFor(100));
+        assertEquals(8 * 1024, BufferPool.sizeFor(5000));
+        assertEquals(8 * 1024, BufferPool.sizeFor(8 * 1024));
+        assertEquals(16 * 1024, BufferPool.sizeFor(8 * 1024 + 1));
+        assertEquals(BufferPool.MAX_SIZE, BufferPool.sizeFor(1024 * 1024));
+    }
+
+    @Test
+    public void acquire_reusesReleasedBuffersOfTheSameSize() {
+        BufferPool pool = new BufferPool();
+        byte[] small = pool.acquire(100);
+        byte[] large = pool.acquire(50000);
+        pool.release(small);
+        pool.release(large);
+
+        assertSame(small, pool.acquire(200));
+        assertSame(large, pool.acquire(40000));
+        // A buffer of another size is never handed out instead
+        assertNotSame(small, pool.acquire(-1));
+        assertEquals(3, pool.getAllocationCount());
+        assertEquals(2, pool.getReuseCount());
+    }
+
+    @Test
+    public void release_ignoresBuffersNotFromAPool() {
+        BufferPool pool = new BufferPool();
+        pool.release(new byte[1000]);
+        pool.release(new byte[5000]);
+
+        assertEquals(BufferPool.MIN_SIZE, pool.acquire(100).length);
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    public void parse_allocatesNoBufferOnceWarm() throws IOException {
+        byte[] body = response(10);
+        BufferPool pool = BufferPool.getInstance();
+        parsePooled(body);
+        long allocations = pool.getAllocationCount();
+
+        for (int i = 0; i < RESPONSES; i++) {
+            assertEquals(10, parsePooled(body).size());
+        }
+
+        assertEquals(allocations, pool.getAllocationCount());
+    }
+
+    @Test
+    public void parse_allocatesLessPerResponseThanReadingLines() throws IOException {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        long thread = Thread.currentThread().getId();
+        byte[] body = response(10);
+        // Warm both paths up so class loading is not measured
+        for (int i = 0; i < RESPONSES; i++) {
+            parsePooled(body);
+            parseLines(body);
+        }
+
+        long start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < RESPONSES; i++) {
+            parsePooled(body);
+        }
+        long pooled = (threads.getThreadAllocatedBytes(thread) - start) / RESPONSES;
+        start = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < RESPONSES; i++) {
+            parseLines(body);
+        }
+        long lines = (threads.getThreadAllocatedBytes(thread) - start) / RESPONSES;
+
+        assertTrue(pooled + " >= " + lines + " / 2", pooled < lines / 2);
+    }
+
+    /**
+     * Reads a response the way loads do, straight from the stream through a pooled buffer
+     */
+    private static List<Article> parsePooled(byte[] body) throws IOException {
+        List<Article> articles = new ArrayList<>();
+        ArticleParser.parse(new ByteArrayInputStream(body), null, articles, null, body.length);
+        return articles;
+    }
+
+    /**
+     * Reads a response the way loads used to, decoding it line by line into a String first
+     */
+    private static List<Article> parseLines(byte[] body) throws IOException {
+        InputStream in = new ByteArrayInputStream(body);
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, UTF_8));
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+        return QueryUtils.extractResponseFromJson(output.toString());
+    }
+
+    private static byte[] response(int count) {
+        StringBuilder json = new StringBuilder("{\"response\":{\"status\":\"ok\",\"results\":[\n");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(",\n");
+            }
+            json.append("{\"webPublicationDate\":\"2018-08-").append(10 + i)
+                    .append("T10:00:00Z\",\"sectionName\":\"Technology\",")
+                    .append("\"webUrl\":\"https://www.theguardian.com/technology/").append(i)
+                    .append("\",\"fields\":{\"headline\":\"Headline ").append(i)
+                    .append("\",\"trailText\":\"A trail long enough to look like a real one, ")
+                    .append("with a few more words in it\"}}");
+        }
+        return json.append("\n]}}").toString().getBytes(UTF_8);
+    }
+}
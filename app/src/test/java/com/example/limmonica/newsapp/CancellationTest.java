@@ -0,0 +1,188 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit tests for cancelling loads through {@link HttpClient.Cancellation}, against a local fake
+ * of The Guardian API which can be made to stall before answering.
+ */
+public class CancellationTest {
+
+    // Constant value for the time the server stalls, well beyond what a test should wait
+    private static final long STALL_MILLIS = 8000;
+    // Constant value for the time a cancelled load may take to stop
+    private static final long PROMPT_MILLIS = 2000;
+
+    private FakeGuardianServer mServer;
+    private final ScheduledExecutorService mCanceller = Executors.newSingleThreadScheduledExecutor();
+    private File mCacheDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new FakeGuardianServer();
+        mServer.start();
+
+        mCacheDirectory = File.createTempFile("http", "cache");
+        mCacheDirectory.delete();
+        DiskResponseCache.install(mCacheDirectory, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        mCanceller.shutdownNow();
+        mServer.stop();
+        File[] files = mCacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDirectory.delete();
+    }
+
+    @Test
+    public void fetch_cancelledWhileTheServerStallsStopsPromptly() {
+        mServer.setLatency(STALL_MILLIS, 0);
+        ResilientFetcher fetcher = newFetcher(3, 10);
+        HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        long aborted = HttpClient.getInstance().getAbortedCount();
+        cancelAfter(cancellation, 300);
+
+        long start = System.nanoTime();
+        List<Article> articles = fetcher.fetch(url("stall"), null, cancellation);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertNull(articles);
+        // The read blocked on the socket was aborted rather than waiting for the server
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < PROMPT_MILLIS);
+        assertEquals(aborted + 1, HttpClient.getInstance().getAbortedCount());
+        // A cancelled request is neither retried nor answered with a stored copy
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(1, fetcher.getCancelledCount());
+        assertEquals(0, fetcher.getFallbackCount());
+        assertEquals(CircuitBreaker.State.CLOSED, fetcher.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void fetch_cancelledWhileParsingStopsAtTheNextArticle() {
+        ResilientFetcher fetcher = newFetcher(3, 10);
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        final List<Article> parsed = new ArrayList<>();
+
+        List<Article> articles = fetcher.fetch(url("parse"),
+                new ArticleParser.OnArticleParsedListener() {
+                    @Override
+                    public void onArticleParsed(Article article) {
+                        parsed.add(article);
+                        cancellation.cancel();
+                    }
+                }, cancellation);
+
+        assertNull(articles);
+        assertEquals(1, parsed.size());
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(1, fetcher.getCancelledCount());
+    }
+
+    @Test
+    public void fetch_cancelledDuringTheBackoffStopsPromptly() {
+        mServer.setFailures(1, 0);
+        // The backoffs are random, with enough attempts one of them is still running when the
+        // request is cancelled
+        ResilientFetcher fetcher = newFetcher(100, STALL_MILLIS);
+        HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        cancelAfter(cancellation, 300);
+
+        long start = System.nanoTime();
+        assertNull(fetcher.fetch(url("backoff"), null, cancellation));
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < PROMPT_MILLIS);
+        assertEquals(1, fetcher.getCancelledCount());
+        assertEquals(0, fetcher.getFallbackCount());
+    }
+
+    @Test
+    public void fetch_cancelledBeforeStartingSendsNoRequest() {
+        ResilientFetcher fetcher = newFetcher(3, 10);
+        HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        cancellation.cancel();
+
+        assertNull(fetcher.fetch(url("early"), null, cancellation));
+        assertEquals(0, mServer.getRequestCount());
+    }
+
+    @Test
+    public void cancel_reachesTheRequestsMadeOnBehalfOfTheLoad() throws InterruptedException {
+        HttpClient.Cancellation load = new HttpClient.Cancellation();
+        HttpClient.Cancellation query = load.newChild();
+        assertTrue(!query.isCancelled());
+
+        load.cancel();
+
+        assertTrue(query.isCancelled());
+        assertTrue(load.newChild().isCancelled());
+        // A cancelled backoff does not wait at all
+        assertTrue(load.await(STALL_MILLIS));
+    }
+
+    @Test
+    public void parse_stopsAtTheNextArticleOnceCancelled() throws IOException {
+        byte[] json = GuardianFixtures.searchResponse(3);
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        List<Article> articles = new ArrayList<>();
+
+        try {
+            ArticleParser.parse(new ByteArrayInputStream(json),
+                    new ArticleParser.OnArticleParsedListener() {
+                        @Override
+                        public void onArticleParsed(Article article) {
+                            cancellation.cancel();
+                        }
+                    }, articles, cancellation);
+            fail("The parsing should have stopped");
+        } catch (InterruptedIOException e) {
+            assertEquals(1, articles.size());
+        }
+    }
+
+    private ResilientFetcher newFetcher(int maxAttempts, long backoffMillis) {
+        return new ResilientFetcher(maxAttempts, backoffMillis, backoffMillis, false,
+                new CircuitBreaker(maxAttempts + 1, 60000, CircuitBreaker.SYSTEM_CLOCK));
+    }
+
+    private void cancelAfter(final HttpClient.Cancellation cancellation, long millis) {
+        mCanceller.schedule(new Runnable() {
+            @Override
+            public void run() {
+                cancellation.cancel();
+            }
+        }, millis, TimeUnit.MILLISECONDS);
+    }
+
+    private URL url(String query) {
+        try {
+            return new URL(mServer.getSearchUrl() + "?q=" + query);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
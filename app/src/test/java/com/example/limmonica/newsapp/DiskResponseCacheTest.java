@@ -0,0 +1,196 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link DiskResponseCache}.
+ */
+public class DiskResponseCacheTest {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String URL_A =
+            "https://content.guardianapis.com/search?q=technology&page-size=10&api-key=one";
+    private static final String URL_B =
+            "https://content.guardianapis.com/search?q=science&page-size=10&api-key=one";
+
+    private File mDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mDirectory = File.createTempFile("http", "cache");
+        mDirectory.delete();
+        mDirectory.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDirectory.delete();
+    }
+
+    @Test
+    public void normalizeKey_sortsParametersAndStripsTheApiKey() {
+        assertEquals("https://content.guardianapis.com/search?page-size=10&q=technology",
+                DiskResponseCache.normalizeKey(URL_A));
+        assertEquals(DiskResponseCache.normalizeKey(URL_A), DiskResponseCache.normalizeKey(
+                "https://content.guardianapis.com/search?api-key=two&page-size=10&q=technology"));
+    }
+
+    @Test
+    public void store_keepsRevalidatableResponses() throws IOException {
+        DiskResponseCache cache = new DiskResponseCache(mDirectory, 1024);
+
+        write(cache, URL_A, "{\"a\":1}", "\"v1\"");
+        DiskResponseCache.Entry entry = cache.get(URL_A.replace("one", "two"));
+
+        assertNotNull(entry);
+        assertEquals("\"v1\"", entry.getEtag());
+        assertFalse(entry.isFresh());
+        assertEquals("{\"a\":1}", read(cache.openHit(entry)));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(7, cache.getBytesServed());
+    }
+
+    @Test
+    public void store_skipsResponsesWithoutValidators() throws IOException {
+        DiskResponseCache cache = new DiskResponseCache(mDirectory, 1024);
+
+        write(cache, URL_A, "{\"a\":1}", null);
+
+        assertNull(cache.get(URL_A));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void store_dropsUncommittedBodies() throws IOException {
+        DiskResponseCache cache = new DiskResponseCache(mDirectory, 1024);
+
+        DiskResponseCache.Writer writer = cache.store(URL_A,
+                new ByteArrayInputStream("{\"a\":".getBytes(UTF_8)), "\"v1\"", null, null);
+        read(writer);
+
+        assertNull(cache.get(URL_A));
+        assertEquals(0, mDirectory.listFiles().length);
+    }
+
+    @Test
+    public void trimToSize_evictsTheLeastRecentlyUsedEntry() throws IOException {
+        DiskResponseCache cache = new DiskResponseCache(mDirectory, 12);
+
+        write(cache, URL_A, "{\"a\":1}", "\"a\"");
+        write(cache, URL_B, "{\"b\":1}", "\"b\"");
+
+        assertNull(cache.get(URL_A));
+        assertNotNull(cache.get(URL_B));
+        assertEquals(7, cache.getSize());
+    }
+
+    @Test
+    public void load_restoresEntriesFromDisk() throws IOException {
+        write(new DiskResponseCache(mDirectory, 1024), URL_A, "{\"a\":1}", "\"v1\"");
+
+        DiskResponseCache reopened = new DiskResponseCache(mDirectory, 1024);
+
+        DiskResponseCache.Entry entry = reopened.get(URL_A);
+        assertNotNull(entry);
+        assertEquals("\"v1\"", entry.getEtag());
+        assertEquals(7, reopened.getSize());
+    }
+
+    @Test
+    public void store_honoursMaxAge() throws IOException {
+        DiskResponseCache cache = new DiskResponseCache(mDirectory, 1024);
+
+        DiskResponseCache.Writer writer = cache.store(URL_A,
+                new ByteArrayInputStream("{}".getBytes(UTF_8)), null, null, "public, max-age=60");
+        while (writer.read() != -1) {
+            // Read the whole body
+        }
+        writer.commit();
+        writer.close();
+
+        assertTrue(cache.get(URL_A).isFresh());
+    }
+
+    @Test
+    public void refresh_keepsARevalidatedEntryFresh() throws IOException {
+        DiskResponseCache cache = new DiskResponseCache(mDirectory, 1024);
+        write(cache, URL_A, "{\"a\":1}", "\"v1\"");
+        DiskResponseCache.Entry entry = cache.get(URL_A);
+        assertFalse(entry.isFresh());
+
+        cache.refresh(entry, null, "Wed, 22 Aug 2018 10:00:00 GMT", "max-age=60");
+
+        DiskResponseCache.Entry refreshed = cache.get(URL_A);
+        assertTrue(refreshed.isFresh());
+        assertEquals("\"v1\"", refreshed.getEtag());
+        assertEquals("Wed, 22 Aug 2018 10:00:00 GMT", refreshed.getLastModified());
+        assertEquals("{\"a\":1}", read(cache.openHit(refreshed)));
+        // The new freshness outlives the process
+        assertTrue(new DiskResponseCache(mDirectory, 1024).get(URL_A).isFresh());
+    }
+
+    @Test
+    public void close_leavesTheBodyOpenForTheResponseToDrain() throws IOException {
+        DiskResponseCache cache = new DiskResponseCache(mDirectory, 1024);
+        final boolean[] closed = {false};
+        InputStream body = new ByteArrayInputStream("{\"a\":1}".getBytes(UTF_8)) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        DiskResponseCache.Writer writer = cache.store(URL_A, body, "\"v1\"", null, null);
+        writer.read();
+        writer.close();
+
+        assertFalse(closed[0]);
+        assertEquals(6, body.available());
+        assertNull(cache.get(URL_A));
+    }
+
+    private static void write(DiskResponseCache cache, String url, String body, String etag)
+            throws IOException {
+        DiskResponseCache.Writer writer = cache.store(url,
+                new ByteArrayInputStream(body.getBytes(UTF_8)), etag, null, null);
+        try {
+            while (writer.read() != -1) {
+                // Read the whole body
+            }
+            writer.commit();
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        StringBuilder text = new StringBuilder();
+        int b;
+        while ((b = in.read()) != -1) {
+            text.append((char) b);
+        }
+        in.close();
+        return text.toString();
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.limmonica.newsapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A local stand-in for The Guardian /search endpoint, answering with synthetic results from
+ * {@link GuardianFixtures} so the whole fetch and parse path can be driven without the network
+ * or an API key, by the unit tests as well as by the load harness of the benchmark module.
+ * <p>
+ * The page and page-size query parameters are honoured as the real API does, with pages of at
+ * most {@link #MAX_PAGE_SIZE} results. On top of that the server can be made to answer slowly,
+ * to send its bodies at a limited rate, and to fail some requests outright or cut their body
+ * short, either at random or for the next few requests. Settings can be changed while the
+ * server runs.
+ */
+final class FakeGuardianServer {
+
+    // Constant value for the largest page the real API serves
+    static final int MAX_PAGE_SIZE = 200;
+    // Constant value for the page size when the request does not ask for one
+    private static final int DEFAULT_PAGE_SIZE = 10;
+    // Constant value for the size of the chunks a throttled body is sent in, in bytes
+    private static final int THROTTLE_CHUNK = 1024;
+    // Constant value for the number of encoded pages kept, so they are not built for every request
+    private static final int MAX_CACHED_BODIES = 64;
+
+    // The server
+    private final HttpServer mServer;
+    // The threads answering the requests
+    private final ExecutorService mExecutor = Executors.newCachedThreadPool();
+    // Decides which requests fail and how long they are delayed
+    private final Random mRandom = new Random();
+    // The bodies built so far, by page size, page and trail size
+    private final Map<String, byte[]> mBodies = new HashMap<>();
+
+    // Time every response is delayed by before its headers are sent, in milliseconds
+    private volatile long mLatencyMillis;
+    // Largest random time added to the delay, in milliseconds
+    private volatile long mJitterMillis;
+    // Rate the bodies are sent at, in bytes per second, or 0 for no limit
+    private volatile long mBytesPerSecond;
+    // Share of the requests answered with a server error
+    private volatile double mErrorRate;
+    // Share of the requests whose body is cut short
+    private volatile double mTruncateRate;
+    // Number of words of the trail of every result
+    private volatile int mTrailWords = GuardianFixtures.TRAIL_WORDS;
+    // Whether bodies are compressed for clients accepting gzip
+    private volatile boolean mGzip = true;
+    // ETag header of the responses, or null
+    private volatile String mEtag;
+    // Cache-Control header of the responses, or null
+    private volatile String mCacheControl;
+    // Status codes the next requests are answered with, one each, before the random failures
+    private final Queue<Integer> mScriptedStatuses = new ConcurrentLinkedQueue<>();
+    // Time the next request is delayed by on top of the latency, in milliseconds
+    private final AtomicLong mNextDelayMillis = new AtomicLong();
+    // The client ports the requests came from, one per connection
+    private final Set<Integer> mClientPorts = new HashSet<>();
+
+    // Number of requests received
+    private final AtomicLong mRequestCount = new AtomicLong();
+    // Number of requests answered with a server error
+    private final AtomicLong mErrorCount = new AtomicLong();
+    // Number of bodies cut short
+    private final AtomicLong mTruncatedCount = new AtomicLong();
+    // Number of body bytes sent
+    private final AtomicLong mBytesSent = new AtomicLong();
+    // Number of bodies sent compressed
+    private final AtomicLong mCompressedCount = new AtomicLong();
+
+    /**
+     * Creates a new {@link FakeGuardianServer} listening on a free local port. It answers once
+     * {@link #start()} has been called.
+     */
+    FakeGuardianServer() throws IOException {
+        // Otherwise the headers and body go out in two small writes, and Nagle's algorithm holds
+        // the body back until the client acknowledges the headers, which adds tens of
+        // milliseconds the real server does not
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        mServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        mServer.createContext("/search", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    answer(exchange);
+                } catch (IOException e) {
+                    // The client gave up on the request
+                } catch (InterruptedException e) {
+                    // The server is stopping
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        mServer.setExecutor(mExecutor);
+    }
+
+    /**
+     * Starts answering requests
+     */
+    void start() {
+        mServer.start();
+    }
+
+    /**
+     * Stops the server, dropping the requests in progress
+     */
+    void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return the url of the search endpoint, to which the query parameters are appended
+     */
+    String getSearchUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort() + "/search";
+    }
+
+    /**
+     * @param latencyMillis is the time every response is delayed by, in milliseconds
+     * @param jitterMillis  is the largest random time added to it, in milliseconds
+     */
+    void setLatency(long latencyMillis, long jitterMillis) {
+        mLatencyMillis = latencyMillis;
+        mJitterMillis = jitterMillis;
+    }
+
+    /**
+     * @param bytesPerSecond is the rate the bodies are sent at, or 0 for no limit
+     */
+    void setBandwidth(long bytesPerSecond) {
+        mBytesPerSecond = bytesPerSecond;
+    }
+
+    /**
+     * @param errorRate    is the share of the requests answered with a server error, from 0 to 1
+     * @param truncateRate is the share of the requests whose body is cut short, from 0 to 1
+     */
+    void setFailures(double errorRate, double truncateRate) {
+        mErrorRate = errorRate;
+        mTruncateRate = truncateRate;
+    }
+
+    /**
+     * @param trailWords is the number of words of the trail of every result, which sets the
+     *                   size of the results
+     */
+    void setTrailWords(int trailWords) {
+        mTrailWords = trailWords;
+    }
+
+    /**
+     * @param gzip is false to always send plain bodies
+     */
+    void setGzip(boolean gzip) {
+        mGzip = gzip;
+    }
+
+    /**
+     * @param etag         is the ETag header of the responses, or null to send none
+     * @param cacheControl is the Cache-Control header of the responses, or null to send none
+     */
+    void setCacheHeaders(String etag, String cacheControl) {
+        mEtag = etag;
+        mCacheControl = cacheControl;
+    }
+
+    /**
+     * Answers the next requests with the given status codes, one each and in order, whatever the
+     * failure rates. A code of 200 answers the request as usual.
+     *
+     * @param statuses are the status codes
+     */
+    void failNext(int... statuses) {
+        for (int status : statuses) {
+            mScriptedStatuses.add(status);
+        }
+    }
+
+    /**
+     * @param delayMillis is the time the next request is delayed by on top of the latency, in
+     *                    milliseconds
+     */
+    void delayNext(long delayMillis) {
+        mNextDelayMillis.set(delayMillis);
+    }
+
+    /**
+     * @return the number of requests received
+     */
+    long getRequestCount() {
+        return mRequestCount.get();
+    }
+
+    /**
+     * @return the number of requests answered with a server error
+     */
+    long getErrorCount() {
+        return mErrorCount.get();
+    }
+
+    /**
+     * @return the number of bodies cut short
+     */
+    long getTruncatedCount() {
+        return mTruncatedCount.get();
+    }
+
+    /**
+     * @return the number of body bytes sent, as they went on the wire
+     */
+    long getBytesSent() {
+        return mBytesSent.get();
+    }
+
+    /**
+     * @return the number of bodies sent compressed
+     */
+    long getCompressedCount() {
+        return mCompressedCount.get();
+    }
+
+    /**
+     * @return the number of connections the requests came over
+     */
+    int getConnectionCount() {
+        synchronized (mClientPorts) {
+            return mClientPorts.size();
+        }
+    }
+
+    /**
+     * Answers a search request
+     */
+    private void answer(HttpExchange exchange) throws IOException, InterruptedException {
+        mRequestCount.incrementAndGet();
+        synchronized (mClientPorts) {
+            mClientPorts.add(exchange.getRemoteAddress().getPort());
+        }
+        long delay = mLatencyMillis + mNextDelayMillis.getAndSet(0);
+        double failure;
+        synchronized (mRandom) {
+            if (mJitterMillis > 0) {
+                delay += (long) (mRandom.nextDouble() * mJitterMillis);
+            }
+            failure = mRandom.nextDouble();
+        }
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+        Integer scripted = mScriptedStatuses.poll();
+        if (scripted != null && scripted != 200) {
+            if (scripted >= 500) {
+                mErrorCount.incrementAndGet();
+            }
+            exchange.sendResponseHeaders(scripted, -1);
+            return;
+        }
+        if (scripted == null && failure < mErrorRate) {
+            mErrorCount.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            return;
+        }
+
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int pageSize = Math.min(parseInt(query.get("page-size"), DEFAULT_PAGE_SIZE),
+                MAX_PAGE_SIZE);
+        int page = parseInt(query.get("page"), 1);
+        if (pageSize < 1 || page < 1) {
+            exchange.sendResponseHeaders(400, -1);
+            return;
+        }
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        boolean gzip = mGzip && acceptEncoding != null && acceptEncoding.contains("gzip");
+        byte[] body = body(pageSize, page, mTrailWords, gzip);
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (gzip) {
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            mCompressedCount.incrementAndGet();
+        }
+        String etag = mEtag;
+        if (etag != null) {
+            exchange.getResponseHeaders().set("ETag", etag);
+        }
+        String cacheControl = mCacheControl;
+        if (cacheControl != null) {
+            exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        int length = body.length;
+        if (scripted == null && failure < mErrorRate + mTruncateRate) {
+            // The promised length is not met, as when a connection drops mid-response
+            mTruncatedCount.incrementAndGet();
+            length /= 2;
+        }
+        send(exchange.getResponseBody(), body, length);
+    }
+
+    /**
+     * Writes the first bytes of a body, no faster than the bandwidth allows
+     */
+    private void send(OutputStream out, byte[] body, int length)
+            throws IOException, InterruptedException {
+        long bytesPerSecond = mBytesPerSecond;
+        if (bytesPerSecond <= 0) {
+            out.write(body, 0, length);
+            mBytesSent.addAndGet(length);
+            out.flush();
+            return;
+        }
+        long start = System.nanoTime();
+        for (int offset = 0; offset < length; offset += THROTTLE_CHUNK) {
+            int count = Math.min(THROTTLE_CHUNK, length - offset);
+            out.write(body, offset, count);
+            out.flush();
+            mBytesSent.addAndGet(count);
+            // Sleep until the bytes sent so far are due, so the rate holds over the whole body
+            long dueNanos = TimeUnit.SECONDS.toNanos(offset + count) / bytesPerSecond;
+            long aheadNanos = dueNanos - (System.nanoTime() - start);
+            if (aheadNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(aheadNanos);
+            }
+        }
+    }
+
+    /**
+     * @return the body of the given page, encoded once and then kept
+     */
+    private byte[] body(int pageSize, int page, int trailWords, boolean gzip) throws IOException {
+        String key = pageSize + "/" + page + "/" + trailWords + "/" + gzip;
+        synchronized (mBodies) {
+            byte[] body = mBodies.get(key);
+            if (body != null) {
+                return body;
+            }
+        }
+        byte[] body = GuardianFixtures.searchResponse(pageSize, page, trailWords);
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+            GZIPOutputStream out = new GZIPOutputStream(compressed);
+            out.write(body);
+            out.close();
+            body = compressed.toByteArray();
+        }
+        synchronized (mBodies) {
+            if (mBodies.size() >= MAX_CACHED_BODIES) {
+                mBodies.clear();
+            }
+            mBodies.put(key, body);
+        }
+        return body;
+    }
+
+    /**
+     * @return the parameters of a raw query string
+     */
+    private static Map<String, String> parseQuery(String rawQuery) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        if (rawQuery == null) {
+            return parameters;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * @return the number in the given string, or the default value if there is none
+     */
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link FanOutFetcher}.
+ */
+public class FanOutFetcherTest {
+
+    // Constant value for the delay of a slow query, in milliseconds
+    private static final long SLOW_QUERY = 300;
+
+    private final LoadExecutor mExecutor = new LoadExecutor(4, null);
+
+    @Test
+    public void merge_ordersByDateAndDropsDuplicates() {
+        List<Article> technology = Arrays.asList(article("a", 9), article("c", 5), article("e", 1));
+        List<Article> science = Arrays.asList(article("b", 8), article("c", 5), article("d", 2));
+
+        List<Article> merged = FanOutFetcher.merge(
+                Arrays.asList(technology, science), FanOutFetcher.NEWEST_FIRST);
+
+        assertEquals("[a, b, c, d, e]", titles(merged));
+    }
+
+    @Test
+    public void merge_sortsListsNotInOrder() {
+        // Lists ordered by relevance come back in no particular date order
+        List<Article> relevance = Arrays.asList(article("b", 2), article("a", 7), article("c", 1));
+        List<Article> other = Collections.singletonList(article("d", 5));
+
+        assertEquals("[c, b, d, a]", titles(FanOutFetcher.merge(
+                Arrays.asList(relevance, other), FanOutFetcher.OLDEST_FIRST)));
+    }
+
+    @Test
+    public void fetchAll_runsQueriesInParallel() {
+        Map<String, List<Article>> responses = new HashMap<>();
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            queries.add("slow" + i);
+            responses.put("slow" + i, Collections.singletonList(article("slow" + i, i + 1)));
+        }
+        FanOutFetcher fetcher = new FanOutFetcher(new DelayedFetcher(responses), mExecutor, false);
+
+        long start = System.nanoTime();
+        List<Article> merged = fetcher.fetchAll(queries, null);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals("[slow3, slow2, slow1, slow0]", titles(merged));
+        // One after the other the queries would take four times as long
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 2 * SLOW_QUERY);
+    }
+
+    @Test
+    public void fetchAll_deliversFastestQueriesFirst() {
+        Map<String, List<Article>> responses = new HashMap<>();
+        responses.put("fast", Collections.singletonList(article("fast", 1)));
+        responses.put("slow0", Collections.singletonList(article("slow0", 2)));
+        FanOutFetcher fetcher = new FanOutFetcher(new DelayedFetcher(responses), mExecutor, false);
+        final List<String> batches = new ArrayList<>();
+
+        List<Article> merged = fetcher.fetchAll(Arrays.asList("slow0", "fast"),
+                new FanOutFetcher.OnBatchMergedListener() {
+                    @Override
+                    public void onBatchMerged(List<Article> articles, int finished, int total) {
+                        batches.add(finished + "/" + total + " " + titles(articles));
+                    }
+                });
+
+        assertEquals(Collections.singletonList("1/2 [fast]"), batches);
+        assertEquals("[slow0, fast]", titles(merged));
+    }
+
+    @Test
+    public void fetchAll_skipsFailedQueries() {
+        Map<String, List<Article>> responses = new HashMap<>();
+        responses.put("fast", Collections.singletonList(article("fast", 1)));
+        FanOutFetcher fetcher = new FanOutFetcher(new DelayedFetcher(responses), mExecutor, false);
+
+        assertEquals("[fast]", titles(fetcher.fetchAll(Arrays.asList("fast", "missing"), null)));
+        assertNull(fetcher.fetchAll(Collections.singletonList("missing"), null));
+    }
+
+    @Test
+    public void fetchAll_runsTheQueriesOfAVisibleLoadBeforeThoseOfAPrefetch()
+            throws InterruptedException {
+        LoadExecutor executor = new LoadExecutor(2, null);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocking = new CountDownLatch(2);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        FanOutFetcher.Fetcher fetcher = new BlockingFetcher(blocking, release, order);
+        Thread busy = fetchAllOnThread(new FanOutFetcher(fetcher, executor, false),
+                Arrays.asList("blocking0", "blocking1"));
+        assertTrue(blocking.await(1, TimeUnit.SECONDS));
+
+        Thread prefetch = fetchAllOnThread(new FanOutFetcher(fetcher, executor, false,
+                LoadExecutor.Priority.PREFETCH), Arrays.asList("next0", "next1"));
+        while (executor.getQueuedCount(LoadExecutor.Priority.PREFETCH) < 2) {
+            Thread.sleep(1);
+        }
+        Thread visible = fetchAllOnThread(new FanOutFetcher(fetcher, executor, false,
+                LoadExecutor.Priority.VISIBLE), Arrays.asList("refresh0", "refresh1"));
+        while (executor.getQueuedCount(LoadExecutor.Priority.VISIBLE) < 2) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+        busy.join(1000);
+        prefetch.join(1000);
+        visible.join(1000);
+
+        // The visible queries may run side by side, the prefetch ones run one at a time
+        assertEquals(new HashSet<>(Arrays.asList("refresh0", "refresh1")),
+                new HashSet<>(order.subList(0, 2)));
+        assertEquals(Arrays.asList("next0", "next1"), order.subList(2, 4));
+    }
+
+    @Test
+    public void fetchAll_keepsAThreadForAVisibleLoadWhileAPrefetchFillsThePool()
+            throws InterruptedException {
+        LoadExecutor executor = new LoadExecutor(4, null);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocking = new CountDownLatch(3);
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        FanOutFetcher.Fetcher fetcher = new BlockingFetcher(blocking, release, order);
+        Thread prefetch = fetchAllOnThread(new FanOutFetcher(fetcher, executor, false,
+                LoadExecutor.Priority.PREFETCH),
+                Arrays.asList("blocking0", "blocking1", "blocking2", "blocking3", "blocking4"));
+        assertTrue(blocking.await(1, TimeUnit.SECONDS));
+        assertEquals(3, executor.getRunningCount(LoadExecutor.Priority.PREFETCH));
+        assertEquals(2, executor.getQueuedCount(LoadExecutor.Priority.PREFETCH));
+
+        // The visible load runs on the last thread while the prefetch still holds the others
+        List<Article> visible = new FanOutFetcher(fetcher, executor, false)
+                .fetchAll(Collections.singletonList("refresh"), null);
+        assertEquals("[refresh]", titles(visible));
+        assertEquals(Collections.singletonList("refresh"), order);
+
+        release.countDown();
+        prefetch.join(1000);
+        assertFalse(prefetch.isAlive());
+    }
+
+    /**
+     * @return a started thread running the queries
+     */
+    private static Thread fetchAllOnThread(final FanOutFetcher fetcher, final List<String> urls) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fetcher.fetchAll(urls, null);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Holds the queries whose url starts with "blocking" until released, and records the order
+     * the other queries ran in
+     */
+    private static final class BlockingFetcher implements FanOutFetcher.Fetcher {
+
+        private final CountDownLatch mBlocking;
+        private final CountDownLatch mRelease;
+        private final List<String> mOrder;
+
+        BlockingFetcher(CountDownLatch blocking, CountDownLatch release, List<String> order) {
+            mBlocking = blocking;
+            mRelease = release;
+            mOrder = order;
+        }
+
+        @Override
+        public List<Article> fetch(String url) {
+            if (url.startsWith("blocking")) {
+                mBlocking.countDown();
+                try {
+                    mRelease.await();
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            } else {
+                mOrder.add(url);
+            }
+            return Collections.singletonList(article(url, 1));
+        }
+    }
+
+    /**
+     * Answers queries whose url starts with "slow" after a delay, and the others straight away
+     */
+    private static final class DelayedFetcher implements FanOutFetcher.Fetcher {
+
+        private final Map<String, List<Article>> mResponses;
+
+        DelayedFetcher(Map<String, List<Article>> responses) {
+            mResponses = responses;
+        }
+
+        @Override
+        public List<Article> fetch(String url) {
+            if (url.startsWith("slow")) {
+                try {
+                    Thread.sleep(SLOW_QUERY);
+                } catch (InterruptedException e) {
+                    return null;
+                }
+            }
+            return mResponses.get(url);
+        }
+    }
+
+    private static Article article(String name, int day) {
+        return new Article(String.format("2018-08-%02dT10:00:00Z", day), "Technology", null,
+                name, "", "", "https://www.theguardian.com/technology/" + name);
+    }
+
+    private static String titles(List<Article> articles) {
+        List<String> names = new ArrayList<>();
+        for (Article article : articles) {
+            names.add(article.getArticleTitle());
+        }
+        return names.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.limmonica.newsapp;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Generates The Guardian search responses of a given size, so every test and benchmark run
+ * parses the same bytes without going to the network.
+ */
+final class GuardianFixtures {
+
+    // Sections the generated articles are spread over, as they come back from the API
+    static final String[] SECTIONS = {"Technology", "World news", "Opinion", "Sport", "Film",
+            "Music", "Business", "Science", "Fashion", "Travel", "Money", "Media", "Games"};
+
+    // Constant value for the number of words of a trail, about as long as the real ones
+    static final int TRAIL_WORDS = 22;
+
+    // Constant value for the seed, so all runs see the same responses
+    private static final long SEED = 42L;
+    // Constant value for the number of pages a search is said to have
+    private static final int PAGES = 40;
+
+    // Words the headlines and trails are made of, a few of them outside of ASCII
+    private static final String[] WORDS = {"the", "robots", "are", "coming", "for", "café",
+            "jobs", "in", "Zürich", "data", "privacy", "and", "a", "new", "phone", "–", "why",
+            "it", "matters", "“now”", "startup", "raises", "millions", "after", "launch"};
+
+    private static final String[] AUTHORS = {"Alex Hern", "Samuel Gibbs", "Kari Paul",
+            "John Naughton", "Hannah Jane Parkinson", "Julia Carrie Wong"};
+
+    /**
+     * Create a private constructor because no one should ever create a {@link GuardianFixtures}
+     * object. This class is only meant to hold static methods.
+     */
+    private GuardianFixtures() {
+    }
+
+    /**
+     * Builds a search response holding the given number of articles.
+     *
+     * @param pageSize is the number of articles in response.results[]
+     * @return the UTF-8 encoded JSON response
+     */
+    static byte[] searchResponse(int pageSize) {
+        return searchResponse(pageSize, 1, TRAIL_WORDS);
+    }
+
+    /**
+     * Builds a page of a search response. Every page holds other articles, and the same page
+     * always holds the same ones.
+     *
+     * @param pageSize   is the number of articles in response.results[]
+     * @param page       is the number of the page, from 1
+     * @param trailWords is the number of words of each trail, which sets the size of a result
+     * @return the UTF-8 encoded JSON response
+     */
+    static byte[] searchResponse(int pageSize, int page, int trailWords) {
+        Random random = new Random(SEED + pageSize + (page - 1) * 1000003L);
+        StringBuilder json = new StringBuilder(pageSize * (800 + trailWords * 20));
+        json.append("{\"response\":{\"status\":\"ok\",\"userTier\":\"developer\",\"total\":")
+                .append(pageSize * PAGES)
+                .append(",\"startIndex\":").append((page - 1) * pageSize + 1)
+                .append(",\"pageSize\":").append(pageSize)
+                .append(",\"currentPage\":").append(page)
+                .append(",\"pages\":").append(PAGES)
+                .append(",\"orderBy\":\"newest\",\"results\":[");
+        for (int i = 0; i < pageSize; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String section = SECTIONS[random.nextInt(SECTIONS.length)];
+            String sectionId = section.toLowerCase().replace(' ', '-');
+            String slug = "article-" + i + "-" + Integer.toHexString(random.nextInt());
+            String path = sectionId + "/2018/aug/" + (10 + i % 20) + "/" + slug;
+            json.append("{\"id\":\"").append(path)
+                    .append("\",\"type\":\"article\",\"sectionId\":\"").append(sectionId)
+                    .append("\",\"sectionName\":\"").append(section)
+                    .append("\",\"webPublicationDate\":\"").append(date(random))
+                    .append("\",\"webTitle\":\"").append(words(random, 9))
+                    .append("\",\"webUrl\":\"https://www.theguardian.com/").append(path)
+                    .append("\",\"apiUrl\":\"https://content.guardianapis.com/").append(path)
+                    .append("\",\"fields\":{\"headline\":\"").append(words(random, 10))
+                    .append("\",\"trailText\":\"<strong>").append(words(random, 4))
+                    .append("</strong> ").append(words(random, trailWords))
+                    .append("\",\"byline\":");
+            if (random.nextInt(5) == 0) {
+                json.append("null");
+            } else {
+                json.append('"').append(AUTHORS[random.nextInt(AUTHORS.length)]).append('"');
+            }
+            if (random.nextInt(6) != 0) {
+                json.append(",\"thumbnail\":\"https://media.guim.co.uk/")
+                        .append(Integer.toHexString(random.nextInt()))
+                        .append("/0_0_3500_2100/500.jpg\"");
+            }
+            json.append("},\"isHosted\":false,\"pillarId\":\"pillar/news\",")
+                    .append("\"pillarName\":\"News\"}");
+        }
+        json.append("]}}");
+        return json.toString().getBytes(Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Builds the publishing dates of the given number of articles, in The Guardian format.
+     */
+    static String[] publicationDates(int count) {
+        Random random = new Random(SEED);
+        String[] dates = new String[count];
+        for (int i = 0; i < count; i++) {
+            dates[i] = date(random);
+        }
+        return dates;
+    }
+
+    /**
+     * Returns a publishing date in August 2018
+     */
+    private static String date(Random random) {
+        return String.format("2018-08-%02dT%02d:%02d:%02dZ", 1 + random.nextInt(31),
+                random.nextInt(24), random.nextInt(60), random.nextInt(60));
+    }
+
+    /**
+     * Returns a sentence of the given number of words
+     */
+    private static String words(Random random, int count) {
+        StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sentence.append(' ');
+            }
+            sentence.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link HttpClient} against a local fake of The Guardian API.
+ */
+public class HttpClientTest {
+
+    // Constant value for the number of articles of a response
+    private static final int PAGE_SIZE = 50;
+
+    private FakeGuardianServer mServer;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new FakeGuardianServer();
+        mServer.start();
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+    }
+
+    @Test
+    public void get_negotiatesGzipAndDecodesTheBody() throws IOException {
+        HttpClient client = HttpClient.getInstance();
+        long wireBefore = client.getWireBytes();
+        long decodedBefore = client.getDecodedBytes();
+
+        HttpClient.Response response = client.get(searchUrl());
+        List<Article> articles;
+        try {
+            articles = ArticleParser.parse(response.getBody());
+        } finally {
+            response.close();
+        }
+
+        byte[] body = GuardianFixtures.searchResponse(PAGE_SIZE);
+        List<Article> expected = ArticleParser.parse(new ByteArrayInputStream(body));
+        assertEquals(1, mServer.getCompressedCount());
+        assertEquals(PAGE_SIZE, articles.size());
+        assertEquals(expected.get(PAGE_SIZE - 1).getArticleTitle(),
+                articles.get(PAGE_SIZE - 1).getArticleTitle());
+        long wire = client.getWireBytes() - wireBefore;
+        long decoded = client.getDecodedBytes() - decodedBefore;
+        assertTrue(decoded >= body.length - 8);
+        assertTrue("Expected " + wire + " wire bytes to be fewer than " + decoded, wire < decoded);
+    }
+
+    @Test
+    public void get_reusesTheConnection() throws IOException {
+        HttpClient client = HttpClient.getInstance();
+
+        for (int i = 0; i < 3; i++) {
+            HttpClient.Response response = client.get(searchUrl());
+            InputStream body = response.getBody();
+            while (body.read() != -1) {
+                // Read the whole body
+            }
+            response.close();
+        }
+
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(1, mServer.getConnectionCount());
+    }
+
+    private URL searchUrl() throws IOException {
+        return new URL(mServer.getSearchUrl() + "?page-size=" + PAGE_SIZE);
+    }
+}
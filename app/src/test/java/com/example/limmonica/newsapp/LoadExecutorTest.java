@@ -0,0 +1,171 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LoadExecutor}.
+ */
+public class LoadExecutorTest {
+
+    // Constant value for the longest time a test waits for a task, in seconds
+    private static final int TIMEOUT_SECONDS = 5;
+
+    @Test
+    public void execute_runsAVisibleTaskWhileSpeculativeWorkHoldsTheOtherThreads()
+            throws InterruptedException {
+        LoadExecutor executor = new LoadExecutor(3, new LoadMetrics());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch speculativeStarted = new CountDownLatch(2);
+        executor.execute(block(speculativeStarted, release), LoadExecutor.Priority.PREFETCH);
+        executor.execute(block(speculativeStarted, release), LoadExecutor.Priority.BACKGROUND);
+        assertTrue(speculativeStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        executor.execute(block(null, release), LoadExecutor.Priority.PREFETCH);
+
+        // The last thread is kept for the visible task, which runs before the queued prefetch
+        CountDownLatch visibleRan = new CountDownLatch(1);
+        executor.execute(block(visibleRan, null), LoadExecutor.Priority.VISIBLE);
+        assertTrue(visibleRan.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(1, executor.getQueuedCount(LoadExecutor.Priority.PREFETCH));
+        assertEquals(1, executor.getRunningCount(LoadExecutor.Priority.PREFETCH));
+        assertEquals(1, executor.getRunningCount(LoadExecutor.Priority.BACKGROUND));
+        release.countDown();
+    }
+
+    @Test
+    public void execute_drainsTheLanesInTheOrderOfTheirPriority() throws InterruptedException {
+        LoadExecutor executor = new LoadExecutor(2, new LoadMetrics());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch blocking = new CountDownLatch(2);
+        executor.execute(block(blocking, release), LoadExecutor.Priority.VISIBLE);
+        executor.execute(block(blocking, release), LoadExecutor.Priority.VISIBLE);
+        assertTrue(blocking.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch done = new CountDownLatch(5);
+        executor.execute(record(order, "sync", done), LoadExecutor.Priority.BACKGROUND);
+        executor.execute(record(order, "next page", done), LoadExecutor.Priority.PREFETCH);
+        executor.execute(record(order, "page after", done), LoadExecutor.Priority.PREFETCH);
+        executor.execute(record(order, "refresh", done), LoadExecutor.Priority.VISIBLE);
+        executor.execute(record(order, "stored", done), LoadExecutor.Priority.VISIBLE);
+        release.countDown();
+
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        // The two visible tasks may run side by side, the speculative ones run one at a time
+        assertEquals(new HashSet<>(Arrays.asList("refresh", "stored")),
+                new HashSet<>(order.subList(0, 2)));
+        assertEquals(Arrays.asList("next page", "page after", "sync"), order.subList(2, 5));
+    }
+
+    @Test
+    public void cancel_takesAQueuedTaskOutOfItsLane() throws InterruptedException {
+        LoadExecutor executor = new LoadExecutor(2, new LoadMetrics());
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(block(started, release), LoadExecutor.Priority.PREFETCH);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        final boolean[] ran = {false};
+        LoadExecutor.Task task = executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        }, LoadExecutor.Priority.PREFETCH);
+
+        assertTrue(task.cancel(false));
+        assertEquals(0, executor.getQueuedCount(LoadExecutor.Priority.PREFETCH));
+        release.countDown();
+        CountDownLatch after = new CountDownLatch(1);
+        executor.execute(block(after, null), LoadExecutor.Priority.PREFETCH);
+        assertTrue(after.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(ran[0]);
+    }
+
+    @Test
+    public void cancel_interruptsARunningTaskOnlyWhenAskedTo() throws InterruptedException {
+        LoadExecutor executor = new LoadExecutor(2, new LoadMetrics());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        LoadExecutor.Task task = executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                }
+            }
+        }, LoadExecutor.Priority.BACKGROUND);
+        assertTrue(started.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertFalse(task.cancel(false));
+        assertFalse(interrupted.await(50, TimeUnit.MILLISECONDS));
+        assertFalse(task.cancel(true));
+        assertTrue(interrupted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void execute_recordsTheTimeTheTasksWaited() throws InterruptedException {
+        LoadMetrics metrics = new LoadMetrics();
+        LoadExecutor executor = new LoadExecutor(2, metrics);
+        CountDownLatch done = new CountDownLatch(3);
+        executor.execute(block(done, null), LoadExecutor.Priority.VISIBLE);
+        executor.execute(block(done, null), LoadExecutor.Priority.VISIBLE);
+        executor.execute(block(done, null), LoadExecutor.Priority.BACKGROUND);
+        assertTrue(done.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+
+        assertEquals(2, executor.getWaitHistogram(LoadExecutor.Priority.VISIBLE).getCount());
+        assertEquals(1, executor.getWaitHistogram(LoadExecutor.Priority.BACKGROUND).getCount());
+        assertEquals(0, executor.getWaitHistogram(LoadExecutor.Priority.PREFETCH).getCount());
+        // Only the visible tasks are reported with the phases of the loads
+        assertEquals(LoadMetrics.Phase.QUEUE, metrics.summarize().get(0).getPhase());
+        assertEquals(2, metrics.summarize().get(0).getCount());
+    }
+
+    /**
+     * @return a task counting down a latch when it starts, then waiting for another one
+     */
+    private static Runnable block(final CountDownLatch started, final CountDownLatch release) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                if (started != null) {
+                    started.countDown();
+                }
+                if (release != null) {
+                    try {
+                        release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * @return a task adding its name to the list of the tasks run
+     */
+    private static Runnable record(final List<String> order, final String name,
+                                   final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                order.add(name);
+                done.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link LatencyHistogram} and {@link LoadMetrics}.
+ */
+public class LoadMetricsTest {
+
+    @Test
+    public void bucketOf_coversEveryValueOnce() {
+        long previousUpper = -1;
+        for (int bucket = 0; bucket <= LatencyHistogram.bucketOf(1L << 20); bucket++) {
+            long upper = LatencyHistogram.upperBoundOf(bucket);
+            // Each bucket starts right after the previous one
+            assertEquals(bucket, LatencyHistogram.bucketOf(previousUpper + 1));
+            assertEquals(bucket, LatencyHistogram.bucketOf(upper));
+            // and is no wider than an eighth of its values
+            assertTrue(upper - previousUpper <= Math.max(1, (previousUpper + 1) / 8));
+            previousUpper = upper;
+        }
+    }
+
+    @Test
+    public void getPercentileMicros_isWithinAnEighthOfTheExactValue() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 1 ms to 1000 ms
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(millis * 1000000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertNear(500000, histogram.getPercentileMicros(0.50));
+        assertNear(950000, histogram.getPercentileMicros(0.95));
+        assertNear(990000, histogram.getPercentileMicros(0.99));
+        assertEquals(1000000, histogram.getMaxMicros());
+        assertEquals(1000000, histogram.getPercentileMicros(1.0));
+    }
+
+    @Test
+    public void getPercentileMicros_isZeroWithoutSamples() {
+        assertEquals(0, new LatencyHistogram().getPercentileMicros(0.99));
+    }
+
+    @Test
+    public void report_handsEveryRecordedPhaseToTheSinks() {
+        LoadMetrics metrics = new LoadMetrics();
+        final List<LoadMetrics.Summary> reported = new ArrayList<>();
+        metrics.addSink(new LoadMetrics.Sink() {
+            @Override
+            public void report(List<LoadMetrics.Summary> summaries) {
+                reported.addAll(summaries);
+            }
+        });
+        metrics.record(LoadMetrics.Phase.PARSE, 2000000);
+        metrics.record(LoadMetrics.Phase.CONNECT, 40000000);
+        metrics.setEnabled(false);
+        metrics.record(LoadMetrics.Phase.BIND, 100000);
+
+        // Reports are made every few loads only
+        for (int i = 0; i < 4; i++) {
+            metrics.onLoadFinished();
+        }
+        assertTrue(reported.isEmpty());
+        metrics.onLoadFinished();
+
+        assertEquals(2, reported.size());
+        assertEquals(LoadMetrics.Phase.CONNECT, reported.get(0).getPhase());
+        assertEquals(40000, reported.get(0).getP99Micros());
+        assertEquals(LoadMetrics.Phase.PARSE, reported.get(1).getPhase());
+        assertEquals(1, reported.get(1).getCount());
+    }
+
+    @Test
+    public void fileSink_appendsALinePerPhase() throws IOException {
+        File file = File.createTempFile("load_metrics", ".csv");
+        file.delete();
+        try {
+            LoadMetrics metrics = new LoadMetrics();
+            metrics.addSink(new LoadMetrics.FileSink(file));
+            metrics.record(LoadMetrics.Phase.LOAD, 300000000);
+            metrics.report();
+            metrics.report();
+
+            List<String> lines = readLines(file);
+            assertEquals(3, lines.size());
+            assertEquals("time,phase,count,p50_us,p95_us,p99_us,max_us", lines.get(0));
+            assertTrue(lines.get(2), lines.get(2).endsWith(",LOAD,1,300000,300000,300000,300000"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 8);
+    }
+
+    private static List<String> readLines(File file) throws IOException {
+        List<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        } finally {
+            reader.close();
+        }
+        return lines;
+    }
+}
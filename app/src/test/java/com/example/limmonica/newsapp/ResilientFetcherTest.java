@@ -0,0 +1,200 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ResilientFetcher} and {@link CircuitBreaker} against a local fake of
+ * The Guardian API, whose failures and delays each test scripts.
+ */
+public class ResilientFetcherTest {
+
+    private FakeGuardianServer mServer;
+    private File mCacheDirectory;
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new FakeGuardianServer();
+        // The responses can be stored, and revalidated with their ETag
+        mServer.setCacheHeaders("\"v1\"", null);
+        mServer.start();
+
+        mCacheDirectory = File.createTempFile("http", "cache");
+        mCacheDirectory.delete();
+        DiskResponseCache.install(mCacheDirectory, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        mServer.stop();
+        File[] files = mCacheDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mCacheDirectory.delete();
+    }
+
+    @Test
+    public void fetch_retriesServerErrors() {
+        mServer.failNext(503, 500);
+        ResilientFetcher fetcher = newFetcher(3, false, 5);
+
+        List<Article> articles = fetcher.fetch(url("retry"), null);
+
+        assertEquals(1, articles.size());
+        assertEquals(3, mServer.getRequestCount());
+        assertEquals(2, fetcher.getRetryCount());
+    }
+
+    @Test
+    public void fetch_doesNotRetryClientErrors() {
+        mServer.failNext(404);
+        ResilientFetcher fetcher = newFetcher(3, false, 5);
+
+        assertNull(fetcher.fetch(url("missing"), null));
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.CLOSED, fetcher.getCircuitBreaker().getState());
+    }
+
+    @Test
+    public void fetch_failsFastToTheStoredCopyWhileTheServerIsDown() {
+        ResilientFetcher fetcher = newFetcher(2, false, 2);
+        URL url = url("breaker");
+        assertEquals(1, fetcher.fetch(url, null).size());
+
+        mServer.setFailures(1, 0);
+        // Two failed attempts open the breaker, the stored copy is returned instead
+        List<Article> stale = fetcher.fetch(url, null);
+        assertNotNull(stale);
+        assertEquals(1, stale.size());
+        assertEquals(CircuitBreaker.State.OPEN, fetcher.getCircuitBreaker().getState());
+        long requests = mServer.getRequestCount();
+
+        // While the breaker is open no request is sent at all
+        assertEquals(1, fetcher.fetch(url, null).size());
+        assertEquals(requests, mServer.getRequestCount());
+        assertEquals(2, fetcher.getFallbackCount());
+    }
+
+    @Test
+    public void fetch_asksTheServerForAFreshStoredCopyOnlyWhenRevalidating() {
+        mServer.setCacheHeaders("\"v1\"", "max-age=60");
+        ResilientFetcher fetcher = newFetcher(1, false, 5);
+        URL url = url("fresh");
+        assertEquals(1, fetcher.fetch(url, null).size());
+        assertEquals(1, mServer.getRequestCount());
+
+        // The stored copy is fresh for another minute, so no request is sent
+        assertEquals(1, fetcher.fetch(url, null, null).size());
+        assertEquals(1, mServer.getRequestCount());
+
+        assertEquals(1, fetcher.fetch(url, null, null, true).size());
+        assertEquals(2, mServer.getRequestCount());
+    }
+
+    @Test
+    public void fetch_hedgesRequestsSlowerThanMost() {
+        ResilientFetcher fetcher = newFetcher(1, true, 5);
+        // Build up the recent latencies, the first requests are never hedged
+        for (int i = 0; i < 10; i++) {
+            assertEquals(1, fetcher.fetch(url("warm" + i), null).size());
+        }
+        assertEquals(0, fetcher.getHedgeCount());
+
+        mServer.delayNext(5000);
+        long start = System.nanoTime();
+        List<Article> articles = fetcher.fetch(url("hedged"), null);
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(1, articles.size());
+        assertEquals(1, fetcher.getHedgeCount());
+        assertEquals(1, fetcher.getHedgeWinCount());
+        assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 2000);
+    }
+
+    @Test
+    public void circuitBreaker_letsASingleTrialThroughOnceOpenLongEnough() {
+        final long[] now = {0};
+        CircuitBreaker breaker = new CircuitBreaker(2, 1000, new CircuitBreaker.Clock() {
+            @Override
+            public long millis() {
+                return now[0];
+            }
+        });
+        breaker.recordFailure();
+        assertTrue(breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(!breaker.allowRequest());
+
+        now[0] = 1000;
+        assertTrue(breaker.allowRequest());
+        assertTrue(!breaker.allowRequest());
+        breaker.recordFailure();
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        now[0] = 2000;
+        assertTrue(breaker.allowRequest());
+        breaker.recordSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(2, breaker.getOpenCount());
+    }
+
+    @Test
+    public void fetch_releasesTheTrialOfTheBreakerWhenTheBackoffIsInterrupted()
+            throws InterruptedException {
+        mServer.setFailures(1, 0);
+        // The breaker opens on the first failure and lets a trial through straight away
+        final ResilientFetcher fetcher = new ResilientFetcher(2, 10000, 10000, false,
+                new CircuitBreaker(1, 0, CircuitBreaker.SYSTEM_CLOCK));
+        final URL url = url("interrupted");
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                fetcher.fetch(url, null);
+            }
+        });
+        thread.start();
+
+        // The retry holds the trial while it backs off, until it is interrupted
+        CircuitBreaker breaker = fetcher.getCircuitBreaker();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (breaker.getState() != CircuitBreaker.State.HALF_OPEN
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        thread.interrupt();
+        thread.join(5000);
+
+        assertEquals(1, mServer.getRequestCount());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.allowRequest());
+    }
+
+    private ResilientFetcher newFetcher(int maxAttempts, boolean hedging, int failureThreshold) {
+        return new ResilientFetcher(maxAttempts, 10, 50, hedging,
+                new CircuitBreaker(failureThreshold, 60000, CircuitBreaker.SYSTEM_CLOCK));
+    }
+
+    private URL url(String query) {
+        try {
+            return new URL(mServer.getSearchUrl() + "?page-size=1&q=" + query);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
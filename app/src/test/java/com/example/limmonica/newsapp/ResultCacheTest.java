@@ -0,0 +1,151 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ResultCache}.
+ */
+public class ResultCacheTest {
+
+    // Constant value for the time the entries of the tests are kept, in milliseconds
+    private static final long MAX_AGE_MILLIS = 60000;
+
+    // The time told to the caches of the tests
+    private final long[] mNow = {0};
+    private final CircuitBreaker.Clock mClock = new CircuitBreaker.Clock() {
+        @Override
+        public long millis() {
+            return mNow[0];
+        }
+    };
+
+    @Test
+    public void keyOf_ignoresTheApiKeyAndTheOrderOfTheParameters() {
+        String key = ResultCache.keyOf(Arrays.asList(
+                "https://content.guardianapis.com/search?q=a&page-size=10&api-key=one",
+                "https://content.guardianapis.com/search?q=b&page-size=10&api-key=one"));
+
+        assertEquals(key, ResultCache.keyOf(Arrays.asList(
+                "https://content.guardianapis.com/search?api-key=two&page-size=10&q=a",
+                "https://content.guardianapis.com/search?page-size=10&q=b&api-key=two")));
+        assertTrue(!key.equals(ResultCache.keyOf(Arrays.asList(
+                "https://content.guardianapis.com/search?q=a&page-size=20&api-key=one",
+                "https://content.guardianapis.com/search?q=b&page-size=20&api-key=one"))));
+    }
+
+    @Test
+    public void get_returnsTheArticlesUntilTheyExpire() {
+        ResultCache cache = new ResultCache(1024 * 1024, MAX_AGE_MILLIS, mClock);
+        List<Article> articles = articles("a", 3);
+        cache.put("key", articles);
+        // The cache keeps a list of its own
+        articles.clear();
+
+        mNow[0] = MAX_AGE_MILLIS - 1;
+        assertEquals(articles("a", 3), cache.get("key"));
+        mNow[0] = MAX_AGE_MILLIS;
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.getSize());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedEntriesPastTheSize() {
+        long pageSize = sizeOf(articles("a", 10));
+        ResultCache cache = new ResultCache(pageSize * 5 / 2, MAX_AGE_MILLIS, mClock);
+        cache.put("a", articles("a", 10));
+        cache.put("b", articles("b", 10));
+        // Reading the first entry makes the second one the least recently used
+        assertNotNull(cache.get("a"));
+        cache.put("c", articles("c", 10));
+
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.getSize() <= cache.getMaxSize());
+    }
+
+    @Test
+    public void put_replacesTheArticlesOfTheSameLoad() {
+        ResultCache cache = new ResultCache(1024 * 1024, MAX_AGE_MILLIS, mClock);
+        cache.put("key", articles("a", 10));
+        cache.put("key", articles("b", 2));
+
+        assertEquals(articles("b", 2), cache.get("key"));
+        assertEquals(sizeOf(articles("b", 2)), cache.getSize());
+    }
+
+    @Test
+    public void put_doesNotKeepArticlesLargerThanTheCache() {
+        List<Article> articles = articles("a", 10);
+        ResultCache cache = new ResultCache(sizeOf(articles) - 1, MAX_AGE_MILLIS, mClock);
+        cache.put("small", articles("b", 1));
+        cache.put("large", articles);
+
+        assertNull(cache.get("large"));
+        assertNotNull(cache.get("small"));
+    }
+
+    @Test
+    public void trimToSize_givesMemoryBack() {
+        ResultCache cache = new ResultCache(1024 * 1024, MAX_AGE_MILLIS, mClock);
+        cache.put("a", articles("a", 10));
+        cache.put("b", articles("b", 10));
+
+        cache.trimToSize(cache.getSize() - 1);
+        assertNull(cache.get("a"));
+        assertNotNull(cache.get("b"));
+        cache.trimToSize(0);
+        assertNull(cache.get("b"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void estimateSize_countsTheRawFieldsAsDecoded() throws Exception {
+        byte[] body = ("{\"response\":{\"results\":[{\"webUrl\":\"https://www.theguardian.com/a\","
+                + "\"fields\":{\"headline\":\"Headline\",\"trailText\":\"A trail\"}}]}}")
+                .getBytes("UTF-8");
+        List<Article> parsed = new ArrayList<>();
+        ArticleParser.parse(new ByteArrayInputStream(body), null, parsed, null,
+                body.length);
+        Article article = parsed.get(0);
+        int undecoded = article.estimateSize();
+        article.getArticleTitle();
+        article.getArticleTrail();
+
+        // Reading the fields does not change the size the article was kept with
+        assertEquals(undecoded, article.estimateSize());
+        assertTrue(undecoded >= new Article("", "", "", "Headline", "", "A trail",
+                "https://www.theguardian.com/a").estimateSize());
+    }
+
+    private static long sizeOf(List<Article> articles) {
+        long size = 0;
+        for (Article article : articles) {
+            size += article.estimateSize();
+        }
+        return size;
+    }
+
+    private static List<Article> articles(String topic, int count) {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            articles.add(new Article("2018-08-22T10:15:30Z", "Technology", "", "Title " + i,
+                    "", "A trail of a few words",
+                    "https://www.theguardian.com/" + topic + "/" + i));
+        }
+        return articles;
+    }
+}
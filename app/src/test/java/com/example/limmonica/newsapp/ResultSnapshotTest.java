@@ -0,0 +1,172 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link ResultSnapshot}.
+ */
+public class ResultSnapshotTest {
+
+    private static final String KEY = ResultSnapshot.keyOf(Arrays.asList(
+            "https://content.guardianapis.com/search?q=technology",
+            "https://content.guardianapis.com/search?q=science"));
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("first_page", "snapshot");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void read_returnsTheArticlesWritten() {
+        ResultSnapshot snapshot = new ResultSnapshot(mFile);
+        Article full = new Article("2018-08-22T10:00:00Z", "Technology",
+                "https://media.guim.co.uk/1.jpg", "Headline", "Alex Hern", "<p>Trail</p>",
+                "https://www.theguardian.com/technology/1");
+        Article sparse = new Article(ArticleStore.NO_DATE, "Science", null, "Other", null, null,
+                "https://www.theguardian.com/science/2");
+
+        assertTrue(snapshot.write(KEY, Arrays.asList(full, sparse)));
+        List<Article> articles = new ResultSnapshot(mFile).read(KEY);
+
+        assertEquals(2, articles.size());
+        assertEquals(full, articles.get(0));
+        assertEquals(full.getPublishedMillis(), articles.get(0).getPublishedMillis());
+        assertEquals("Alex Hern", articles.get(0).getArticleAuthor());
+        assertEquals("<p>Trail</p>", articles.get(0).getArticleTrail());
+        assertEquals(sparse, articles.get(1));
+        assertNull(articles.get(1).getThumbnailUrl());
+    }
+
+    @Test
+    public void read_ignoresTheSnapshotOfAnotherRequest() {
+        ResultSnapshot snapshot = new ResultSnapshot(mFile);
+        snapshot.write(KEY, Collections.singletonList(article(1)));
+
+        assertNull(snapshot.read(ResultSnapshot.keyOf(Collections.singletonList(
+                "https://content.guardianapis.com/search?q=technology"))));
+    }
+
+    @Test
+    public void read_ignoresATruncatedSnapshot() throws IOException {
+        ResultSnapshot snapshot = new ResultSnapshot(mFile);
+        snapshot.write(KEY, Arrays.asList(article(1), article(2)));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            file.setLength(file.length() - 10);
+        } finally {
+            file.close();
+        }
+
+        assertNull(snapshot.read(KEY));
+    }
+
+    @Test
+    public void read_ignoresASnapshotWithABadStringIndex() throws IOException {
+        ResultSnapshot snapshot = new ResultSnapshot(mFile);
+        snapshot.write(KEY, Arrays.asList(article(1), article(2)));
+        RandomAccessFile file = new RandomAccessFile(mFile, "rw");
+        try {
+            // The url suffix of the last record, far past the end of the string table
+            file.seek(file.length() - 4);
+            file.writeInt(1000);
+        } finally {
+            file.close();
+        }
+
+        assertNull(snapshot.read(KEY));
+    }
+
+    @Test
+    public void write_replacesTheWholeSnapshot() {
+        ResultSnapshot snapshot = new ResultSnapshot(mFile);
+        snapshot.write(KEY, Arrays.asList(article(1), article(2), article(3)));
+        snapshot.write(KEY, Collections.singletonList(article(4)));
+
+        List<Article> articles = snapshot.read(KEY);
+        assertEquals(1, articles.size());
+        assertEquals(article(4), articles.get(0));
+        assertTrue(!new File(mFile.getPath() + ".tmp").exists());
+    }
+
+    @Test
+    public void read_ignoresASnapshotOfAnotherFormat() throws IOException {
+        // A snapshot as the first version of the format wrote it
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile));
+        try {
+            out.writeInt(1);
+            out.writeUTF(KEY);
+            out.writeInt(0);
+        } finally {
+            out.close();
+        }
+
+        assertNull(new ResultSnapshot(mFile).read(KEY));
+    }
+
+    @Test
+    public void write_storesSharedStringsOnce() {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            articles.add(new Article(String.format("2018-08-%02dT10:00:00Z", i % 28 + 1),
+                    "Technology", "https://media.guim.co.uk/" + i + ".jpg", "Headline " + i,
+                    "Alex Hern", "", "https://www.theguardian.com/technology/" + i));
+        }
+        ResultSnapshot snapshot = new ResultSnapshot(mFile);
+        snapshot.write(KEY, articles);
+        long fifty = mFile.length();
+        snapshot.write(KEY, articles.subList(0, 25));
+        long twentyFive = mFile.length();
+
+        // The section, author, empty trail and url prefixes are paid for once, so an article
+        // costs its record plus its title and url suffixes
+        long perArticle = (fifty - twentyFive) / 25;
+        assertTrue(perArticle + " bytes per article", perArticle < 40 + 30);
+        List<Article> read = snapshot.read(KEY);
+        assertSame(read.get(0).getArticleAuthor(), read.get(24).getArticleAuthor());
+        assertEquals(articles.subList(0, 25), read);
+    }
+
+    @Test
+    public void read_decodesOnlyTheArticlesAskedFor() {
+        ResultSnapshot snapshot = new ResultSnapshot(mFile);
+        snapshot.write(KEY, Arrays.asList(article(1), article(2), article(3)));
+        List<Article> articles = snapshot.read(KEY);
+
+        assertEquals(3, articles.size());
+        // The last article can be read first, and is built once
+        Article last = articles.get(2);
+        assertEquals(article(3), last);
+        assertSame(last, articles.get(2));
+        assertEquals("Headline 1", articles.get(0).getArticleTitle());
+    }
+
+    private static Article article(int day) {
+        return new Article(String.format("2018-08-%02dT10:00:00Z", day), "Technology", null,
+                "Headline " + day, "", "", "https://www.theguardian.com/technology/" + day);
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.limmonica.newsapp;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link SingleFlight}.
+ */
+public class SingleFlightTest {
+
+    // Constant value for the number of callers asking for the same request at once
+    private static final int CALLERS = 8;
+    // Constant value for the longest time a test waits on another thread, in seconds
+    private static final long TIMEOUT_SECONDS = 5;
+
+    @Test
+    public void get_sharesOneFetchBetweenConcurrentCallers() throws Exception {
+        final SingleFlight flights = new SingleFlight(0, CircuitBreaker.SYSTEM_CLOCK);
+        final BlockingFetch fetch = new BlockingFetch(articles(3));
+        ExecutorService executor = Executors.newFixedThreadPool(CALLERS);
+        try {
+            List<Future<List<Article>>> results = new ArrayList<>();
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(executor.submit(new Callable<List<Article>>() {
+                    @Override
+                    public List<Article> call() {
+                        return flights.get("key", null, null, fetch);
+                    }
+                }));
+            }
+            assertTrue(fetch.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            waitForCoalesced(flights, CALLERS - 1);
+            fetch.mRelease.countDown();
+
+            List<Article> first = results.get(0).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertEquals(fetch.mArticles, first);
+            for (Future<List<Article>> result : results.subList(1, CALLERS)) {
+                List<Article> articles = result.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                assertEquals(fetch.mArticles, articles);
+                // Every caller may change the list it gets without the others seeing it
+                assertNotSame(first, articles);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, fetch.mCalls.get());
+        assertEquals(1, flights.getFetchCount());
+        assertEquals(CALLERS - 1, flights.getCoalescedCount());
+    }
+
+    @Test
+    public void get_handsOutTheArticlesOfAFetchUntilTheyExpire() {
+        final long[] now = {0};
+        SingleFlight flights = new SingleFlight(3000, new CircuitBreaker.Clock() {
+            @Override
+            public long millis() {
+                return now[0];
+            }
+        });
+        CountingFetch fetch = new CountingFetch(articles(2));
+
+        List<Article> first = flights.get("key", null, null, fetch);
+        now[0] = 2999;
+        List<Article> second = flights.get("key", null, null, fetch);
+        assertEquals(1, fetch.mCalls.get());
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        assertEquals(1, flights.getReusedCount());
+
+        // Another request is fetched on its own
+        flights.get("other", null, null, fetch);
+        assertEquals(2, fetch.mCalls.get());
+
+        now[0] = 3000;
+        flights.get("key", null, null, fetch);
+        assertEquals(3, fetch.mCalls.get());
+    }
+
+    @Test
+    public void get_doesNotKeepFailedFetches() {
+        SingleFlight flights = new SingleFlight(3000, CircuitBreaker.SYSTEM_CLOCK);
+        CountingFetch failing = new CountingFetch(null);
+
+        assertNull(flights.get("key", null, null, failing));
+        assertNull(flights.get("key", null, null, failing));
+        assertEquals(2, failing.mCalls.get());
+
+        CountingFetch fetch = new CountingFetch(articles(1));
+        assertEquals(fetch.mArticles, flights.get("key", null, null, fetch));
+    }
+
+    @Test
+    public void get_notifiesCallersWhichDidNotFetchOfEveryArticle() {
+        SingleFlight flights = new SingleFlight(3000, CircuitBreaker.SYSTEM_CLOCK);
+        CountingFetch fetch = new CountingFetch(articles(3));
+        flights.get("key", null, null, fetch);
+
+        final List<Article> notified = new ArrayList<>();
+        flights.get("key", new ArticleParser.OnArticleParsedListener() {
+            @Override
+            public void onArticleParsed(Article article) {
+                notified.add(article);
+            }
+        }, null, fetch);
+
+        assertEquals(fetch.mArticles, notified);
+    }
+
+    @Test
+    public void get_cancelledWaiterStopsWithoutAffectingTheOthers() throws Exception {
+        final SingleFlight flights = new SingleFlight(0, CircuitBreaker.SYSTEM_CLOCK);
+        final BlockingFetch fetch = new BlockingFetch(articles(2));
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Article>> leader = executor.submit(new Callable<List<Article>>() {
+                @Override
+                public List<Article> call() {
+                    return flights.get("key", null, null, fetch);
+                }
+            });
+            assertTrue(fetch.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            Future<List<Article>> waiter = executor.submit(new Callable<List<Article>>() {
+                @Override
+                public List<Article> call() {
+                    return flights.get("key", null, cancellation, fetch);
+                }
+            });
+            waitForCoalesced(flights, 1);
+
+            long start = System.nanoTime();
+            cancellation.cancel();
+            assertNull(waiter.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue("took " + elapsedMillis + " ms", elapsedMillis < 1000);
+
+            fetch.mRelease.countDown();
+            assertEquals(fetch.mArticles, leader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, fetch.mCalls.get());
+    }
+
+    @Test
+    public void get_waiterFetchesWhenTheFetchingCallerIsCancelled() throws Exception {
+        final SingleFlight flights = new SingleFlight(0, CircuitBreaker.SYSTEM_CLOCK);
+        final BlockingFetch fetch = new BlockingFetch(articles(2));
+        final HttpClient.Cancellation cancellation = new HttpClient.Cancellation();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<List<Article>> leader = executor.submit(new Callable<List<Article>>() {
+                @Override
+                public List<Article> call() {
+                    return flights.get("key", null, cancellation, fetch);
+                }
+            });
+            assertTrue(fetch.mStarted.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            Future<List<Article>> waiter = executor.submit(new Callable<List<Article>>() {
+                @Override
+                public List<Article> call() {
+                    return flights.get("key", null, null, fetch);
+                }
+            });
+            waitForCoalesced(flights, 1);
+
+            cancellation.cancel();
+            fetch.mRelease.countDown();
+            assertEquals(fetch.mArticles, waiter.get(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+            leader.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(2, fetch.mCalls.get());
+    }
+
+    /**
+     * Waits until the given number of callers are waiting for a fetch in flight
+     */
+    private static void waitForCoalesced(SingleFlight flights, long count)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (flights.getCoalescedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, flights.getCoalescedCount());
+    }
+
+    private static List<Article> articles(int count) {
+        List<Article> articles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            articles.add(new Article("2018-08-22T10:15:30Z", "Technology", "", "Title " + i, "",
+                    "Trail", "https://www.theguardian.com/technology/" + i));
+        }
+        return Collections.unmodifiableList(articles);
+    }
+
+    /**
+     * Returns the same articles every time, counting its calls
+     */
+    private static class CountingFetch implements SingleFlight.Fetch {
+
+        final List<Article> mArticles;
+        final AtomicInteger mCalls = new AtomicInteger();
+
+        CountingFetch(List<Article> articles) {
+            mArticles = articles;
+        }
+
+        @Override
+        public List<Article> fetch(ArticleParser.OnArticleParsedListener listener,
+                                   HttpClient.Cancellation cancellation) {
+            mCalls.incrementAndGet();
+            return mArticles;
+        }
+    }
+
+    /**
+     * Holds its first call back until it is released
+     */
+    private static final class BlockingFetch extends CountingFetch {
+
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mRelease = new CountDownLatch(1);
+
+        BlockingFetch(List<Article> articles) {
+            super(articles);
+        }
+
+        @Override
+        public List<Article> fetch(ArticleParser.OnArticleParsedListener listener,
+                                   HttpClient.Cancellation cancellation) {
+            super.fetch(listener, cancellation);
+            mStarted.countDown();
+            try {
+                mRelease.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return cancellation != null && cancellation.isCancelled() ? null : mArticles;
+        }
+    }
+}
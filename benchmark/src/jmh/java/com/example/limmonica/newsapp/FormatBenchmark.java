@@ -0,0 +1,117 @@
+package com.example.limmonica.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Measures the per-row work of the bind stage: turning the publishing date into the displayed
+ * date, and picking the color of the section. Every operation handles one row.
+ */
+@State(Scope.Benchmark)
+public class FormatBenchmark {
+
+    // Constant value for the number of rows the inputs cycle through
+    private static final int ROWS = 256;
+
+    // Publishing dates of the rows, in The Guardian format
+    private String[] mDates;
+    // Publishing dates of the rows, as parsed by the loader
+    private long[] mMillis;
+    // Section titles of the rows
+    private String[] mSections;
+    // The displayed date format shared by all rows
+    private SimpleDateFormat mDisplayFormat;
+    // Categories already looked up, by section title
+    private Map<String, SectionCategory> mCategories;
+    // Colors of the categories
+    private Map<SectionCategory, Integer> mCategoryColors;
+    // Index of the next row
+    private int mRow;
+
+    @Setup
+    public void setUp() {
+        mDates = GuardianFixtures.publicationDates(ROWS);
+        mMillis = new long[ROWS];
+        mSections = new String[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            mMillis[i] = ArticleStore.parseDate(mDates[i]);
+            mSections[i] = GuardianFixtures.SECTIONS[i % GuardianFixtures.SECTIONS.length];
+        }
+        mDisplayFormat = new SimpleDateFormat("LLL dd, yyyy", Locale.getDefault());
+        mCategories = new HashMap<>();
+        mCategoryColors = new EnumMap<>(SectionCategory.class);
+        for (SectionCategory category : SectionCategory.values()) {
+            mCategoryColors.put(category, category.ordinal());
+        }
+    }
+
+    /**
+     * Parses and formats the date with two new date formats, as onBindViewHolder did for every
+     * row it bound
+     */
+    @Benchmark
+    public String bindDate() throws ParseException {
+        SimpleDateFormat dateFormat =
+                new SimpleDateFormat("yyyy-MM-dd'T'hh:mm:ss'Z'", Locale.getDefault());
+        Date date = dateFormat.parse(nextDate());
+        return new SimpleDateFormat("LLL dd, yyyy", Locale.getDefault()).format(date);
+    }
+
+    /**
+     * Parses the date into a timestamp without a date format, as the articles now do
+     */
+    @Benchmark
+    public long parseDate() {
+        return ArticleStore.parseDate(nextDate());
+    }
+
+    /**
+     * Formats an already parsed date with the shared display format, as the loader now does
+     */
+    @Benchmark
+    public String formatDate() {
+        return mDisplayFormat.format(new Date(mMillis[nextRow()]));
+    }
+
+    /**
+     * Looks up the category of the section with the switch on its title, as every bind did
+     */
+    @Benchmark
+    public void sectionColor(Blackhole blackhole) {
+        blackhole.consume(mCategoryColors.get(SectionCategory.of(mSections[nextRow()])));
+    }
+
+    /**
+     * Looks up the category of the section once per title, as the loader now does
+     */
+    @Benchmark
+    public void cachedSectionColor(Blackhole blackhole) {
+        String section = mSections[nextRow()];
+        SectionCategory category = mCategories.get(section);
+        if (category == null) {
+            category = SectionCategory.of(section);
+            mCategories.put(section, category);
+        }
+        blackhole.consume(mCategoryColors.get(category));
+    }
+
+    private String nextDate() {
+        return mDates[nextRow()];
+    }
+
+    private int nextRow() {
+        mRow = (mRow + 1) % ROWS;
+        return mRow;
+    }
+}
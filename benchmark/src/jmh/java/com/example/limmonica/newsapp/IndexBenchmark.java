@@ -0,0 +1,86 @@
+package com.example.limmonica.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures building the {@link ArticleIndex} of the articles loaded so far, and searching it for
+ * the queries a user types one letter after the other. Both have to fit well within the 16 ms of
+ * a frame, as they run on the UI thread as the user types.
+ */
+public class IndexBenchmark {
+
+    // Constant value for the size of the pages the articles are parsed from
+    private static final int PAGE_SIZE = 200;
+
+    /**
+     * The articles loaded and their index
+     */
+    @State(Scope.Benchmark)
+    public static class Articles {
+
+        // Number of articles loaded, from a single page to many more than a user scrolls through
+        @Param({"200", "1000", "5000"})
+        public int articleCount;
+
+        // The articles, parsed from the responses as the loads do
+        List<Article> mArticles;
+        // The index of the articles
+        ArticleIndex mIndex;
+
+        @Setup
+        public void setUp() {
+            mArticles = new ArrayList<>(articleCount);
+            for (int page = 1; mArticles.size() < articleCount; page++) {
+                byte[] body = GuardianFixtures.searchResponse(PAGE_SIZE, page,
+                        GuardianFixtures.TRAIL_WORDS);
+                mArticles.addAll(QueryUtils.extractResponseFromJson(
+                        new String(body, Charset.forName("UTF-8"))));
+            }
+            mArticles = mArticles.subList(0, articleCount);
+            mIndex = index(mArticles);
+        }
+    }
+
+    /**
+     * What the user typed
+     */
+    @State(Scope.Benchmark)
+    public static class Query {
+
+        // From a single letter matching many words, to two words, to a word nowhere to be found
+        @Param({"r", "rob", "robots", "robots da", "zur", "xylophone"})
+        public String query;
+    }
+
+    /**
+     * Indexes every article, as the first search after the list has loaded does
+     */
+    @Benchmark
+    public ArticleIndex build(Articles articles) {
+        return index(articles.mArticles);
+    }
+
+    /**
+     * Finds the articles matching the query
+     */
+    @Benchmark
+    public int[] search(Articles articles, Query query) {
+        return articles.mIndex.search(query.query);
+    }
+
+    private static ArticleIndex index(List<Article> articles) {
+        ArticleIndex index = new ArticleIndex();
+        for (int i = 0; i < articles.size(); i++) {
+            index.add(articles.get(i));
+        }
+        return index;
+    }
+}
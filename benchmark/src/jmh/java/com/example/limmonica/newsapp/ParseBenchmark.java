@@ -0,0 +1,104 @@
+package com.example.limmonica.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Measures the fetch and parse stages of a load on responses of 10 to 200 articles, from the
+ * bytes of the response body to the list of {@link Article} objects.
+ */
+@State(Scope.Benchmark)
+public class ParseBenchmark {
+
+    // Number of articles in the response, from the smallest to the largest page a user can pick
+    @Param({"10", "50", "100", "200"})
+    public int pageSize;
+
+    // The response body as it comes off the network
+    private byte[] mBody;
+    // The response body as a String, as handed to QueryUtils.extractResponseFromJson
+    private String mJson;
+
+    @Setup
+    public void setUp() {
+        mBody = GuardianFixtures.searchResponse(pageSize);
+        mJson = new String(mBody, Charset.forName("UTF-8"));
+    }
+
+    /**
+     * Reads the whole body into a String line by line, the way the response used to be read
+     * before it was parsed (QueryUtils.readFromStream)
+     */
+    @Benchmark
+    public String readFromStream() throws IOException {
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(mBody), Charset.forName("UTF-8")));
+        String line = reader.readLine();
+        while (line != null) {
+            output.append(line);
+            line = reader.readLine();
+        }
+        return output.toString();
+    }
+
+    /**
+     * Walks the body with the pull parser without building anything, which is the floor for
+     * any parse of the response
+     */
+    @Benchmark
+    public long scanBody() throws IOException {
+        JsonPullParser parser = new JsonPullParser(new ByteArrayInputStream(mBody));
+        parser.skipValue();
+        return parser.getBytesRead();
+    }
+
+    /**
+     * Parses the articles out of the body while it is being read, as a load does
+     */
+    @Benchmark
+    public List<Article> parseStream() throws IOException {
+        return ArticleParser.parse(new ByteArrayInputStream(mBody));
+    }
+
+    /**
+     * Parses the articles out of the body and reads every field of them, as if every row of the
+     * page were shown, where {@link #parseStream()} leaves the fields of the articles undecoded
+     */
+    @Benchmark
+    public void parseStreamAndReadFields(Blackhole blackhole) throws IOException {
+        for (Article article : ArticleParser.parse(new ByteArrayInputStream(mBody))) {
+            blackhole.consume(article.getArticleTitle());
+            blackhole.consume(article.getArticleAuthor());
+            blackhole.consume(article.getArticleTrail());
+        }
+    }
+
+    /**
+     * Parses the articles out of a response already held as a String
+     */
+    @Benchmark
+    public List<Article> extractResponseFromJson() {
+        return QueryUtils.extractResponseFromJson(mJson);
+    }
+
+    /**
+     * Reads the body into a String and then parses it, the whole fetch stage before the
+     * response was streamed
+     */
+    @Benchmark
+    public void readThenExtract(Blackhole blackhole) throws IOException {
+        blackhole.consume(QueryUtils.extractResponseFromJson(readFromStream()));
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.limmonica.newsapp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compares restoring a page of 10 to 200 articles from its {@link ResultSnapshot} with parsing
+ * the same page out of its JSON response, the two ways a cold start can get its first rows.
+ */
+@State(Scope.Benchmark)
+public class SnapshotBenchmark {
+
+    // Constant value for the number of rows on the first screen
+    private static final int FIRST_SCREEN_ROWS = 8;
+
+    // Number of articles in the page, from the smallest to the largest page a user can pick
+    @Param({"10", "50", "100", "200"})
+    public int pageSize;
+
+    // The response body as a String, as handed to QueryUtils.extractResponseFromJson
+    private String mJson;
+    // The snapshot of the same articles
+    private ResultSnapshot mSnapshot;
+    // The snapshot file
+    private File mFile;
+    // The key the snapshot was written under
+    private String mKey;
+
+    @Setup
+    public void setUp() throws IOException {
+        mJson = new String(GuardianFixtures.searchResponse(pageSize), Charset.forName("UTF-8"));
+        mFile = File.createTempFile("first_page", ".snapshot");
+        mSnapshot = new ResultSnapshot(mFile);
+        mKey = ResultSnapshot.keyOf(Collections.singletonList(
+                "https://content.guardianapis.com/search?page-size=" + pageSize));
+        if (!mSnapshot.write(mKey, QueryUtils.extractResponseFromJson(mJson))) {
+            throw new IOException("Could not write the snapshot");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    /**
+     * Parses the articles out of the JSON response
+     */
+    @Benchmark
+    public List<Article> extractResponseFromJson() {
+        return QueryUtils.extractResponseFromJson(mJson);
+    }
+
+    /**
+     * Reads the snapshot and decodes every article of it
+     */
+    @Benchmark
+    public void readSnapshot(Blackhole blackhole) {
+        List<Article> articles = mSnapshot.read(mKey);
+        for (int i = 0; i < articles.size(); i++) {
+            blackhole.consume(articles.get(i));
+        }
+    }
+
+    /**
+     * Reads the snapshot and decodes the articles of the first screen only, which is all a cold
+     * start has to show before its first frame
+     */
+    @Benchmark
+    public void readSnapshotFirstScreen(Blackhole blackhole) {
+        List<Article> articles = mSnapshot.read(mKey);
+        int rows = Math.min(articles.size(), FIRST_SCREEN_ROWS);
+        for (int i = 0; i < rows; i++) {
+            blackhole.consume(articles.get(i));
+        }
+    }
+}
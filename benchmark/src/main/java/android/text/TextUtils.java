@@ -0,0 +1,14 @@
+package android.text;
+
+/**
+ * Plain JVM stand-in for the part of android.text.TextUtils used by the benchmarked classes.
+ */
+public final class TextUtils {
+
+    private TextUtils() {
+    }
+
+    public static boolean isEmpty(CharSequence str) {
+        return str == null || str.length() == 0;
+    }
+}
@@ -0,0 +1,247 @@
+package com.example.limmonica.newsapp;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives {@link QueryUtils#fetchArticleData} against a {@link FakeGuardianServer} from a number
+ * of threads at once, and reports the throughput and the latency percentiles of the requests,
+ * along with what the client and the server went through to answer them. Every request asks
+ * for a url of its own, so none is handed the articles {@link SingleFlight} kept from another.
+ * <p>
+ * Options are given as --name=value, i.e.
+ * <pre>
+ * ./gradlew :benchmark:loadTest -PloadArgs="--requests=2000 --concurrency=8 --latency=50"
+ * </pre>
+ * <ul>
+ * <li>requests: number of requests measured, 500 by default</li>
+ * <li>warmup: number of requests made first and not measured, 100 by default</li>
+ * <li>concurrency: number of requests in flight at once, 4 by default</li>
+ * <li>page-size: number of results per page, 50 by default</li>
+ * <li>trail-words: number of words of each trail, which sets the size of a result</li>
+ * <li>latency, jitter: delay of every response and its random part, in milliseconds</li>
+ * <li>bandwidth: rate the bodies are sent at, in KB per second, unlimited by default</li>
+ * <li>error-rate, truncate-rate: share of the requests failing with a server error or cut
+ * short, from 0 to 1</li>
+ * <li>gzip: false to send plain bodies</li>
+ * <li>cache: true to install the disk cache of responses in a temporary directory</li>
+ * </ul>
+ */
+final class LoadHarness {
+
+    // Constant value for the number of distinct pages requested, so most requests do not ask
+    // for a page the previous one just did
+    private static final int PAGES = 40;
+
+    // Numbers the requests of all the runs
+    private static final AtomicLong sRequestId = new AtomicLong();
+
+    /**
+     * Create a private constructor because no one should ever create a {@link LoadHarness}
+     * object. This class is only meant to hold static methods.
+     */
+    private LoadHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int requests = Integer.parseInt(option(options, "requests", "500"));
+        int warmup = Integer.parseInt(option(options, "warmup", "100"));
+        int concurrency = Integer.parseInt(option(options, "concurrency", "4"));
+        int pageSize = Integer.parseInt(option(options, "page-size", "50"));
+
+        FakeGuardianServer server = new FakeGuardianServer();
+        server.setTrailWords(Integer.parseInt(option(options, "trail-words",
+                String.valueOf(GuardianFixtures.TRAIL_WORDS))));
+        server.setLatency(Long.parseLong(option(options, "latency", "0")),
+                Long.parseLong(option(options, "jitter", "0")));
+        server.setBandwidth(Long.parseLong(option(options, "bandwidth", "0")) * 1024);
+        server.setFailures(Double.parseDouble(option(options, "error-rate", "0")),
+                Double.parseDouble(option(options, "truncate-rate", "0")));
+        server.setGzip(Boolean.parseBoolean(option(options, "gzip", "true")));
+        File cacheDirectory = null;
+        if (Boolean.parseBoolean(option(options, "cache", "false"))) {
+            cacheDirectory = File.createTempFile("load_harness", "cache");
+            cacheDirectory.delete();
+            DiskResponseCache.install(cacheDirectory, 10 * 1024 * 1024);
+        }
+        if (!options.isEmpty()) {
+            throw new IllegalArgumentException("Unknown options " + options.keySet());
+        }
+        server.start();
+
+        String searchUrl = server.getSearchUrl() + "?api-key=test&show-fields=all&page-size="
+                + pageSize + "&page=";
+        try {
+            // Warm the JIT and the connection pool up without recording anything
+            LoadMetrics.getInstance().setEnabled(false);
+            run(searchUrl, warmup, concurrency, null);
+            LoadMetrics.getInstance().setEnabled(true);
+
+            long requestsBefore = server.getRequestCount();
+            long errorsBefore = server.getErrorCount();
+            long truncatedBefore = server.getTruncatedCount();
+            long bytesBefore = server.getBytesSent();
+            ResilientFetcher fetcher = ResilientFetcher.getInstance();
+            long retriesBefore = fetcher.getRetryCount();
+            long hedgesBefore = fetcher.getHedgeCount();
+            long fallbacksBefore = fetcher.getFallbackCount();
+            SingleFlight flights = SingleFlight.getInstance();
+            long sharedBefore = flights.getCoalescedCount() + flights.getReusedCount();
+
+            Result result = new Result(pageSize);
+            long start = System.nanoTime();
+            run(searchUrl, requests, concurrency, result);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(String.format(Locale.US,
+                    "%d requests of %d results, %d at a time, in %.2f s",
+                    requests, pageSize, concurrency, seconds));
+            System.out.println(String.format(Locale.US,
+                    "Throughput: %.1f requests/s, %.0f articles/s", requests / seconds,
+                    result.mArticles.get() / seconds));
+            // A response which breaks off still returns the articles parsed before the break
+            System.out.println(result.mFailures.get() + " failed, " + result.mShort.get()
+                    + " returned part of the page");
+            LatencyHistogram latencies = result.mLatencies;
+            System.out.println(String.format(Locale.US,
+                    "Latency: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms, max %.1f ms",
+                    latencies.getPercentileMicros(0.50) / 1000.0,
+                    latencies.getPercentileMicros(0.95) / 1000.0,
+                    latencies.getPercentileMicros(0.99) / 1000.0,
+                    latencies.getMaxMicros() / 1000.0));
+            System.out.println("Server: " + (server.getRequestCount() - requestsBefore)
+                    + " requests, " + (server.getErrorCount() - errorsBefore) + " errors, "
+                    + (server.getTruncatedCount() - truncatedBefore) + " cut short, "
+                    + (server.getBytesSent() - bytesBefore) + " bytes sent");
+            System.out.println("Client: " + (fetcher.getRetryCount() - retriesBefore)
+                    + " retries, " + (fetcher.getHedgeCount() - hedgesBefore) + " hedged, "
+                    + (fetcher.getFallbackCount() - fallbacksBefore)
+                    + " fallbacks to stored copies, "
+                    + (flights.getCoalescedCount() + flights.getReusedCount() - sharedBefore)
+                    + " answered by another fetch, circuit breaker "
+                    + fetcher.getCircuitBreaker().getState());
+            for (LoadMetrics.Summary summary : LoadMetrics.getInstance().summarize()) {
+                System.out.println("  " + summary);
+            }
+        } finally {
+            server.stop();
+            if (cacheDirectory != null) {
+                File[] files = cacheDirectory.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        file.delete();
+                    }
+                }
+                cacheDirectory.delete();
+            }
+        }
+        // The pools of the fetcher keep the JVM alive otherwise
+        System.exit(0);
+    }
+
+    /**
+     * Makes the given number of requests from the given number of threads
+     *
+     * @param searchUrl   is the url of the requests, to which the page is appended
+     * @param requests    is the number of requests
+     * @param concurrency is the number of threads making them
+     * @param result      records every request, may be null
+     */
+    private static void run(final String searchUrl, final int requests, int concurrency,
+                            final Result result) throws InterruptedException {
+        final AtomicInteger next = new AtomicInteger();
+        final CountDownLatch done = new CountDownLatch(concurrency);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int request;
+                        while ((request = next.getAndIncrement()) < requests) {
+                            long start = System.nanoTime();
+                            // The server ignores the id, which only makes the url unique
+                            List<Article> articles = QueryUtils.fetchArticleData(
+                                    searchUrl + (request % PAGES + 1) + "&load-id="
+                                            + sRequestId.getAndIncrement());
+                            if (result != null) {
+                                result.record(articles, System.nanoTime() - start);
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return the options given as --name=value
+     */
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    /**
+     * @return the value of an option, or its default value if it was not given
+     */
+    private static String option(Map<String, String> options, String name, String defaultValue) {
+        String value = options.remove(name);
+        return value != null ? value : defaultValue;
+    }
+
+    /**
+     * What the measured requests returned and how long they took
+     */
+    private static final class Result {
+
+        // Latency of every request
+        final LatencyHistogram mLatencies = new LatencyHistogram();
+        // Number of articles returned
+        final AtomicLong mArticles = new AtomicLong();
+        // Number of requests which returned no article
+        final AtomicLong mFailures = new AtomicLong();
+        // Number of requests which returned fewer articles than a page holds
+        final AtomicLong mShort = new AtomicLong();
+        // Number of articles of a page
+        private final int mPageSize;
+
+        Result(int pageSize) {
+            mPageSize = pageSize;
+        }
+
+        void record(List<Article> articles, long nanos) {
+            mLatencies.record(nanos);
+            if (articles == null || articles.isEmpty()) {
+                mFailures.incrementAndGet();
+                return;
+            }
+            mArticles.addAndGet(articles.size());
+            if (articles.size() < mPageSize) {
+                mShort.incrementAndGet();
+            }
+        }
+    }
+}